@@ -0,0 +1,110 @@
+package com.mammen.file_io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
+
+/******************************************************************************
+ *   AtomicFile
+ *       Replaces a file so that it is always either the old contents or the
+ *       new contents, never half written. The new contents go to a temporary
+ *       file next to the target, are synced to disk and then renamed over it.
+ *
+ *       The temporary file is created with the permissions of any new file,
+ *       then given those of the file it replaces, so a save never changes
+ *       who can read the file.
+ ******************************************************************************/
+public final class AtomicFile
+{
+    /**************************************************************************
+     *  Writes the new contents of the file.
+     *************************************************************************/
+    @FunctionalInterface
+    public interface Contents<E extends Exception>
+    {
+        void write( OutputStream out ) throws IOException, E;
+    }
+
+
+    private AtomicFile()
+    {
+    }
+
+
+    /**************************************************************************
+     * <p>Replaces the contents of a file. If anything fails the file is left
+     *      as it was.</p>
+     *
+     * @param file The file to write.
+     * @param contents Writes the new contents. The stream is buffered and is
+     *                 closed afterwards.
+     *************************************************************************/
+    public static <E extends Exception> void write( File file, Contents<E> contents ) throws IOException, E
+    {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = createTemp( target );
+
+        try
+        {
+            // The rename replaces the permissions along with the file, keep the old ones.
+            PosixFileAttributeView view = Files.getFileAttributeView( target, PosixFileAttributeView.class );
+
+            if( view != null && Files.exists( target ) )
+                Files.setPosixFilePermissions( temp, view.readAttributes().permissions() );
+
+            try( FileOutputStream fos = new FileOutputStream( temp.toFile() );
+                 OutputStream out = new BufferedOutputStream( fos ) )
+            {
+                contents.write( out );
+
+                out.flush();
+                fos.getFD().sync();
+            }
+
+            try
+            {
+                Files.move( temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+            }
+            catch( AtomicMoveNotSupportedException e )
+            {
+                Files.move( temp, target, StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists( temp );
+        }
+    }
+
+
+    /**************************************************************************
+     *  Creates an empty file next to the target. Files.createTempFile() would
+     *  make it readable by the owner only, whatever the umask.
+     *************************************************************************/
+    private static Path createTemp( Path target ) throws IOException
+    {
+        while( true )
+        {
+            Path temp = target.resolveSibling( "." + target.getFileName() + "."
+                                               + Long.toHexString( ThreadLocalRandom.current().nextLong() ) + ".tmp" );
+
+            try
+            {
+                return Files.createFile( temp );
+            }
+            catch( FileAlreadyExistsException e )
+            {
+                // Taken, try another name.
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.mammen.file_io;
+
+import com.mammen.generator.SegmentBlock;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.metrics.ExportEvent;
+import com.mammen.metrics.Metrics;
+import com.mammen.path.Path;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/******************************************************************************
+ *   CsvSubscriber
+ *       Writes the blocks of a streamed path to one csv file per wheel, see
+ *       FileIO.streamPath(). The file of a wheel is opened when its first
+ *       block arrives and all of them stay open until the path is done,
+ *       since the blocks of the wheels come in turns.
+ *
+ *       Only a few blocks are requested ahead, enough that the next one is
+ *       ready when a block is written, so the generator can't run far ahead
+ *       of the disk.
+ ******************************************************************************/
+final class CsvSubscriber implements Flow.Subscriber<SegmentBlock>
+{
+    // Blocks asked for ahead of the one being written.
+    private static final int REQUEST_AHEAD = 4;
+
+    private final File savePathName;
+    private final List<Path.Elements> elements;
+    private final Units unit;
+    private final int precision;
+
+    private final CompletableFuture<Integer> result = new CompletableFuture<>();
+    private final ExportEvent event = new ExportEvent();
+
+    private Flow.Subscription subscription;
+    private CsvWriter[] writers;
+    private long start;
+    private int pathLength = 0;
+
+
+    CsvSubscriber( File savePathName, List<Path.Elements> elements, Units unit, int precision )
+    {
+        this.savePathName = savePathName;
+        this.elements = elements;
+        this.unit = unit;
+        this.precision = precision;
+    }
+
+
+    CompletableFuture<Integer> getResult()
+    {
+        return result;
+    }
+
+
+    @Override
+    public void onSubscribe( Flow.Subscription subscription )
+    {
+        this.subscription = subscription;
+
+        event.begin();
+        start = Metrics.CSV_EXPORT.start();
+
+        subscription.request( REQUEST_AHEAD );
+    }
+
+
+    @Override
+    public void onNext( SegmentBlock block )
+    {
+        if( result.isDone() )
+            return;
+
+        try
+        {
+            if( writers == null )
+            {
+                writers = new CsvWriter[ block.getDriveBase().getNumWheels() ];
+                pathLength = block.getPathLength();
+            }
+
+            int wheel = block.getWheel();
+
+            if( writers[ wheel ] == null )
+            {
+                writers[ wheel ] = new CsvWriter( FileIO.csvFile( savePathName, block.getDriveBase(), wheel ), precision );
+
+                // Only the first file gets the column labels, the same as savePath().
+                if( wheel == 0 )
+                    FileIO.writeLabels( writers[ wheel ], elements );
+            }
+
+            FileIO.writeSegments( writers[ wheel ], block.getSegments(), elements, unit );
+        }
+        catch( IOException | RuntimeException e )
+        {
+            subscription.cancel();
+            fail( e );
+            return;
+        }
+
+        subscription.request( 1 );
+    }
+
+
+    @Override
+    public void onError( Throwable throwable )
+    {
+        fail( throwable );
+    }
+
+
+    @Override
+    public void onComplete()
+    {
+        if( result.isDone() )
+            return;
+
+        long bytes = 0;
+        int wheels = ( writers == null ) ? 0 : writers.length;
+
+        try
+        {
+            for( int w = 0; w < wheels; w++ )
+            {
+                if( writers[ w ] == null )
+                    continue;
+
+                // Closing flushes what is left in the buffer, count the bytes after.
+                writers[ w ].close();
+                bytes += writers[ w ].getBytesWritten();
+                writers[ w ] = null;
+            }
+        }
+        catch( IOException e )
+        {
+            fail( e );
+            return;
+        }
+
+        Metrics.CSV_EXPORT.stop( start, (long) wheels * pathLength, bytes );
+
+        event.format = "csv";
+        event.file = savePathName.getPath();
+        event.segments = wheels * pathLength;
+        event.bytes = bytes;
+        event.commit();
+
+        result.complete( pathLength );
+    }
+
+
+    private void fail( Throwable throwable )
+    {
+        if( writers != null )
+        {
+            for( CsvWriter writer : writers )
+            {
+                if( writer == null )
+                    continue;
+
+                try
+                {
+                    writer.close();
+                }
+                catch( IOException e )
+                {
+                    // The export already failed, the first exception is the one that matters.
+                }
+            }
+        }
+
+        result.completeExceptionally( throwable );
+    }
+}
@@ -0,0 +1,304 @@
+package com.mammen.file_io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/******************************************************************************
+ *   CsvWriter
+ *       Writes the cells of a csv file straight into a byte buffer that is
+ *       flushed to a FileChannel when it fills up. Every cell is followed by
+ *       ", " and every line by the platform line separator, which is the
+ *       format the exporter has always written.
+ *
+ *       Doubles are formatted without creating any objects. The output is the
+ *       same as String.format( "%.<precision>f", value ) with a '.' as the
+ *       decimal separator. Values too big for the fast path or too close to
+ *       a rounding tie to be sure of the last digit are handed to
+ *       String.format, so the output never depends on which path was taken.
+ ******************************************************************************/
+public final class CsvWriter implements Closeable
+{
+    public static final int MAX_PRECISION = 9;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Longest cell the fast paths write: sign, 13 integer digits, '.', 9 decimals and the separator.
+    private static final int MAX_FAST_CELL = 32;
+
+    // |value| * 10^precision must stay below this for the fast path, so the scaled value fits in a long exactly enough.
+    private static final double FAST_LIMIT = 1e13;
+
+    private static final long[] POW10 = new long[ 19 ];
+
+    private static final byte[] DIGIT_TENS = new byte[ 100 ];
+    private static final byte[] DIGIT_ONES = new byte[ 100 ];
+
+    static
+    {
+        POW10[ 0 ] = 1;
+        for( int i = 1; i < POW10.length; i++ )
+        {
+            POW10[ i ] = POW10[ i - 1 ] * 10;
+        }
+
+        for( int i = 0; i < 100; i++ )
+        {
+            DIGIT_TENS[ i ] = (byte) ( '0' + i / 10 );
+            DIGIT_ONES[ i ] = (byte) ( '0' + i % 10 );
+        }
+    }
+
+    private static final byte[] SEPARATOR = { ',', ' ' };
+    private static final byte[] NEW_LINE = System.lineSeparator().getBytes( StandardCharsets.US_ASCII );
+
+    private final FileChannel channel;
+    private final byte[] buffer = new byte[ BUFFER_SIZE ];
+    private final ByteBuffer wrapped = ByteBuffer.wrap( buffer );
+    private int position = 0;
+
+    // Bytes handed to the channel so far.
+    private long written = 0;
+
+    private final int precision;
+    private final long scale;
+    private final String fallbackFormat;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param file The file to write, it is created or truncated.
+     * @param precision Number of digits written after the decimal point, 0 to MAX_PRECISION.
+     *************************************************************************/
+    public CsvWriter( File file, int precision ) throws IOException
+    {
+        if( precision < 0 || precision > MAX_PRECISION )
+            throw new IllegalArgumentException( "Precision must be between 0 and " + MAX_PRECISION + ": " + precision );
+
+        this.precision = precision;
+        this.scale = POW10[ precision ];
+        this.fallbackFormat = "%." + precision + "f";
+
+        channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING,
+                                                   StandardOpenOption.WRITE );
+    }
+
+
+    /**************************************************************************
+     * <p>Writes a text cell. The text must be plain ASCII.</p>
+     *************************************************************************/
+    public void cell( String text ) throws IOException
+    {
+        writeAscii( text );
+        write( SEPARATOR );
+    }
+
+
+    /**************************************************************************
+     * <p>Writes an integer cell, the same as "%d".</p>
+     *************************************************************************/
+    public void cell( long value ) throws IOException
+    {
+        ensureCapacity( MAX_FAST_CELL );
+
+        if( value < 0 )
+        {
+            buffer[ position++ ] = '-';
+
+            if( value == Long.MIN_VALUE )
+            {
+                // Can't be negated, not worth a fast path.
+                writeAscii( Long.toString( value ).substring( 1 ) );
+                write( SEPARATOR );
+                return;
+            }
+
+            value = -value;
+        }
+
+        writeDigits( value, 1 );
+        write( SEPARATOR );
+    }
+
+
+    /**************************************************************************
+     * <p>Writes a decimal cell, the same as "%.<precision>f".</p>
+     *************************************************************************/
+    public void cell( double value ) throws IOException
+    {
+        double abs = Math.abs( value );
+        double scaled = abs * scale;
+
+        // NaN fails this test as well.
+        if( !( scaled < FAST_LIMIT ) )
+        {
+            fallback( value );
+            return;
+        }
+
+        long whole = (long) scaled;
+        double fraction = scaled - whole;
+
+        // String.format rounds half up on the decimal digits of the value. When the
+        //  scaled value is this close to .5 the multiplication above may have
+        //  pushed it to the wrong side, so let String.format decide.
+        double tie = Math.abs( fraction - 0.5 );
+
+        if( tie < 0.05 && tie < 1e-6 + 16 * Math.ulp( scaled ) )
+        {
+            fallback( value );
+            return;
+        }
+
+        if( fraction > 0.5 )
+            whole++;
+
+        ensureCapacity( MAX_FAST_CELL );
+
+        // String.format keeps the sign of negative values that round to zero, -0.0 included.
+        if( Double.doubleToRawLongBits( value ) < 0 )
+            buffer[ position++ ] = '-';
+
+        writeDigits( whole / scale, 1 );
+
+        if( precision > 0 )
+        {
+            buffer[ position++ ] = '.';
+            writeDigits( whole % scale, precision );
+        }
+
+        write( SEPARATOR );
+    }
+
+
+    /**************************************************************************
+     * <p>Ends the current line.</p>
+     *************************************************************************/
+    public void endLine() throws IOException
+    {
+        write( NEW_LINE );
+    }
+
+
+    /**************************************************************************
+     * <p>Bytes written so far, including those still in the buffer.</p>
+     *************************************************************************/
+    public long getBytesWritten()
+    {
+        return written + position;
+    }
+
+
+    /**************************************************************************
+     * <p>Writes anything left in the buffer and closes the file.</p>
+     *************************************************************************/
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+
+    private void fallback( double value ) throws IOException
+    {
+        writeAscii( String.format( Locale.ROOT, fallbackFormat, value ) );
+        write( SEPARATOR );
+    }
+
+    /**************************************************************************
+     * <p>Writes a positive number with at least minDigits digits, padded
+     *      with leading zeros. The caller makes room in the buffer.</p>
+     *************************************************************************/
+    private void writeDigits( long value, int minDigits )
+    {
+        int count = Math.max( digitCount( value ), minDigits );
+        int end = position + count;
+        int i = end;
+
+        // Two digits at a time, from the last one back.
+        while( value >= 100 )
+        {
+            int pair = (int) ( value % 100 );
+            value /= 100;
+
+            buffer[ --i ] = DIGIT_ONES[ pair ];
+            buffer[ --i ] = DIGIT_TENS[ pair ];
+        }
+
+        int last = (int) value;
+
+        buffer[ --i ] = DIGIT_ONES[ last ];
+
+        if( last >= 10 )
+            buffer[ --i ] = DIGIT_TENS[ last ];
+
+        while( i > position )
+        {
+            buffer[ --i ] = '0';
+        }
+
+        position = end;
+    }
+
+    private static int digitCount( long value )
+    {
+        int count = 1;
+
+        while( count < POW10.length && value >= POW10[ count ] )
+        {
+            count++;
+        }
+
+        return count;
+    }
+
+    private void writeAscii( String text ) throws IOException
+    {
+        for( int i = 0; i < text.length(); i++ )
+        {
+            ensureCapacity( 1 );
+            buffer[ position++ ] = (byte) text.charAt( i );
+        }
+    }
+
+    private void write( byte[] bytes ) throws IOException
+    {
+        ensureCapacity( bytes.length );
+        System.arraycopy( bytes, 0, buffer, position, bytes.length );
+        position += bytes.length;
+    }
+
+    private void ensureCapacity( int bytes ) throws IOException
+    {
+        if( position + bytes > buffer.length )
+            flush();
+    }
+
+    private void flush() throws IOException
+    {
+        wrapped.clear();
+        wrapped.limit( position );
+
+        while( wrapped.hasRemaining() )
+        {
+            channel.write( wrapped );
+        }
+
+        written += position;
+        position = 0;
+    }
+}
@@ -1,17 +1,52 @@
 package com.mammen.file_io;
 
+import com.mammen.generator.SegmentBlock;
 import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.metrics.ExportEvent;
+import com.mammen.metrics.Metrics;
 import com.mammen.path.Path;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 public final class FileIO
 {
+    /******************************************************
+     *   Digits after the decimal point, the same as "%f".
+     ******************************************************/
+    public static final int DEFAULT_PRECISION = 6;
 
-    public static void savePath( Path path, File savePathName, List<Path.Elements> elements ) throws FileNotFoundException
+    // File name suffix of each wheel, in the order of wheels().
+    private static final String[] TANK_SUFFIXES = { "_left", "_right" };
+    private static final String[] SWERVE_SUFFIXES = { "_frontLeft", "_frontRight", "_backLeft", "_backRight" };
+
+
+    public static void savePath( Path path, File savePathName, List<Path.Elements> elements, Units unit ) throws IOException
+    {
+        savePath( path, savePathName, elements, unit, DEFAULT_PRECISION );
+    }
+
+
+    /**************************************************************************
+     * <p>Exports each wheel of the path to its own csv file.</p>
+     *
+     * @param path The path to export.
+     * @param savePathName Root name of the files. A suffix for each wheel and
+     *                     the .csv extension are appended to it.
+     * @param elements The columns to write, in order.
+     * @param unit The unit lengths are written in.
+     * @param precision Digits written after the decimal point.
+     *************************************************************************/
+    public static void savePath( Path path, File savePathName, List<Path.Elements> elements, Units unit, int precision ) throws IOException
     {
         File dir = savePathName.getParentFile();
 
@@ -22,130 +57,266 @@ public final class FileIO
                 return;
         }
 
-        DriveBase driveBase = path.getDriveBase();
+        ExportEvent event = new ExportEvent();
+        event.begin();
+        long start = Metrics.CSV_EXPORT.start();
+        long bytes = 0;
 
-        PrintWriter flPw;
-        PrintWriter frPw;
-        PrintWriter blPw = null;
-        PrintWriter brPw = null;
+        // Every wheel gets written, build any that are missing at once.
+        path.computeWheels();
 
-        if( driveBase == DriveBase.TANK )
+        Path.Columns[] wheelColumns = wheels( path );
+        int wheels = wheelColumns.length;
+
+        // Only the first file gets the column labels, the exporter has always done it this way.
+        for( int w = 0; w < wheels; w++ )
         {
-            flPw = new PrintWriter( new File(savePathName + "_left.csv" ) );
-            frPw = new PrintWriter( new File(savePathName + "_right.csv" ) );
+            bytes += saveWheel( wheelColumns[ w ], csvFile( savePathName, path.getDriveBase(), w ), elements, unit, precision, w == 0 );
         }
-        else // driveBase == DriveBase.SWERVE
+
+        Metrics.CSV_EXPORT.stop( start, (long) wheels * path.getLength(), bytes );
+
+        event.format = "csv";
+        event.file = savePathName.getPath();
+        event.segments = wheels * path.getLength();
+        event.bytes = bytes;
+        event.commit();
+    }
+
+
+    /**************************************************************************
+     * <p>Exports each wheel of a path to its own csv file while the path is
+     *      still being generated, see Generator.stream(). Each block is
+     *      written as it comes in. The files come out the same as with
+     *      savePath().</p>
+     *
+     * @param blocks The path to export, it is subscribed to once.
+     * @param savePathName Root name of the files. A suffix for each wheel and
+     *                     the .csv extension are appended to it.
+     * @param elements The columns to write, in order.
+     * @param unit The unit lengths are written in.
+     * @param precision Digits written after the decimal point.
+     * @return Completes with the number of segments in each file once every
+     *      file is written and closed, or with the exception that stopped
+     *      the generation or the export.
+     *************************************************************************/
+    public static CompletableFuture<Integer> streamPath( Flow.Publisher<SegmentBlock> blocks, File savePathName, List<Path.Elements> elements,
+                                                         Units unit, int precision )
+    {
+        CsvSubscriber subscriber = new CsvSubscriber( savePathName, elements, unit, precision );
+        blocks.subscribe( subscriber );
+
+        return subscriber.getResult();
+    }
+
+
+    /**************************************************************************
+     * <p>Exports the path to a single binary .traj file that can be memory
+     *      mapped on the robot. See {@link TrajectoryFile} for the layout.</p>
+     *
+     * @param path The path to export.
+     * @param savePathName Root name of the file, the .traj extension is appended to it.
+     * @param elements The columns to write, in order.
+     * @param unit The unit lengths are written in.
+     *************************************************************************/
+    public static void saveBinaryPath( Path path, File savePathName, List<Path.Elements> elements, Units unit ) throws IOException
+    {
+        File dir = savePathName.getParentFile();
+
+        // Create dir if it does not exist yet
+        if( dir != null && !dir.exists() && dir.isDirectory() )
         {
-            flPw = new PrintWriter( new File(savePathName + "_frontLeft.csv" ) );
-            frPw = new PrintWriter( new File(savePathName + "_frontRight.csv" ) );
-            blPw = new PrintWriter( new File(savePathName + "_backLeft.csv" ) );
-            brPw = new PrintWriter( new File(savePathName + "_backRight.csv" ) );
+            if( !dir.mkdirs() )
+                return;
+        }
+
+        ExportEvent event = new ExportEvent();
+        event.begin();
+        long start = Metrics.BINARY_EXPORT.start();
+        long bytes;
+
+        try( FileChannel channel = FileChannel.open( new File( savePathName + "." + TrajectoryFile.EXTENSION ).toPath(),
+                                                     StandardOpenOption.CREATE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING,
+                                                     StandardOpenOption.WRITE ) )
+        {
+            bytes = writeBinaryPath( path, channel, elements, unit );
         }
 
-        // Label each column in the csv
+        int segments = wheels( path ).length * path.getLength();
+
+        Metrics.BINARY_EXPORT.stop( start, segments, bytes );
+
+        event.format = TrajectoryFile.EXTENSION;
+        event.file = savePathName.getPath();
+        event.segments = segments;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+
+    /**************************************************************************
+     * <p>Writes a path in the .traj layout, see {@link TrajectoryFile}.</p>
+     *
+     * @param path The path to write.
+     * @param channel Where to write it, it is left open.
+     * @param elements The columns to write, in order.
+     * @param unit The unit lengths are written in.
+     * @return The number of bytes written, always
+     *      {@link TrajectoryFile#size(int, int, int)} of the path.
+     *************************************************************************/
+    public static long writeBinaryPath( Path path, WritableByteChannel channel, List<Path.Elements> elements, Units unit ) throws IOException
+    {
+        path.computeWheels();
+
+        return writeBinaryColumns( path.getDriveBase(), wheels( path ), channel, elements, unit );
+    }
+
+
+    /**************************************************************************
+     * <p>Writes trajectories in the .traj layout, see {@link TrajectoryFile}.
+     *      Every trajectory is stored as one wheel.</p>
+     *
+     * @param driveBase The drive base written to the header.
+     * @param wheels The trajectories, all of the same length.
+     * @param channel Where to write them, it is left open.
+     * @param elements The columns to write, in order.
+     * @param unit The unit lengths are written in.
+     * @return The number of bytes written.
+     *************************************************************************/
+    public static long writeBinaryColumns( DriveBase driveBase, Path.Columns[] wheels, WritableByteChannel channel,
+                                           List<Path.Elements> elements, Units unit ) throws IOException
+    {
+        int length = wheels[ 0 ].length();
+
+        ByteBuffer header = ByteBuffer.allocate( TrajectoryFile.headerSize( elements.size() ) ).order( ByteOrder.LITTLE_ENDIAN );
+
+        header.put( TrajectoryFile.MAGIC );
+        header.putShort( TrajectoryFile.VERSION );
+        header.put( (byte) driveBase.ordinal() );
+        header.put( (byte) wheels.length );
+        header.putDouble( length > 0 ? wheels[ 0 ].getDt()[ 0 ] : 0 );
+        header.putInt( length );
+        header.put( (byte) unit.ordinal() );
+        header.put( (byte) elements.size() );
+
         for( Path.Elements e : elements )
         {
-            flPw.print( e.toString() + ", " );
+            header.put( (byte) e.ordinal() );
         }
-        flPw.println();
 
+        // The rest of the header is already zero.
+        header.clear();
 
-        // Loop over every segment in the path.
-        for( int i = 0; i < path.getLength(); i++ )
+        // One column at a time, so the buffer never holds more than a single column.
+        ByteBuffer column = ByteBuffer.allocate( length * Double.BYTES ).order( ByteOrder.LITTLE_ENDIAN );
+
+        writeFully( channel, header );
+
+        for( Path.Columns wheel : wheels )
         {
-            // Write each element to the current line.
             for( Path.Elements e : elements )
             {
-                switch( e )
-                {
-                    case POSITION:
-                        flPw.print( String.format( "%f, ", path.getFrontLeftSegment( i ).position ) );
-                        frPw.print( String.format( "%f, ", path.getFrontRightSegment( i ).position ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%f, ", path.getBackLeftSegment( i ).position ) );
-                        brPw.print( String.format( "%f, ", path.getBackRightSegment( i ).position ) );
-                        break;
-
-                    case X_POINT:
-                        flPw.print( String.format( "%f, ", path.getFrontLeftSegment( i ).x ) );
-                        frPw.print( String.format( "%f, ", path.getFrontRightSegment( i ).x ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%f, ", path.getBackLeftSegment( i ).x ) );
-                        brPw.print( String.format( "%f, ", path.getBackRightSegment( i ).x ) );
-                        break;
-
-                    case Y_POINT:
-                        flPw.print( String.format( "%f, ", path.getFrontLeftSegment( i ).y ) );
-                        frPw.print( String.format( "%f, ", path.getFrontRightSegment( i ).y ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%f, ", path.getBackLeftSegment( i ).y ) );
-                        brPw.print( String.format( "%f, ", path.getBackRightSegment( i ).y ) );
-                        break;
-
-                    case HEADING:
-                        flPw.print( String.format( "%f, ", path.getFrontLeftSegment( i ).heading ) );
-                        frPw.print( String.format( "%f, ", path.getFrontRightSegment( i ).heading ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%f, ", path.getBackLeftSegment( i ).heading ) );
-                        flPw.print( String.format( "%f, ", path.getBackRightSegment( i ).heading ) );
-                        break;
-
-                    case VELOCITY:
-
-                        flPw.print( String.format( "%f, ", path.getFrontLeftSegment( i ).velocity ) );
-                        frPw.print( String.format( "%f, ", path.getFrontRightSegment( i ).velocity ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%f, ", path.getBackLeftSegment( i ).velocity ) );
-                        brPw.print( String.format( "%f, ", path.getBackRightSegment( i ).velocity ) );
-                        break;
-
-                    case ACCELERATION:
-                        flPw.print( String.format( "%f, ", path.getFrontLeftSegment( i ).acceleration ) );
-                        frPw.print( String.format( "%f, ", path.getFrontRightSegment( i ).acceleration ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%f, ", path.getBackLeftSegment( i ).acceleration ) );
-                        brPw.print( String.format( "%f, ", path.getBackRightSegment( i ).acceleration ) );
-                        break;
-
-                    case JERK:
-                        flPw.print( String.format( "%f, ", path.getFrontLeftSegment( i ).jerk ) );
-                        frPw.print( String.format( "%f, ", path.getFrontRightSegment( i ).jerk ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%f, ", path.getBackLeftSegment( i ).jerk ) );
-                        brPw.print( String.format( "%f, ", path.getBackRightSegment( i ).jerk ) );
-                        break;
-
-                    case DELTA_TIME:
-                        flPw.print( String.format( "%d, ", (int)( path.getFrontLeftSegment( i ).dt * 1000 ) ) );
-                        frPw.print( String.format( "%d, ", (int)( path.getFrontRightSegment( i ).dt * 1000 ) ) );
-                        if( blPw == null ) break;
-                        blPw.print( String.format( "%d, ", (int)( path.getBackLeftSegment( i ).dt * 1000 ) ) );
-                        brPw.print( String.format( "%d, ", (int)( path.getBackRightSegment( i ).dt * 1000 ) ) );
-                        break;
-
-                    default:
-                        // Do nothing
-                        break;
-                }
-            }
+                column.clear();
+                column.asDoubleBuffer().put( wheel.get( e, unit ) );
 
-            // End of line
-            flPw.println();
-            frPw.println();
-            if( blPw != null )
-            {
-                blPw.println();
-                brPw.println();
+                writeFully( channel, column );
             }
         }
 
-        // Close the files
-        flPw.close();
-        frPw.close();
-        if( blPw != null )
+        return TrajectoryFile.size( wheels.length, elements.size(), length );
+    }
+
+
+    /**************************************************************************
+     *  The wheels in the order the .traj layout stores them, which is also
+     *  the order SegmentBlock numbers them and the csv files are written in.
+     *************************************************************************/
+    private static Path.Columns[] wheels( Path path )
+    {
+        if( path.getDriveBase() == DriveBase.TANK )
+            return new Path.Columns[]{ path.getFrontLeft(), path.getFrontRight() };
+        else // driveBase == DriveBase.SWERVE
+            return new Path.Columns[]{ path.getFrontLeft(), path.getFrontRight(), path.getBackLeft(), path.getBackRight() };
+    }
+
+
+    /**************************************************************************
+     *  The csv file of one wheel.
+     *************************************************************************/
+    static File csvFile( File savePathName, DriveBase driveBase, int wheel )
+    {
+        String[] suffixes = ( driveBase == DriveBase.TANK ) ? TANK_SUFFIXES : SWERVE_SUFFIXES;
+
+        return new File( savePathName + suffixes[ wheel ] + ".csv" );
+    }
+
+
+    private static void writeFully( WritableByteChannel channel, ByteBuffer buffer ) throws IOException
+    {
+        while( buffer.hasRemaining() )
+        {
+            channel.write( buffer );
+        }
+    }
+
+
+    private static long saveWheel( Path.Columns wheel, File file, List<Path.Elements> elements, Units unit, int precision, boolean labels ) throws IOException
+    {
+        try( CsvWriter out = new CsvWriter( file, precision ) )
+        {
+            if( labels )
+                writeLabels( out, elements );
+
+            writeSegments( out, wheel, elements, unit );
+
+            return out.getBytesWritten();
+        }
+    }
+
+
+    /**************************************************************************
+     *  Labels each column in the csv.
+     *************************************************************************/
+    static void writeLabels( CsvWriter out, List<Path.Elements> elements ) throws IOException
+    {
+        for( Path.Elements e : elements )
         {
-            blPw.close();
-            brPw.close();
+            out.cell( e.toString() );
+        }
+        out.endLine();
+    }
+
+
+    /**************************************************************************
+     *  Writes a line for every segment.
+     *************************************************************************/
+    static void writeSegments( CsvWriter out, Path.Columns segments, List<Path.Elements> elements, Units unit ) throws IOException
+    {
+        // Look up the columns once instead of once per segment.
+        double[][] columns = new double[ elements.size() ][];
+        boolean[] millis = new boolean[ elements.size() ];
+
+        for( int c = 0; c < columns.length; c++ )
+        {
+            columns[ c ] = segments.get( elements.get( c ), unit );
+
+            // Delta time is written as whole milliseconds.
+            millis[ c ] = elements.get( c ) == Path.Elements.DELTA_TIME;
+        }
+
+        // Loop over every segment in the path.
+        for( int i = 0; i < segments.length(); i++ )
+        {
+            for( int c = 0; c < columns.length; c++ )
+            {
+                if( millis[ c ] )
+                    out.cell( (int)( columns[ c ][ i ] * 1000 ) );
+                else
+                    out.cell( columns[ c ][ i ] );
+            }
+
+            out.endLine();
         }
     }
 }
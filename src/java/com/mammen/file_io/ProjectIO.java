@@ -0,0 +1,290 @@
+package com.mammen.file_io;
+
+import com.mammen.generator.Generator;
+import com.mammen.generator.generator_vars.GeneratorVars;
+import com.mammen.generator.generator_vars.SharedGeneratorVars;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.metrics.Metrics;
+import com.mammen.metrics.ProjectEvent;
+import com.mammen.path.Waypoint;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Function;
+
+/******************************************************************************
+ *   ProjectIO
+ *       Reads and writes project (.xml) files. Nothing in here touches the
+ *       settings or the UI model, the caller hands in the vars to fill or
+ *       save, so projects can be loaded on any thread.
+ *
+ *       Projects are streamed with StAX, so a project with thousands of
+ *       waypoints never sits in memory as a document tree. The layout is:
+ *
+ *           <Path GeneratorType="..." (shared vars) (generator vars)>
+ *               <Waypoint>
+ *                   <X>..</X>
+ *                   <Y>..</Y>
+ *                   <Angle>..</Angle>
+ *               </Waypoint>
+ *               ...
+ *           </Path>
+ *
+ *       Lengths in the file are in the unit named by the unit attribute, the
+ *       unit the project was shown in. They are converted to and from meters
+ *       here, nothing past this class sees the unit of the file.
+ ******************************************************************************/
+public final class ProjectIO
+{
+    public static final String PROJECT_EXTENSION = "xml";
+
+    private static final String ENCODING = "UTF-8";
+    private static final String WAYPOINT_INDENT = "\n    ";
+    private static final String VALUE_INDENT = "\n        ";
+
+    // The factories are looked up once, creating readers and writers from them is thread safe.
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static
+    {
+        // Projects never need a DTD, don't let a file pull in anything from outside.
+        INPUT_FACTORY.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+        INPUT_FACTORY.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+        INPUT_FACTORY.setProperty( XMLInputFactory.IS_COALESCING, true );
+    }
+
+    private ProjectIO()
+    {
+    }
+
+
+    /**************************************************************************
+     * <p>Writes a project file. The file is replaced atomically, a failed
+     *      save leaves the old file in place.</p>
+     *
+     * @param file The file to write.
+     * @param type The generator the project uses.
+     * @param sharedVars The shared generator vars.
+     * @param vars The vars of the generator.
+     * @param waypoints The waypoints of the path.
+     *************************************************************************/
+    public static void save( File file, Generator.Type type, SharedGeneratorVars sharedVars, GeneratorVars vars, List<Waypoint> waypoints ) throws IOException, XMLStreamException
+    {
+        ProjectEvent event = new ProjectEvent();
+        event.begin();
+        long start = Metrics.PROJECT_SAVE.start();
+
+        AtomicFile.write( file, out -> save( out, type, sharedVars, vars, waypoints ) );
+
+        long bytes = file.length();
+        Metrics.PROJECT_SAVE.stop( start, 0, bytes );
+
+        event.operation = "save";
+        event.file = file.getPath();
+        event.waypoints = waypoints.size();
+        event.bytes = bytes;
+        event.commit();
+    }
+
+
+    /**************************************************************************
+     * <p>Writes a project to a stream. The stream is not closed.</p>
+     *************************************************************************/
+    public static void save( OutputStream stream, Generator.Type type, SharedGeneratorVars sharedVars, GeneratorVars vars, List<Waypoint> waypoints ) throws IOException, XMLStreamException
+    {
+        Writer out = new BufferedWriter( new OutputStreamWriter( stream, StandardCharsets.UTF_8 ) );
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter( out );
+
+        writer.writeStartDocument( ENCODING, "1.0" );
+
+        // XML entry for the path waypoints and vars
+        writer.writeStartElement( "Path" );
+
+        Units unit = sharedVars.getUnit();
+
+        // Save generator type
+        writer.writeAttribute( "GeneratorType", type.name() );
+
+        // Save shared vars
+        sharedVars.writeXMLAttributes( writer, unit );
+
+        // Write generator vars to xml file
+        vars.writeXMLAttributes( writer, unit );
+
+        // Write waypoints to xml file
+        for( Waypoint wp : waypoints )
+        {
+            writer.writeCharacters( WAYPOINT_INDENT );
+            writer.writeStartElement( "Waypoint" );
+
+            writeValue( writer, "X", unit.fromMeters( wp.getX() ) );
+            writeValue( writer, "Y", unit.fromMeters( wp.getY() ) );
+            writeValue( writer, "Angle", wp.getAngle() );
+
+            writer.writeCharacters( WAYPOINT_INDENT );
+            writer.writeEndElement();
+        }
+
+        writer.writeCharacters( "\n" );
+        writer.writeEndElement();
+        writer.writeCharacters( "\n" );
+
+        writer.writeEndDocument();
+        writer.close();
+        out.flush();
+    }
+
+    private static void writeValue( XMLStreamWriter writer, String name, double value ) throws XMLStreamException
+    {
+        writer.writeCharacters( VALUE_INDENT );
+        writer.writeStartElement( name );
+        writer.writeCharacters( Double.toString( value ) );
+        writer.writeEndElement();
+    }
+
+
+    /**************************************************************************
+     * <p>Reads a project file.</p>
+     *
+     * @param file The file to read.
+     * @param sharedVars Filled with the shared generator vars of the project.
+     * @param varsForType Called once with the generator type of the project.
+     *                    Returns the vars to fill for that generator.
+     * @param waypoints The waypoints of the project are added to this list.
+     * @return The generator type of the project.
+     *************************************************************************/
+    public static Generator.Type load( File file, SharedGeneratorVars sharedVars, Function<Generator.Type, GeneratorVars> varsForType, List<Waypoint> waypoints ) throws IOException, XMLStreamException
+    {
+        ProjectEvent event = new ProjectEvent();
+        event.begin();
+        long start = Metrics.PROJECT_LOAD.start();
+        int before = waypoints.size();
+        Generator.Type type;
+
+        try( InputStream in = new BufferedInputStream( new FileInputStream( file ) ) )
+        {
+            type = load( in, sharedVars, varsForType, waypoints );
+        }
+
+        long bytes = file.length();
+        Metrics.PROJECT_LOAD.stop( start, 0, bytes );
+
+        event.operation = "load";
+        event.file = file.getPath();
+        event.waypoints = waypoints.size() - before;
+        event.bytes = bytes;
+        event.commit();
+
+        return type;
+    }
+
+
+    /**************************************************************************
+     * <p>Reads a project from a stream. The stream is not closed.</p>
+     *************************************************************************/
+    public static Generator.Type load( InputStream in, SharedGeneratorVars sharedVars, Function<Generator.Type, GeneratorVars> varsForType, List<Waypoint> waypoints ) throws XMLStreamException
+    {
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader( in );
+
+        try
+        {
+            return read( reader, sharedVars, varsForType, waypoints );
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static Generator.Type read( XMLStreamReader reader, SharedGeneratorVars sharedVars, Function<Generator.Type, GeneratorVars> varsForType, List<Waypoint> waypoints ) throws XMLStreamException
+    {
+        Generator.Type type = null;
+        Units unit = null;
+        double x = 0, y = 0, angle = 0;
+
+        while( reader.hasNext() )
+        {
+            int event = reader.next();
+
+            if( event == XMLStreamConstants.START_ELEMENT )
+            {
+                switch( reader.getLocalName() )
+                {
+                    case "Path":
+                        // Get generator type
+                        String typeName = reader.getAttributeValue( null, "GeneratorType" );
+
+                        if( typeName == null )
+                            throw new XMLStreamException( "Project has no generator type.", reader.getLocation() );
+
+                        type = Generator.Type.valueOf( typeName );
+
+                        String unitName = reader.getAttributeValue( null, "unit" );
+
+                        if( unitName == null )
+                            throw new XMLStreamException( "Project has no unit.", reader.getLocation() );
+
+                        unit = Units.valueOf( unitName );
+
+                        // Get shared vars from xml file
+                        sharedVars.readXMLAttributes( reader, unit );
+
+                        // Get generator vars from xml file.
+                        varsForType.apply( type ).readXMLAttributes( reader, unit );
+                        break;
+
+                    case "Waypoint":
+                        x = 0;
+                        y = 0;
+                        angle = 0;
+                        break;
+
+                    case "X":
+                        x = Double.parseDouble( reader.getElementText().trim() );
+                        break;
+
+                    case "Y":
+                        y = Double.parseDouble( reader.getElementText().trim() );
+                        break;
+
+                    case "Angle":
+                        angle = Double.parseDouble( reader.getElementText().trim() );
+                        break;
+
+                    default:
+                        // Unknown elements are skipped.
+                        break;
+                }
+            }
+            else if( event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals( "Waypoint" ) )
+            {
+                if( unit == null )
+                    throw new XMLStreamException( "Waypoint outside of a path.", reader.getLocation() );
+
+                waypoints.add( new Waypoint( unit.toMeters( x ), unit.toMeters( y ), angle ) );
+            }
+        }
+
+        if( type == null )
+            throw new XMLStreamException( "Not a project file." );
+
+        return type;
+    }
+}
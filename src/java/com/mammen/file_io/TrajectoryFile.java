@@ -0,0 +1,256 @@
+package com.mammen.file_io;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.path.Path;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/******************************************************************************
+ *   TrajectoryFile
+ *       Binary (.traj) export of a path, meant to be loaded on the robot
+ *       without parsing any text. The file is memory mapped and every column
+ *       is handed out as a read only DoubleBuffer over the mapping, so nothing
+ *       is copied until the robot code reads it.
+ *
+ *       Everything is little endian:
+ *
+ *           offset  size  field
+ *           0       4     magic "MPGT"
+ *           4       2     version
+ *           6       1     drive base, DriveBase ordinal
+ *           7       1     number of wheels (2 for tank, 4 for swerve)
+ *           8       8     dt in seconds
+ *           16      4     number of segments
+ *           20      1     unit of the lengths, Units ordinal
+ *           21      1     number of columns
+ *           22      n     one Path.Elements ordinal per column
+ *           ...           zero padding up to a multiple of 8
+ *
+ *       The header is followed by one block per wheel, left then right for
+ *       tank and front left, front right, back left, back right for swerve.
+ *       Each block holds every column in header order, each column being
+ *       one double per segment. Lengths are in the unit named in the header,
+ *       for exports that is the unit of the project, the same as the csv
+ *       export. Version 1 files had no unit field and are not read.
+ ******************************************************************************/
+public final class TrajectoryFile
+{
+    public static final String EXTENSION = "traj";
+
+    static final byte[] MAGIC = "MPGT".getBytes( StandardCharsets.US_ASCII );
+    static final short VERSION = 2;
+
+    // Offset of the column list, everything before it has a fixed size.
+    static final int FIXED_HEADER_SIZE = 22;
+
+    /******************************************************
+     *   Wheel indexes for getColumn()
+     ******************************************************/
+    public static final int LEFT  = 0;
+    public static final int RIGHT = 1;
+
+    public static final int FRONT_LEFT  = 0;
+    public static final int FRONT_RIGHT = 1;
+    public static final int BACK_LEFT   = 2;
+    public static final int BACK_RIGHT  = 3;
+
+    private final ByteBuffer data;
+    private final int version;
+    private final DriveBase driveBase;
+    private final int numWheels;
+    private final double timeStep;
+    private final int length;
+    private final Units unit;
+    private final List<Path.Elements> elements;
+    private final int dataOffset;
+
+
+    private TrajectoryFile( ByteBuffer buffer ) throws IOException
+    {
+        // A view of its own, the byte order of the caller's buffer is left alone.
+        data = buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN );
+
+        if( data.limit() < FIXED_HEADER_SIZE )
+            throw new IOException( "Not a trajectory file, it is too short." );
+
+        for( int i = 0; i < MAGIC.length; i++ )
+        {
+            if( data.get( i ) != MAGIC[ i ] )
+                throw new IOException( "Not a trajectory file." );
+        }
+
+        version = data.getShort( 4 );
+
+        if( version != VERSION )
+            throw new IOException( "Unsupported trajectory file version: " + version );
+
+        int driveBaseIndex = data.get( 6 );
+
+        if( driveBaseIndex < 0 || driveBaseIndex >= DriveBase.values().length )
+            throw new IOException( "Unknown drive base: " + driveBaseIndex );
+
+        driveBase = DriveBase.values()[ driveBaseIndex ];
+        numWheels = data.get( 7 );
+        timeStep = data.getDouble( 8 );
+        length = data.getInt( 16 );
+
+        int unitIndex = data.get( 20 );
+
+        if( unitIndex < 0 || unitIndex >= Units.values().length )
+            throw new IOException( "Unknown unit: " + unitIndex );
+
+        unit = Units.values()[ unitIndex ];
+
+        int numColumns = data.get( 21 ) & 0xFF;
+
+        List<Path.Elements> columns = new ArrayList<>( numColumns );
+        for( int i = 0; i < numColumns; i++ )
+        {
+            int element = data.get( FIXED_HEADER_SIZE + i );
+
+            if( element < 0 || element >= Path.Elements.values().length )
+                throw new IOException( "Unknown column: " + element );
+
+            columns.add( Path.Elements.values()[ element ] );
+        }
+
+        elements = Collections.unmodifiableList( columns );
+        dataOffset = headerSize( numColumns );
+
+        long expected = size( numWheels, numColumns, length );
+
+        if( length < 0 || data.limit() != expected )
+            throw new IOException( "Trajectory file is " + data.limit() + " bytes, expected " + expected + "." );
+    }
+
+
+    /**************************************************************************
+     * <p>Reads a trajectory that is already in memory, such as one received
+     *      from the generation server. The columns read from the buffer.</p>
+     *
+     * @param data The whole trajectory, from position 0 to the limit.
+     * @return The trajectory.
+     *************************************************************************/
+    public static TrajectoryFile wrap( ByteBuffer data ) throws IOException
+    {
+        return new TrajectoryFile( data );
+    }
+
+
+    /**************************************************************************
+     * <p>Memory maps a trajectory file. The mapping stays valid after the
+     *      file is closed.</p>
+     *
+     * @param file The .traj file to open.
+     * @return The opened file.
+     *************************************************************************/
+    public static TrajectoryFile open( File file ) throws IOException
+    {
+        try( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) )
+        {
+            MappedByteBuffer map = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+
+            return new TrajectoryFile( map );
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Returns a column of one wheel. The buffer reads straight from the
+     *      mapped file, position 0 is the first segment.</p>
+     *
+     * @param wheel The wheel, one of LEFT, RIGHT, FRONT_LEFT, ...
+     * @param element The column to get.
+     * @return The column or null if the file doesn't contain it.
+     *************************************************************************/
+    public DoubleBuffer getColumn( int wheel, Path.Elements element )
+    {
+        if( wheel < 0 || wheel >= numWheels )
+            throw new IndexOutOfBoundsException( "Wheel " + wheel + " of " + numWheels );
+
+        int column = elements.indexOf( element );
+
+        if( column < 0 )
+            return null;
+
+        // The constructor checked that the whole file fits in the buffer, so the
+        //  offsets do as well once they are worked out without overflowing.
+        long offset = dataOffset + ( (long) wheel * elements.size() + column ) * length * Double.BYTES;
+        long end = offset + (long) length * Double.BYTES;
+
+        ByteBuffer slice = data.duplicate();
+        slice.position( (int) offset );
+        slice.limit( (int) end );
+
+        return slice.slice().order( ByteOrder.LITTLE_ENDIAN ).asDoubleBuffer().asReadOnlyBuffer();
+    }
+
+
+    public int getVersion()
+    {
+        return version;
+    }
+
+    public DriveBase getDriveBase()
+    {
+        return driveBase;
+    }
+
+    public int getNumWheels()
+    {
+        return numWheels;
+    }
+
+    public double getTimeStep()
+    {
+        return timeStep;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+
+    /**
+     * @return The unit of every length in the file.
+     */
+    public Units getUnit()
+    {
+        return unit;
+    }
+
+    public List<Path.Elements> getElements()
+    {
+        return elements;
+    }
+
+
+    /**************************************************************************
+     * @return Size in bytes of a trajectory with the given shape.
+     *************************************************************************/
+    public static long size( int numWheels, int numColumns, int length )
+    {
+        return headerSize( numColumns ) + (long) numWheels * numColumns * length * Double.BYTES;
+    }
+
+
+    /**************************************************************************
+     * @return Size of the header, padded so the columns are 8 byte aligned.
+     *************************************************************************/
+    static int headerSize( int numColumns )
+    {
+        return ( FIXED_HEADER_SIZE + numColumns + 7 ) & ~7;
+    }
+}
@@ -0,0 +1,539 @@
+package com.mammen.generator;
+
+import com.mammen.file_io.AtomicFile;
+import com.mammen.file_io.FileIO;
+import com.mammen.file_io.TrajectoryFile;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/******************************************************************************
+ *   DiskPathCache
+ *       Keeps generated paths on disk between runs, so starting the program
+ *       or opening a project shows a path that was generated before without
+ *       running the generator.
+ *
+ *       Each path is stored under the SHA-256 hash of everything that went
+ *       into it: the generator type and version, the config and the
+ *       waypoints. A file that is found holds exactly the path the generator
+ *       would make, so nothing ever has to be invalidated, changed inputs
+ *       simply hash to a file that isn't there yet.
+ *
+ *       Only the center trajectory is stored, in the .traj layout as a
+ *       single wheel holding every column in meters. The wheels are built
+ *       from it when they are needed, the same way the generators build them.
+ *
+ *       The files are bounded by their total size and the least recently
+ *       used ones are deleted first. The last modified time of a file is
+ *       when it was last used, so the order survives a restart. Writing,
+ *       deleting and the bookkeeping all happen on one background thread,
+ *       paths are read on the thread that asks for them.
+ ******************************************************************************/
+public class DiskPathCache
+{
+    public static final String DIR_NAME = "path-cache";
+
+    // Part of every hash. Raise it when the stored layout or the hashed inputs
+    //  change, files of the old version are then never found and age out.
+    private static final short FORMAT_VERSION = 2;
+
+    private static final String SUFFIX = "." + TrajectoryFile.EXTENSION;
+
+    private static final List<Path.Elements> ELEMENTS = List.of( Path.Elements.values() );
+
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final File dir;
+    private final long maxBytes;
+    private final ExecutorService worker;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /******************************************************
+     *   Only touched on the worker thread.
+     ******************************************************/
+    // File name to size. Access ordered, so the eldest entry is the least recently used.
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>( 16, 0.75f, true );
+    private long sizeBytes = 0;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param dir Where to keep the files, it is created if needed.
+     * @param maxBytes Upper bound on the total size of the files.
+     *************************************************************************/
+    public DiskPathCache( File dir, long maxBytes )
+    {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+
+        worker = Executors.newSingleThreadExecutor( r ->
+        {
+            Thread t = new Thread( r, "Path Cache" );
+            t.setDaemon( true );
+            return t;
+        });
+
+        // Listing the directory can take a moment, don't make the caller wait on it.
+        worker.execute( this::index );
+    }
+
+
+    /**************************************************************************
+     * <p>Wraps a generator so that generate() and stream() return the
+     *      stored path when there is one and store every path they have to
+     *      generate. Previews are never stored.</p>
+     *
+     * @param type The type of the generator, part of the hash.
+     * @param generator The generator to run on a miss.
+     *************************************************************************/
+    public Generator wrap( Generator.Type type, Generator generator )
+    {
+        return new CachedGenerator( type, generator );
+    }
+
+
+    /**************************************************************************
+     * <p>Reads a stored path.</p>
+     *
+     * @param type The type of the generator that would make the path.
+     * @param version The version of that generator.
+     * @param config The settings the path was generated with.
+     * @param waypoints The waypoints the path was generated for.
+     * @return The path or null if it isn't stored.
+     *************************************************************************/
+    public Path get( Generator.Type type, String version, GeneratorConfig config, List<Waypoint> waypoints )
+    {
+        return read( fileName( type, version, config, waypoints ), config );
+    }
+
+
+    /**************************************************************************
+     * <p>Stores a path in the background. Returns right away.</p>
+     *
+     * @param type The type of the generator that made the path.
+     * @param version The version of that generator.
+     * @param config The settings the path was generated with.
+     * @param waypoints The waypoints the path was generated for.
+     * @param path The path, it must not be modified afterwards.
+     *************************************************************************/
+    public void put( Generator.Type type, String version, GeneratorConfig config, List<Waypoint> waypoints, Path path )
+    {
+        write( fileName( type, version, config, waypoints ), path );
+    }
+
+
+    /**************************************************************************
+     * <p>Finishes the writes that are still waiting, then stops the worker.
+     *      Waits at most CLOSE_TIMEOUT_MS.</p>
+     *************************************************************************/
+    public void close()
+    {
+        worker.shutdown();
+
+        try
+        {
+            worker.awaitTermination( CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    public File getDir()
+    {
+        return dir;
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+
+    /**************************************************************************
+     * <p>Name of the file that holds the path for the given inputs.</p>
+     *************************************************************************/
+    static String fileName( Generator.Type type, String version, GeneratorConfig config, List<Waypoint> waypoints )
+    {
+        MessageDigest sha;
+
+        try
+        {
+            sha = MessageDigest.getInstance( "SHA-256" );
+        }
+        catch( NoSuchAlgorithmException e )
+        {
+            // Every Java platform has to support SHA-256.
+            throw new RuntimeException( e );
+        }
+
+        try( DataOutputStream out = new DataOutputStream( new DigestOutputStream( OutputStream.nullOutputStream(), sha ) ) )
+        {
+            out.writeShort( FORMAT_VERSION );
+            out.writeUTF( version );
+            out.write( PathCache.Key.of( type, config, waypoints ).getBytes() );
+        }
+        catch( IOException e )
+        {
+            // Can't happen, nothing is written anywhere.
+            throw new UncheckedIOException( e );
+        }
+
+        StringBuilder name = new StringBuilder( 64 + SUFFIX.length() );
+
+        for( byte b : sha.digest() )
+        {
+            name.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) );
+            name.append( Character.forDigit( b & 0xF, 16 ) );
+        }
+
+        return name.append( SUFFIX ).toString();
+    }
+
+
+    private Path read( String name, GeneratorConfig config )
+    {
+        File file = new File( dir, name );
+        byte[] data;
+
+        try
+        {
+            // Read into memory rather than mapping, a mapped file can't be deleted on Windows.
+            data = Files.readAllBytes( file.toPath() );
+        }
+        catch( NoSuchFileException e )
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        catch( IOException e )
+        {
+            e.printStackTrace();
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Path.Columns center;
+
+        try
+        {
+            TrajectoryFile traj = TrajectoryFile.wrap( ByteBuffer.wrap( data ) );
+
+            if( traj.getNumWheels() != 1 || traj.getLength() < 1 || traj.getDriveBase() != config.getDriveBase()
+                || traj.getUnit() != Units.METERS || !traj.getElements().equals( ELEMENTS ) )
+                throw new IOException( "Not a stored path: " + file );
+
+            center = new Path.Columns( traj.getLength() );
+
+            for( Path.Elements e : ELEMENTS )
+            {
+                traj.getColumn( 0, e ).get( center.get( e ) );
+            }
+        }
+        catch( IOException e )
+        {
+            // Damaged somehow. Drop it, the path is generated and stored again.
+            misses.incrementAndGet();
+            execute( () -> remove( name ) );
+            return null;
+        }
+
+        hits.incrementAndGet();
+        execute( () -> used( name ) );
+
+        return WheelModifier.path( center, config );
+    }
+
+
+    private void write( String name, Path path )
+    {
+        Path.Columns center = path.getCenter();
+
+        // Too big to ever fit.
+        if( TrajectoryFile.size( 1, ELEMENTS.size(), center.length() ) > maxBytes )
+            return;
+
+        execute( () ->
+        {
+            if( files.containsKey( name ) )
+            {
+                used( name );
+                return;
+            }
+
+            File file = new File( dir, name );
+
+            try
+            {
+                AtomicFile.write( file, out -> FileIO.writeBinaryColumns( path.getDriveBase(), new Path.Columns[]{ center },
+                                                                         Channels.newChannel( out ), ELEMENTS, Units.METERS ) );
+            }
+            catch( IOException e )
+            {
+                e.printStackTrace();
+                return;
+            }
+
+            long size = file.length();
+
+            files.put( name, size );
+            sizeBytes += size;
+
+            evict();
+        });
+    }
+
+
+    /**************************************************************************
+     *  Runs on the worker, before anything else. Indexes the files left by
+     *  earlier runs, least recently used first.
+     *************************************************************************/
+    private void index()
+    {
+        if( !dir.isDirectory() && !dir.mkdirs() )
+        {
+            System.err.println( "Could not create the path cache directory: " + dir );
+            return;
+        }
+
+        File[] found = dir.listFiles();
+
+        if( found == null )
+            return;
+
+        Arrays.sort( found, Comparator.comparingLong( File::lastModified ) );
+
+        for( File file : found )
+        {
+            String name = file.getName();
+
+            if( name.endsWith( SUFFIX ) && !name.startsWith( "." ) )
+            {
+                long size = file.length();
+
+                files.put( name, size );
+                sizeBytes += size;
+            }
+            else if( name.startsWith( "." ) && name.endsWith( ".tmp" ) )
+            {
+                // A write that never finished.
+                file.delete();
+            }
+        }
+
+        evict();
+    }
+
+
+    /**************************************************************************
+     *  Runs on the worker. Marks a file as just used.
+     *************************************************************************/
+    private void used( String name )
+    {
+        // Moves it to the end of the access order.
+        if( files.get( name ) == null )
+            return;
+
+        if( !new File( dir, name ).setLastModified( System.currentTimeMillis() ) )
+            files.remove( name );
+    }
+
+
+    /**************************************************************************
+     *  Runs on the worker.
+     *************************************************************************/
+    private void remove( String name )
+    {
+        Long size = files.remove( name );
+
+        if( size != null )
+            sizeBytes -= size;
+
+        new File( dir, name ).delete();
+    }
+
+
+    /**************************************************************************
+     *  Runs on the worker. Deletes the least recently used files until the
+     *  rest fit.
+     *************************************************************************/
+    private void evict()
+    {
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+
+        while( sizeBytes > maxBytes && it.hasNext() )
+        {
+            Map.Entry<String, Long> eldest = it.next();
+
+            // A file that can't be deleted now is picked up again on the next start.
+            new File( dir, eldest.getKey() ).delete();
+
+            sizeBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+
+    private void execute( Runnable task )
+    {
+        try
+        {
+            worker.execute( task );
+        }
+        catch( RejectedExecutionException e )
+        {
+            // Closed, the program is exiting.
+        }
+    }
+
+
+    /**************************************************************************
+     *  Passes the blocks of a streamed path on and stores the path once the
+     *  last one has gone through. Nothing is stored if the stream fails or
+     *  the subscriber cancels.
+     *************************************************************************/
+    private final class Storing implements Flow.Subscriber<SegmentBlock>
+    {
+        private final String name;
+        private final Flow.Subscriber<? super SegmentBlock> subscriber;
+        private final SegmentCollector collector = new SegmentCollector();
+
+        Storing( String name, Flow.Subscriber<? super SegmentBlock> subscriber )
+        {
+            this.name = name;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void onSubscribe( Flow.Subscription subscription )
+        {
+            subscriber.onSubscribe( subscription );
+        }
+
+        @Override
+        public void onNext( SegmentBlock block )
+        {
+            collector.add( block );
+            subscriber.onNext( block );
+        }
+
+        @Override
+        public void onError( Throwable throwable )
+        {
+            subscriber.onError( throwable );
+        }
+
+        @Override
+        public void onComplete()
+        {
+            if( collector.isComplete() )
+                write( name, collector.toPath() );
+
+            subscriber.onComplete();
+        }
+    }
+
+
+    /**************************************************************************
+     *  A generator that looks in the cache first.
+     *************************************************************************/
+    private final class CachedGenerator implements Generator
+    {
+        private final Generator.Type type;
+        private final Generator generator;
+
+        CachedGenerator( Generator.Type type, Generator generator )
+        {
+            this.type = type;
+            this.generator = generator;
+        }
+
+        @Override
+        public Path generate( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException
+        {
+            String name = fileName( type, generator.getVersion(), config, waypointList );
+            Path path = read( name, config );
+
+            if( path == null )
+            {
+                path = generator.generate( waypointList, config );
+                write( name, path );
+            }
+
+            return path;
+        }
+
+        @Override
+        public Path preview( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException
+        {
+            return generator.preview( waypointList, config );
+        }
+
+        /**********************************************************************
+         *  A stored path is cut into blocks. Otherwise the path is streamed
+         *  from the generator and stored once the subscriber has seen all of
+         *  it. The file is read when the publisher is subscribed to.
+         *********************************************************************/
+        @Override
+        public Flow.Publisher<SegmentBlock> stream( List<Waypoint> waypointList, GeneratorConfig config, Executor executor )
+        {
+            return subscriber ->
+            {
+                String name = fileName( type, generator.getVersion(), config, waypointList );
+                Path path = read( name, config );
+
+                if( path != null )
+                    new SegmentPublisher( executor, sink -> sink.submitAll( path ) ).subscribe( subscriber );
+                else
+                    generator.stream( waypointList, config, executor ).subscribe( new Storing( name, subscriber ) );
+            };
+        }
+
+        @Override
+        public String getVersion()
+        {
+            return generator.getVersion();
+        }
+    }
+}
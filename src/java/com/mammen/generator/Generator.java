@@ -4,13 +4,15 @@ import com.mammen.path.Path;
 import com.mammen.path.Waypoint;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 
-@FunctionalInterface
 public interface Generator
 {
     enum Type
     {
-        PATHFINDER_V1( "Pathfinder Version 1" );
+        PATHFINDER_V1( "Pathfinder Version 1" ),
+        JAVA( "Pure Java (Pathfinder V1 algorithm)" );
 
         private String label;
 
@@ -42,6 +44,57 @@ public interface Generator
         }
     }
 
-    Path generate( List<Waypoint> waypointList ) throws PathGenerationException, NotEnoughPointsException;
+    /**
+     * Names the code that turns waypoints into a path, such as the version
+     * of the library behind the generator. It changes whenever the same
+     * inputs may give a different path, paths stored by another version
+     * are not reused.
+     */
+    String getVersion();
+
+    /**
+     * Generates a Path that fits the given waypoints.
+     *
+     * Generators read nothing but their arguments, so any number of paths
+     * can be generated at once from different threads. The waypoints must
+     * not change while the path is generated.
+     *
+     * Implementations may keep work from previous calls (such as fitted
+     * splines) and reuse it when only part of the waypoint list changed,
+     * so dragging a single waypoint doesn't rebuild the whole path.
+     */
+    Path generate( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException;
+
+    /**
+     * Generates a rough Path that is cheap enough to show while a waypoint
+     * is being dragged. The result must never be exported or cached, a
+     * full generate() follows once the drag ends.
+     *
+     * By default this is the same as generate().
+     */
+    default Path preview( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException
+    {
+        return generate( waypointList, config );
+    }
+
+    /**
+     * Generates a Path like generate() but hands it out a block of segments
+     * at a time, so a subscriber can start writing or drawing the start of
+     * a long path while the rest is still being generated. Each wheel's
+     * blocks arrive in order. Only a few blocks are buffered, the generation
+     * waits for a subscriber that falls behind.
+     *
+     * Nothing happens until the publisher is subscribed to. Failures reach
+     * the subscriber's onError().
+     *
+     * By default the whole path is generated first and then cut into blocks.
+     *
+     * @param executor Runs the generation and delivers the blocks. It must be
+     *                 able to run two tasks at once, such as the common pool.
+     */
+    default Flow.Publisher<SegmentBlock> stream( List<Waypoint> waypointList, GeneratorConfig config, Executor executor )
+    {
+        return new SegmentPublisher( executor, sink -> sink.submitAll( generate( waypointList, config ) ) );
+    }
 
 }
\ No newline at end of file
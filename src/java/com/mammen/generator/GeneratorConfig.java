@@ -0,0 +1,187 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.GeneratorVars;
+import com.mammen.generator.generator_vars.PfV1GeneratorVars;
+import com.mammen.generator.generator_vars.PfV1GeneratorVars.FitMethod;
+import com.mammen.generator.generator_vars.SharedGeneratorVars;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Objects;
+
+/******************************************************************************
+ *   GeneratorConfig
+ *       Every setting a generator reads, copied out of the vars at one point
+ *       in time. The vars are JavaFX properties that belong to the JavaFX
+ *       thread, a config never changes once it is made, so it can be handed
+ *       to any number of generations on any thread. Changing a setting while
+ *       a path is being generated only affects the next config.
+ *
+ *       Lengths are in meters, like everywhere else in the model.
+ ******************************************************************************/
+public final class GeneratorConfig
+{
+    private final double timeStep;
+    private final DriveBase driveBase;
+    private final double wheelBaseW;
+    private final double wheelBaseD;
+    private final double velocity;
+    private final double accel;
+    private final double jerk;
+    private final FitMethod fitMethod;
+    private final boolean reversed;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param timeStep Seconds between segments.
+     * @param driveBase The drive base the wheels are built for.
+     * @param wheelBaseW Distance between the left and right wheels.
+     * @param wheelBaseD Distance between the front and back wheels, only used by swerve.
+     * @param velocity Max velocity.
+     * @param accel Max acceleration.
+     * @param jerk Max jerk.
+     * @param fitMethod Spline used between waypoints.
+     * @param reversed Whether the robot drives the path backwards.
+     *************************************************************************/
+    public GeneratorConfig( double timeStep, DriveBase driveBase, double wheelBaseW, double wheelBaseD,
+                            double velocity, double accel, double jerk, FitMethod fitMethod, boolean reversed )
+    {
+        this.timeStep = timeStep;
+        this.driveBase = Objects.requireNonNull( driveBase );
+        this.wheelBaseW = wheelBaseW;
+        this.wheelBaseD = wheelBaseD;
+        this.velocity = velocity;
+        this.accel = accel;
+        this.jerk = jerk;
+        this.fitMethod = Objects.requireNonNull( fitMethod );
+        this.reversed = reversed;
+    }
+
+
+    /**************************************************************************
+     * <p>Copies the current values of the vars. Call it on the thread that
+     *      owns the vars, for the UI that is the JavaFX thread.</p>
+     *
+     * @param sharedVars The shared generator vars.
+     * @param vars The vars of the generator, both generators use PfV1GeneratorVars.
+     *************************************************************************/
+    public static GeneratorConfig of( SharedGeneratorVars sharedVars, GeneratorVars vars )
+    {
+        if( !( vars instanceof PfV1GeneratorVars ) )
+            throw new IllegalArgumentException( "No generator uses these vars: " + vars.getClass().getName() );
+
+        PfV1GeneratorVars pfVars = (PfV1GeneratorVars) vars;
+
+        return new GeneratorConfig( sharedVars.getTimeStep(),
+                                    sharedVars.getDriveBase(),
+                                    sharedVars.getWheelBaseW(),
+                                    sharedVars.getWheelBaseD(),
+                                    pfVars.getVelocity(),
+                                    pfVars.getAccel(),
+                                    pfVars.getJerk(),
+                                    pfVars.getFitMethod(),
+                                    pfVars.isIsReversed() );
+    }
+
+
+    /**************************************************************************
+     * <p>Writes every value in a fixed order. Two configs that write the same
+     *      bytes generate the same path.</p>
+     *************************************************************************/
+    public void writeCacheKey( DataOutput out ) throws IOException
+    {
+        out.writeUTF( driveBase.name() );
+        out.writeDouble( timeStep );
+        out.writeDouble( wheelBaseW );
+        out.writeDouble( wheelBaseD );
+        out.writeUTF( fitMethod.name() );
+        out.writeDouble( velocity );
+        out.writeDouble( accel );
+        out.writeDouble( jerk );
+        out.writeBoolean( reversed );
+    }
+
+    public double getTimeStep()
+    {
+        return timeStep;
+    }
+
+    public DriveBase getDriveBase()
+    {
+        return driveBase;
+    }
+
+    public double getWheelBaseW()
+    {
+        return wheelBaseW;
+    }
+
+    public double getWheelBaseD()
+    {
+        return wheelBaseD;
+    }
+
+    public double getVelocity()
+    {
+        return velocity;
+    }
+
+    public double getAccel()
+    {
+        return accel;
+    }
+
+    public double getJerk()
+    {
+        return jerk;
+    }
+
+    public FitMethod getFitMethod()
+    {
+        return fitMethod;
+    }
+
+    public boolean isReversed()
+    {
+        return reversed;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if( this == o )
+            return true;
+
+        if( !( o instanceof GeneratorConfig ) )
+            return false;
+
+        GeneratorConfig other = (GeneratorConfig) o;
+
+        return Double.compare( timeStep, other.timeStep ) == 0
+            && driveBase == other.driveBase
+            && Double.compare( wheelBaseW, other.wheelBaseW ) == 0
+            && Double.compare( wheelBaseD, other.wheelBaseD ) == 0
+            && Double.compare( velocity, other.velocity ) == 0
+            && Double.compare( accel, other.accel ) == 0
+            && Double.compare( jerk, other.jerk ) == 0
+            && fitMethod == other.fitMethod
+            && reversed == other.reversed;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash( timeStep, driveBase, wheelBaseW, wheelBaseD, velocity, accel, jerk, fitMethod, reversed );
+    }
+
+    @Override
+    public String toString()
+    {
+        return "GeneratorConfig{timeStep=" + timeStep + ", driveBase=" + driveBase + ", wheelBaseW=" + wheelBaseW
+             + ", wheelBaseD=" + wheelBaseD + ", velocity=" + velocity + ", accel=" + accel + ", jerk=" + jerk
+             + ", fitMethod=" + fitMethod + ", reversed=" + reversed + "}";
+    }
+}
@@ -0,0 +1,328 @@
+package com.mammen.generator;
+
+import com.mammen.metrics.GenerationEvent;
+import com.mammen.metrics.GenerationRequestEvent;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/******************************************************************************
+ *   GeneratorService
+ *       Runs path generation on a dedicated worker thread so callers (the
+ *       JavaFX thread) never block on a Generator. Requests are "latest wins":
+ *       submitting a new request cancels any request that has not started yet
+ *       and discards the result of one that is already running. Results are
+ *       handed to the publisher executor, which for the UI is Platform::runLater.
+ *
+ *       A streamed request also hands out the blocks of the path while it is
+ *       generated, so the start of a long path can be shown before the end
+ *       is known. The next block is only asked for once the publisher has
+ *       run the last one, so a busy publisher holds the generation back
+ *       instead of queueing up the whole path.
+ ******************************************************************************/
+public class GeneratorService
+{
+    // Blocks asked for ahead of the one being published.
+    private static final int BLOCKS_AHEAD = 2;
+
+    private final ExecutorService worker;
+    private final ExecutorService streams;
+    private final Executor publisher;
+    private final Consumer<Path> prepare;
+
+    // Id of the newest request. Anything older is stale.
+    private final AtomicLong latestRequest = new AtomicLong();
+
+    // The last job handed to the worker.
+    private Future<?> pending;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param publisher Executor that results and failures are delivered on.
+     *************************************************************************/
+    public GeneratorService( Executor publisher )
+    {
+        this( publisher, path -> {} );
+    }
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param publisher Executor that results and failures are delivered on.
+     * @param prepare Runs on the worker with every new path before it is
+     *                published, for work the consumers would otherwise do
+     *                on the publisher, such as building the wheels.
+     *************************************************************************/
+    public GeneratorService( Executor publisher, Consumer<Path> prepare )
+    {
+        this.publisher = publisher;
+        this.prepare = prepare;
+
+        worker = Executors.newSingleThreadExecutor( r ->
+        {
+            Thread t = new Thread( r, "Path Generator" );
+            t.setDaemon( true );
+            return t;
+        });
+
+        // Generates streamed paths and delivers their blocks, the worker only waits for them.
+        streams = Executors.newCachedThreadPool( r ->
+        {
+            Thread t = new Thread( r, "Path Stream" );
+            t.setDaemon( true );
+            return t;
+        });
+    }
+
+
+    /**************************************************************************
+     * <p>Queues a generation request, superseding every earlier request.</p>
+     *
+     * @param generator The generator to run.
+     * @param config The settings to generate with.
+     * @param waypoints The waypoints to generate a path for. This list must not
+     *                  be modified after it has been submitted.
+     * @param onSuccess Called with the new path if this is still the latest request.
+     * @param onFailure Called with the exception if this is still the latest request.
+     *************************************************************************/
+    public void submit( Generator generator, GeneratorConfig config, List<Waypoint> waypoints, Consumer<Path> onSuccess, Consumer<Exception> onFailure )
+    {
+        submit( generator, config, waypoints, false, onSuccess, onFailure );
+    }
+
+
+    /**************************************************************************
+     * <p>Queues a generation request, superseding every earlier request.</p>
+     *
+     * @param generator The generator to run.
+     * @param config The settings to generate with.
+     * @param waypoints The waypoints to generate a path for. This list must not
+     *                  be modified after it has been submitted.
+     * @param preview Use {@link Generator#preview(List, GeneratorConfig)} instead of a full generation.
+     * @param onSuccess Called with the new path if this is still the latest request.
+     * @param onFailure Called with the exception if this is still the latest request.
+     *************************************************************************/
+    public void submit( Generator generator, GeneratorConfig config, List<Waypoint> waypoints, boolean preview, Consumer<Path> onSuccess, Consumer<Exception> onFailure )
+    {
+        queue( generator, waypoints.size(), preview,
+               id -> preview ? generator.preview( waypoints, config ) : generator.generate( waypoints, config ),
+               onSuccess, onFailure );
+    }
+
+
+    /**************************************************************************
+     * <p>Queues a generation request that hands out the path a block at a
+     *      time, see {@link Generator#stream(List, GeneratorConfig, Executor)}.
+     *      Supersedes every earlier request.</p>
+     *
+     * @param generator The generator to run.
+     * @param config The settings to generate with.
+     * @param waypoints The waypoints to generate a path for. This list must not
+     *                  be modified after it has been submitted.
+     * @param onBlock Called with each block while this is still the latest request.
+     * @param onSuccess Called with the whole path, every wheel built, if this
+     *                  is still the latest request.
+     * @param onFailure Called with the exception if this is still the latest request.
+     *************************************************************************/
+    public void stream( Generator generator, GeneratorConfig config, List<Waypoint> waypoints, Consumer<SegmentBlock> onBlock,
+                        Consumer<Path> onSuccess, Consumer<Exception> onFailure )
+    {
+        queue( generator, waypoints.size(), false, id ->
+        {
+            BlockSubscriber subscriber = new BlockSubscriber( id, onBlock );
+            generator.stream( waypoints, config, streams ).subscribe( subscriber );
+
+            try
+            {
+                return subscriber.path.get();
+            }
+            catch( InterruptedException e )
+            {
+                // A newer request came in.
+                subscriber.cancel();
+                throw e;
+            }
+            catch( ExecutionException e )
+            {
+                // Report what went wrong, not that it went wrong on another thread.
+                throw ( e.getCause() instanceof Exception ) ? (Exception) e.getCause() : e;
+            }
+        }, onSuccess, onFailure );
+    }
+
+
+    private synchronized void queue( Generator generator, int numWaypoints, boolean preview, Job job,
+                                     Consumer<Path> onSuccess, Consumer<Exception> onFailure )
+    {
+        long id = latestRequest.incrementAndGet();
+
+        GenerationRequestEvent request = new GenerationRequestEvent();
+        request.requestId = id;
+        request.preview = preview;
+        request.waypoints = numWaypoints;
+        request.commit();
+
+        // Don't bother running a request that nobody is waiting on.
+        if( pending != null )
+            pending.cancel( true );
+
+        pending = worker.submit( () ->
+        {
+            if( id != latestRequest.get() )
+                return;
+
+            GenerationEvent event = new GenerationEvent();
+            event.begin();
+            event.requestId = id;
+            event.generator = generator.getClass().getSimpleName();
+            event.preview = preview;
+
+            try
+            {
+                Path path = job.run( id );
+
+                prepare.accept( path );
+
+                event.driveBase = path.getDriveBase().name();
+                event.segments = path.getLength();
+                event.commit();
+
+                publish( id, () -> onSuccess.accept( path ) );
+            }
+            catch( Exception e )
+            {
+                event.failed = true;
+                event.commit();
+
+                publish( id, () -> onFailure.accept( e ) );
+            }
+        });
+    }
+
+
+    /**************************************************************************
+     * <p>Discards every outstanding request.</p>
+     *************************************************************************/
+    public synchronized void cancel()
+    {
+        latestRequest.incrementAndGet();
+
+        if( pending != null )
+            pending.cancel( true );
+    }
+
+
+    /**************************************************************************
+     * <p>Stops the worker thread. No more requests can be submitted.</p>
+     *************************************************************************/
+    public synchronized void shutdown()
+    {
+        cancel();
+        worker.shutdownNow();
+        streams.shutdownNow();
+    }
+
+
+    private void publish( long id, Runnable result )
+    {
+        // Check again on the publishing thread, a newer request may have come in while we waited.
+        publisher.execute( () ->
+        {
+            if( id == latestRequest.get() )
+                result.run();
+        });
+    }
+
+
+    /**************************************************************************
+     *  Makes the path of a request, on the worker.
+     *************************************************************************/
+    private interface Job
+    {
+        Path run( long id ) throws Exception;
+    }
+
+
+    /**************************************************************************
+     *  Publishes the blocks of a streamed request and puts the path together.
+     *************************************************************************/
+    private final class BlockSubscriber implements Flow.Subscriber<SegmentBlock>
+    {
+        private final long id;
+        private final Consumer<SegmentBlock> onBlock;
+        private final SegmentCollector collector = new SegmentCollector();
+
+        // Completed with the whole path once the last block is in.
+        final CompletableFuture<Path> path = new CompletableFuture<>();
+
+        private volatile Flow.Subscription subscription;
+
+        BlockSubscriber( long id, Consumer<SegmentBlock> onBlock )
+        {
+            this.id = id;
+            this.onBlock = onBlock;
+        }
+
+        @Override
+        public void onSubscribe( Flow.Subscription subscription )
+        {
+            this.subscription = subscription;
+            subscription.request( BLOCKS_AHEAD );
+        }
+
+        @Override
+        public void onNext( SegmentBlock block )
+        {
+            if( id != latestRequest.get() )
+            {
+                cancel();
+                return;
+            }
+
+            collector.add( block );
+
+            publish( id, () ->
+            {
+                onBlock.accept( block );
+                subscription.request( 1 );
+            });
+        }
+
+        @Override
+        public void onError( Throwable throwable )
+        {
+            path.completeExceptionally( throwable );
+        }
+
+        @Override
+        public void onComplete()
+        {
+            // A publisher that ends early would otherwise hand out a partial path, or none at all.
+            if( collector.isComplete() )
+                path.complete( collector.toPath() );
+            else
+                path.completeExceptionally( new Generator.PathGenerationException( "The path ended before every segment was generated." ) );
+        }
+
+        void cancel()
+        {
+            if( subscription != null )
+                subscription.cancel();
+
+            path.cancel( false );
+        }
+    }
+}
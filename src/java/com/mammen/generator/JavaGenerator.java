@@ -0,0 +1,457 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.PfV1GeneratorVars.FitMethod;
+import com.mammen.metrics.Metrics;
+import com.mammen.metrics.Timer;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+/******************************************************************************
+ *   JavaGenerator
+ *       A pure Java port of the Pathfinder V1 algorithm. It uses the same
+ *       generator vars as PfV1Generator but needs no native library and
+ *       writes its results straight into a Path.
+ *
+ *       1. Fit a cubic or quintic Hermite spline between each pair of waypoints.
+ *       2. Measure the arc length of each spline.
+ *       3. Build an S-curve (jerk limited) velocity profile over the total length.
+ *       4. Walk the splines by distance to get the x, y and heading of each segment.
+ *       5. Offset the center trajectory to each wheel of the drive base. This
+ *          happens the first time a wheel is asked for, see Path.computeWheels().
+ *
+ *       Steps 3 to 5 carry only a little state from one segment to the next,
+ *       so stream() runs them a block of segments at a time and hands each
+ *       block out as soon as it is done.
+ *
+ *       Fitting a spline and measuring its arc length is the expensive part, so
+ *       the splines of the last generated path are kept. When a single waypoint
+ *       moves only the two splines touching it are fitted again, the rest are
+ *       reused and only the profile is rebuilt.
+ *
+ *       Previews fit the changed splines with far fewer arc length samples
+ *       and leave the kept splines alone, so the rough splines of a drag
+ *       never end up in a full quality path.
+ ******************************************************************************/
+public class JavaGenerator implements Generator
+{
+    // Samples used to build the arc length table of each spline.
+    static final int ARC_LENGTH_SAMPLES = 10_000;
+
+    // Samples used for splines that are only fitted for a preview.
+    static final int PREVIEW_ARC_LENGTH_SAMPLES = 500;
+
+    // Raise this whenever a change alters the generated paths, so paths stored
+    //  by an older version (see DiskPathCache) are generated again.
+    private static final int VERSION = 1;
+
+    // Splines from the last call to generate(), keyed by the waypoints they join.
+    //  A map is never changed once it is stored here, so generations running
+    //  at the same time can share it. The last one to finish replaces it.
+    private volatile Map<SplineKey, Spline> splineCache = Collections.emptyMap();
+
+    public JavaGenerator()
+    {
+    }
+
+    @Override
+    public String getVersion()
+    {
+        return "Java " + VERSION;
+    }
+
+    @Override
+    public Path generate( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException
+    {
+        return generate( waypointList, config, false );
+    }
+
+    @Override
+    public Path preview( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException
+    {
+        return generate( waypointList, config, true );
+    }
+
+    private Path generate( List<Waypoint> waypointList, GeneratorConfig config, boolean preview ) throws PathGenerationException, NotEnoughPointsException
+    {
+        Timer timer = preview ? Metrics.PREVIEW : Metrics.GENERATE;
+        long start = timer.start();
+
+        Profile profile = new Profile( config, fitSplines( waypointList, config, preview ) );
+
+        // The whole path in a single block.
+        Path.Columns center = new Path.Columns( profile.length() );
+        profile.next( center );
+
+        Path path = WheelModifier.path( center, config );
+
+        timer.stop( start, center.length(), 0 );
+        return path;
+    }
+
+
+    /**************************************************************************
+     * <p>Generates the path a block at a time. The splines are fitted up
+     *      front, after that each block of the center is profiled, placed on
+     *      the splines and offset to the wheels before the next one is
+     *      started, so the first blocks go out before the end of the path
+     *      is known. The blocks hold the same values as generate().</p>
+     *************************************************************************/
+    @Override
+    public Flow.Publisher<SegmentBlock> stream( List<Waypoint> waypointList, GeneratorConfig config, Executor executor )
+    {
+        return new SegmentPublisher( executor, sink ->
+        {
+            long start = Metrics.GENERATE.start();
+
+            Profile profile = new Profile( config, fitSplines( waypointList, config, false ) );
+
+            WheelModifier.Wheel[] wheels;
+
+            if( config.getDriveBase() == DriveBase.SWERVE )
+            {
+                double w = config.getWheelBaseW() / 2;
+                double d = config.getWheelBaseD() / 2;
+
+                wheels = new WheelModifier.Wheel[]{ WheelModifier.swerveWheel( -w,  d ),
+                                                    WheelModifier.swerveWheel(  w,  d ),
+                                                    WheelModifier.swerveWheel( -w, -d ),
+                                                    WheelModifier.swerveWheel(  w, -d ) };
+            }
+            else  // DriveBase.Tank
+            {
+                double w = config.getWheelBaseW() / 2;
+
+                wheels = new WheelModifier.Wheel[]{ WheelModifier.tankWheel(  w ),
+                                                    WheelModifier.tankWheel( -w ) };
+            }
+
+            int length = profile.length();
+
+            for( int i = 0; i < length; i += SegmentBlock.SIZE )
+            {
+                Path.Columns center = new Path.Columns( Math.min( SegmentBlock.SIZE, length - i ) );
+                profile.next( center );
+
+                for( int w = 0; w < wheels.length; w++ )
+                {
+                    if( !sink.submit( new SegmentBlock( config.getDriveBase(), w, i, length, wheels[ w ].next( center ), center ) ) )
+                        return;
+                }
+            }
+
+            Metrics.GENERATE.stop( start, length, 0 );
+        });
+    }
+
+
+    /**************************************************************************
+     * <p>Works out how many segments generate() would make, without building
+     *      the path. The splines are fitted with the preview sample count
+     *      and aren't kept, so the count can be off by a little. It is meant
+     *      for checking a request against a limit before running it.</p>
+     *
+     * @return The number of segments, it may be more than an int can hold.
+     *************************************************************************/
+    public static double countSegments( List<Waypoint> waypointList, GeneratorConfig config ) throws NotEnoughPointsException
+    {
+        if( waypointList.size() < 2 )
+            throw new NotEnoughPointsException( "There are not enough points to generate a Path." );
+
+        double length = 0;
+
+        for( int i = 0; i < waypointList.size() - 1; i++ )
+        {
+            Waypoint start = waypointList.get( i );
+            Waypoint end = waypointList.get( i + 1 );
+
+            length += Spline.fit( start.getX(), start.getY(), Math.toRadians( start.getAngle() ),
+                                  end.getX(), end.getY(), Math.toRadians( end.getAngle() ),
+                                  config.getFitMethod(), PREVIEW_ARC_LENGTH_SAMPLES ).getArcLength();
+        }
+
+        return Profile.segments( config, length );
+    }
+
+
+    /**************************************************************************
+     * <p>Fits a spline between each pair of waypoints, reusing the splines of
+     *      the last path where the waypoints are the same.</p>
+     *************************************************************************/
+    private Spline[] fitSplines( List<Waypoint> waypointList, GeneratorConfig config, boolean preview ) throws NotEnoughPointsException
+    {
+        // We need at least 2 points to generate a trajectory.
+        if( waypointList.size() < 2 )
+            throw new NotEnoughPointsException( "There are not enough points to generate a Path." );
+
+        Spline[] splines = new Spline[ waypointList.size() - 1 ];
+
+        Map<SplineKey, Spline> previous = splineCache;
+        Map<SplineKey, Spline> current = new HashMap<>();
+
+        for( int i = 0; i < splines.length; i++ )
+        {
+            SplineKey key = new SplineKey( waypointList.get( i ), waypointList.get( i + 1 ), config.getFitMethod() );
+
+            Spline spline = previous.get( key );
+
+            if( spline == null )
+                spline = current.get( key );
+
+            if( spline == null )
+                spline = Spline.fit( key.x0, key.y0, Math.toRadians( key.angle0 ),
+                                     key.x1, key.y1, Math.toRadians( key.angle1 ),
+                                     key.fitMethod, preview ? PREVIEW_ARC_LENGTH_SAMPLES : ARC_LENGTH_SAMPLES );
+
+            current.put( key, spline );
+
+            splines[ i ] = spline;
+        }
+
+        // Only keep the splines of this path so the cache can't grow without bound.
+        if( !preview )
+            splineCache = current;
+
+        return splines;
+    }
+
+
+    /**************************************************************************
+     *  Builds the center trajectory one block of segments at a time.
+     *
+     *  The 1D S-curve profile along the path comes from running a unit
+     *  impulse through two moving average filters. The first filter limits
+     *  acceleration and the second limits jerk. The x, y and heading of each
+     *  segment come from finding the point on the splines that is
+     *  segment.position along the path.
+     *
+     *  Everything one block needs from the ones before it is kept here, so
+     *  the blocks come out the same however the path is cut up.
+     *************************************************************************/
+    private static final class Profile
+    {
+        private final double dt;
+        private final double checkedMaxV;
+        private final int f1;
+        private final int f2;
+        private final int n;
+        private final double[] f1Buffer;
+        private final Spline[] splines;
+
+        private double impulse;
+
+        // Index of the next segment.
+        private int i = 0;
+
+        private double lastPosition = 0;
+        private double lastVelocity = 0;
+        private double lastAcceleration = 0;
+
+        private int splineIndex = 0;
+        private double splineStart = 0;
+
+        Profile( GeneratorConfig config, Spline[] splines ) throws PathGenerationException
+        {
+            double length = 0;
+
+            for( Spline spline : splines )
+            {
+                length += spline.getArcLength();
+            }
+
+            double maxA = config.getAccel();
+
+            this.dt = config.getTimeStep();
+            this.checkedMaxV = maxVelocity( config, length );
+
+            double filter1Length = Math.ceil( ( checkedMaxV / maxA ) / dt );
+            double filter2Length = Math.ceil( ( maxA / config.getJerk() ) / dt );
+
+            this.impulse = ( length / checkedMaxV ) / dt;
+            double time = Math.ceil( filter1Length + filter2Length + impulse );
+
+            if( !( time > 0 ) || time > Integer.MAX_VALUE || !Double.isFinite( checkedMaxV ) )
+                throw new PathGenerationException( "The Java generator failed to generate the path." );
+
+            this.f1 = (int) filter1Length;
+            this.f2 = (int) filter2Length;
+            this.n = (int) time;
+            this.f1Buffer = new double[ n ];
+            this.splines = splines;
+        }
+
+        /**
+         * @return Number of segments in a path of the given length, the same as length().
+         */
+        static double segments( GeneratorConfig config, double length )
+        {
+            double dt = config.getTimeStep();
+            double maxV = maxVelocity( config, length );
+
+            double filter1Length = Math.ceil( ( maxV / config.getAccel() ) / dt );
+            double filter2Length = Math.ceil( ( config.getAccel() / config.getJerk() ) / dt );
+
+            return Math.ceil( filter1Length + filter2Length + ( length / maxV ) / dt );
+        }
+
+        /**
+         * The velocity limit, lowered for a path too short to reach it.
+         */
+        private static double maxVelocity( GeneratorConfig config, double length )
+        {
+            double maxA = config.getAccel();
+            double maxJ = config.getJerk();
+
+            double maxA2 = maxA * maxA;
+            double maxJ2 = maxJ * maxJ;
+
+            return Math.min( config.getVelocity(), ( -maxA2 + Math.sqrt( maxA2 * maxA2 + 4 * ( maxJ2 * maxA * length ) ) ) / ( 2 * maxJ ) );
+        }
+
+        /**
+         * @return Number of segments in the path.
+         */
+        int length()
+        {
+            return n;
+        }
+
+        /**
+         * Fills in every column of the next block.length() segments.
+         */
+        void next( Path.Columns block ) throws PathGenerationException
+        {
+            double[] dtColumn = block.getDt();
+            double[] positionColumn = block.getPosition();
+            double[] velocityColumn = block.getVelocity();
+            double[] accelerationColumn = block.getAcceleration();
+            double[] jerkColumn = block.getJerk();
+            double[] x = block.getX();
+            double[] y = block.getY();
+            double[] heading = block.getHeading();
+
+            for( int b = 0; b < block.length(); b++, i++ )
+            {
+                double input = Math.min( impulse, 1 );
+
+                if( input < 1 )
+                {
+                    input -= 1;
+                    impulse = 0;
+                }
+                else
+                {
+                    impulse -= input;
+                }
+
+                double f1Last = ( i > 0 ) ? f1Buffer[ i - 1 ] : 0;
+                f1Buffer[ i ] = Math.max( 0.0, Math.min( f1, f1Last + input ) );
+
+                double f2Sum = 0;
+                for( int j = 0; j < f2 && j <= i; j++ )
+                {
+                    f2Sum += f1Buffer[ i - j ];
+                }
+
+                double velocity = f2Sum / f1 / f2 * checkedMaxV;
+                double position = ( lastVelocity + velocity ) / 2.0 * dt + lastPosition;
+                double acceleration = ( velocity - lastVelocity ) / dt;
+                double jerk = ( acceleration - lastAcceleration ) / dt;
+
+                dtColumn[ b ] = dt;
+                positionColumn[ b ] = position;
+                velocityColumn[ b ] = velocity;
+                accelerationColumn[ b ] = acceleration;
+                jerkColumn[ b ] = jerk;
+
+                lastPosition = position;
+                lastVelocity = velocity;
+                lastAcceleration = acceleration;
+
+                double relative = position - splineStart;
+
+                // Move on to the spline that contains this position.
+                while( relative > splines[ splineIndex ].getArcLength() && splineIndex < splines.length - 1 )
+                {
+                    splineStart += splines[ splineIndex ].getArcLength();
+                    relative = position - splineStart;
+                    splineIndex++;
+                }
+
+                Spline spline = splines[ splineIndex ];
+                double percentage = spline.percentageForDistance( relative );
+
+                x[ b ] = spline.x( percentage );
+                y[ b ] = spline.y( percentage );
+                heading[ b ] = spline.angle( percentage );
+
+                if( !Double.isFinite( x[ b ] ) || !Double.isFinite( y[ b ] ) )
+                    throw new PathGenerationException( "The Java generator failed to generate the path." );
+            }
+        }
+    }
+
+
+    /**************************************************************************
+     *  The inputs of a single spline.
+     *************************************************************************/
+    private static final class SplineKey
+    {
+        private final double x0, y0, angle0;
+        private final double x1, y1, angle1;
+        private final FitMethod fitMethod;
+
+        SplineKey( Waypoint start, Waypoint end, FitMethod fitMethod )
+        {
+            this.x0 = start.getX();
+            this.y0 = start.getY();
+            this.angle0 = start.getAngle();
+            this.x1 = end.getX();
+            this.y1 = end.getY();
+            this.angle1 = end.getAngle();
+            this.fitMethod = fitMethod;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if( this == o )
+                return true;
+
+            if( !( o instanceof SplineKey ) )
+                return false;
+
+            SplineKey k = (SplineKey) o;
+
+            return Double.compare( x0, k.x0 ) == 0
+                && Double.compare( y0, k.y0 ) == 0
+                && Double.compare( angle0, k.angle0 ) == 0
+                && Double.compare( x1, k.x1 ) == 0
+                && Double.compare( y1, k.y1 ) == 0
+                && Double.compare( angle1, k.angle1 ) == 0
+                && fitMethod == k.fitMethod;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int hash = fitMethod.hashCode();
+
+            hash = 31 * hash + Double.hashCode( x0 );
+            hash = 31 * hash + Double.hashCode( y0 );
+            hash = 31 * hash + Double.hashCode( angle0 );
+            hash = 31 * hash + Double.hashCode( x1 );
+            hash = 31 * hash + Double.hashCode( y1 );
+            hash = 31 * hash + Double.hashCode( angle1 );
+
+            return hash;
+        }
+    }
+}
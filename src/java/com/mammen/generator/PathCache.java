@@ -0,0 +1,207 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/******************************************************************************
+ *   PathCache
+ *       Least recently used cache of generated paths, bounded by the number of
+ *       bytes the cached paths take up. Paths are looked up by a Key that holds
+ *       every input to the generator, so asking for a configuration that was
+ *       generated recently doesn't run the generator again.
+ *
+ *       Cached paths are shared, nobody may modify a Path once it is cached.
+ ******************************************************************************/
+public class PathCache
+{
+    /**************************************************************************
+     *  Canonical form of every input to a generator: the generator type, the
+     *  config and the waypoints.
+     *************************************************************************/
+    public static final class Key
+    {
+        private final byte[] bytes;
+        private final int hash;
+
+        private Key( byte[] bytes )
+        {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode( bytes );
+        }
+
+        public static Key of( Generator.Type type, GeneratorConfig config, List<Waypoint> waypoints )
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream( 64 + waypoints.size() * 24 );
+
+            try( DataOutputStream out = new DataOutputStream( bytes ) )
+            {
+                out.writeUTF( type.name() );
+                config.writeCacheKey( out );
+
+                out.writeInt( waypoints.size() );
+                for( Waypoint wp : waypoints )
+                {
+                    out.writeDouble( wp.getX() );
+                    out.writeDouble( wp.getY() );
+                    out.writeDouble( wp.getAngle() );
+                }
+            }
+            catch( IOException e )
+            {
+                // Can't happen when writing to memory.
+                throw new UncheckedIOException( e );
+            }
+
+            return new Key( bytes.toByteArray() );
+        }
+
+        /**
+         * @return The canonical form, it must not be modified.
+         */
+        byte[] getBytes()
+        {
+            return bytes;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            return ( o instanceof Key ) && Arrays.equals( bytes, ( (Key) o ).bytes );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+
+
+    private final long maxBytes;
+    private long sizeBytes;
+    private long hits;
+    private long misses;
+
+    // Access ordered, so the eldest entry is the least recently used.
+    private final LinkedHashMap<Key, Path> paths = new LinkedHashMap<>( 16, 0.75f, true );
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param maxBytes Upper bound on the total size of the cached paths.
+     *************************************************************************/
+    public PathCache( long maxBytes )
+    {
+        this.maxBytes = maxBytes;
+    }
+
+
+    /**************************************************************************
+     * @return The cached path for the key or null if it isn't cached.
+     *************************************************************************/
+    public synchronized Path get( Key key )
+    {
+        Path path = paths.get( key );
+
+        if( path == null )
+            misses++;
+        else
+            hits++;
+
+        return path;
+    }
+
+
+    /**************************************************************************
+     * <p>Adds a path to the cache, evicting the least recently used paths
+     *      until it fits. Paths bigger than the whole cache are not kept.</p>
+     *************************************************************************/
+    public synchronized void put( Key key, Path path )
+    {
+        long size = sizeOf( path );
+
+        if( size > maxBytes )
+            return;
+
+        Path old = paths.put( key, path );
+
+        if( old != null )
+            sizeBytes -= sizeOf( old );
+
+        sizeBytes += size;
+
+        Iterator<Map.Entry<Key, Path>> it = paths.entrySet().iterator();
+        while( sizeBytes > maxBytes && it.hasNext() )
+        {
+            Map.Entry<Key, Path> eldest = it.next();
+
+            sizeBytes -= sizeOf( eldest.getValue() );
+            it.remove();
+        }
+    }
+
+
+    public synchronized void clear()
+    {
+        paths.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    public synchronized long getSizeBytes()
+    {
+        return sizeBytes;
+    }
+
+    public synchronized int getNumPaths()
+    {
+        return paths.size();
+    }
+
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+
+    /**************************************************************************
+     * @return Approximate number of bytes used by the trajectories of a path,
+     *         counting the wheels whether they have been built yet or not.
+     *************************************************************************/
+    static long sizeOf( Path path )
+    {
+        int wheels = ( path.getDriveBase() == DriveBase.SWERVE ) ? 4 : 2;
+
+        return ( 1 + wheels ) * sizeOf( path.getCenter() );
+    }
+
+    private static long sizeOf( Path.Columns columns )
+    {
+        if( columns == null )
+            return 0;
+
+        // Array headers aside, every element is one double per segment.
+        return (long) columns.length() * Double.BYTES * Path.Elements.values().length;
+    }
+}
@@ -1,66 +1,81 @@
 package com.mammen.generator;
 
-import com.mammen.generator.generator_vars.SharedGeneratorVars;
-import com.mammen.generator.generator_vars.DriveBase;
-import com.mammen.generator.generator_vars.PfV1GeneratorVars;
+import com.mammen.metrics.Metrics;
+import com.mammen.metrics.Timer;
+import com.mammen.metrics.Traj2PathEvent;
 import com.mammen.path.Path;
 import com.mammen.path.Waypoint;
 import jaci.pathfinder.Pathfinder;
 import jaci.pathfinder.Trajectory;
-import jaci.pathfinder.modifiers.SwerveModifier;
-import jaci.pathfinder.modifiers.TankModifier;
 //import org.scijava.nativelib.NativeLoader;
 
 import java.util.List;
 
 public class PfV1Generator implements Generator
 {
+    // Must match the Pathfinder-Java dependency in build.gradle.
+    private static final String PATHFINDER_VERSION = "2019.1.10";
+
     public PfV1Generator()
     {
     }
 
-    public Path generate( List<Waypoint> waypointList ) throws PathGenerationException, NotEnoughPointsException
+    @Override
+    public String getVersion()
+    {
+        return "Pathfinder " + PATHFINDER_VERSION;
+    }
+
+    @Override
+    public Path generate( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException
+    {
+        return generate( waypointList, config, Trajectory.Config.SAMPLES_HIGH );
+    }
+
+    @Override
+    public Path preview( List<Waypoint> waypointList, GeneratorConfig config ) throws PathGenerationException, NotEnoughPointsException
+    {
+        // A hundredth of the samples is plenty to show the shape of the path.
+        return generate( waypointList, config, Trajectory.Config.SAMPLES_FAST );
+    }
+
+    private Path generate( List<Waypoint> waypointList, GeneratorConfig config, int samples ) throws PathGenerationException, NotEnoughPointsException
     {
-        PfV1GeneratorVars vars = PfV1GeneratorVars.getInstance();
-        SharedGeneratorVars sharedVars = SharedGeneratorVars.getInstance();
-        Trajectory source, fr, fl, br, bl;
+        Timer timer = samples == Trajectory.Config.SAMPLES_FAST ? Metrics.PREVIEW : Metrics.GENERATE;
+        long start = timer.start();
+        Trajectory source;
 
         // We need at least 2 points to generate a trajectory.
         if( waypointList.size() > 1 )
         {
-            Trajectory.Config config = new Trajectory.Config( vars.getFitMethod().pfFitMethod(), Trajectory.Config.SAMPLES_HIGH, sharedVars.getTimeStep(), vars.getVelocity(), vars.getAccel(), vars.getJerk() );
+            Trajectory.Config pfConfig = new Trajectory.Config( config.getFitMethod().pfFitMethod(), samples, config.getTimeStep(), config.getVelocity(), config.getAccel(), config.getJerk() );
 
             try
             {
-                source = Pathfinder.generate( wp2pf( waypointList ), config );
+                source = Pathfinder.generate( wp2pf( waypointList ), pfConfig );
             }
             catch( Exception e )
             {
                 throw new PathGenerationException( "Pathfinder V1 failed to generate the path." );
             }
 
-            if( sharedVars.getDriveBase() == DriveBase.SWERVE )
-            {
-                SwerveModifier swerve = new SwerveModifier( source );
-                swerve.modify( sharedVars.getWheelBaseW(), sharedVars.getWheelBaseD(), SwerveModifier.Mode.SWERVE_DEFAULT );
+            Traj2PathEvent event = new Traj2PathEvent();
+            event.begin();
+            long convertStart = Metrics.TRAJ2PATH.start();
 
-                fr = swerve.getFrontRightTrajectory();
-                fl = swerve.getFrontLeftTrajectory();
-                br = swerve.getBackRightTrajectory();
-                bl = swerve.getBackLeftTrajectory();
-            }
-            else  // DriveBase.Tank
-            {
-                TankModifier tank = new TankModifier( source );
-                tank.modify( sharedVars.getWheelBaseW() );
+            Path.Columns center = traj2Path( source );
 
-                fr = tank.getRightTrajectory();
-                fl = tank.getLeftTrajectory();
-                br = null;
-                bl = null;
-            }
+            Metrics.TRAJ2PATH.stop( convertStart, center.length(), 0 );
+            event.segments = center.length();
+            event.commit();
 
-            return new Path( sharedVars.getDriveBase(), traj2Path( fl ), traj2Path( fr ), traj2Path( bl ), traj2Path( br ), traj2Path( source ) );
+            // Only the center is built here. The wheels are built from it when they
+            //  are first needed, using the same math as Pathfinder's TankModifier
+            //  and SwerveModifier, so each wheel can be built on its own.
+            Path path = WheelModifier.path( center, config );
+
+            timer.stop( start, center.length(), 0 );
+            return path;
         }
 
         throw new NotEnoughPointsException( "There are not enough points to generate a Path." );
@@ -82,28 +97,37 @@ public class PfV1Generator implements Generator
         return wpArray;
     }
 
-    private static Path.Segment[] traj2Path(Trajectory traj )
+    static Path.Columns traj2Path( Trajectory traj )
     {
         if( traj == null )
             return null;
 
-        Path.Segment[] segments = new Path.Segment[ traj.length() ];
+        Path.Columns columns = new Path.Columns( traj.length() );
+
+        double[] dt = columns.getDt();
+        double[] x = columns.getX();
+        double[] y = columns.getY();
+        double[] position = columns.getPosition();
+        double[] velocity = columns.getVelocity();
+        double[] acceleration = columns.getAcceleration();
+        double[] jerk = columns.getJerk();
+        double[] heading = columns.getHeading();
 
         for( int i = 0; i < traj.length(); i++ )
         {
-            segments[ i ] = new Path.Segment(
-                    traj.segments[ i ].dt,
-                    traj.segments[ i ].x,
-                    traj.segments[ i ].y,
-                    traj.segments[ i ].position,
-                    traj.segments[ i ].velocity,
-                    traj.segments[ i ].acceleration,
-                    traj.segments[ i ].jerk,
-                    traj.segments[ i ].heading
-            );
+            Trajectory.Segment seg = traj.segments[ i ];
+
+            dt[ i ]             = seg.dt;
+            x[ i ]              = seg.x;
+            y[ i ]              = seg.y;
+            position[ i ]       = seg.position;
+            velocity[ i ]       = seg.velocity;
+            acceleration[ i ]   = seg.acceleration;
+            jerk[ i ]           = seg.jerk;
+            heading[ i ]        = seg.heading;
         }
 
-        return segments;
+        return columns;
     }
 
 }
@@ -0,0 +1,97 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.path.Path;
+
+/******************************************************************************
+ *   SegmentBlock
+ *       A run of consecutive segments of one wheel, as handed out by
+ *       Generator.stream() while the rest of the path is still being
+ *       generated. Blocks of a wheel arrive in order and without gaps.
+ *
+ *       Wheels are numbered the same way as in TrajectoryFile: 0 and 1 are
+ *       the left and right side of a tank drive, 0 to 3 are front left,
+ *       front right, back left and back right of a swerve drive.
+ *
+ *       Each block also carries the center segments it was offset from, so
+ *       a subscriber can draw the center or put the whole Path together,
+ *       see SegmentCollector. The blocks of every wheel over the same range
+ *       share the same center.
+ ******************************************************************************/
+public final class SegmentBlock
+{
+    // Segments in a block, except for the last block of a wheel.
+    public static final int SIZE = 1024;
+
+    private final DriveBase driveBase;
+    private final int wheel;
+    private final int start;
+    private final int pathLength;
+    private final Path.Columns segments;
+    private final Path.Columns center;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param driveBase The drive base of the path.
+     * @param wheel The wheel the segments belong to.
+     * @param start Index of the first segment in the path.
+     * @param pathLength Number of segments in each wheel of the whole path.
+     * @param segments The segments, in meters. They must not be modified.
+     * @param center The center segments over the same range, in meters. They
+     *               must not be modified.
+     *************************************************************************/
+    public SegmentBlock( DriveBase driveBase, int wheel, int start, int pathLength, Path.Columns segments, Path.Columns center )
+    {
+        this.driveBase = driveBase;
+        this.wheel = wheel;
+        this.start = start;
+        this.pathLength = pathLength;
+        this.segments = segments;
+        this.center = center;
+    }
+
+    public DriveBase getDriveBase()
+    {
+        return driveBase;
+    }
+
+    public int getWheel()
+    {
+        return wheel;
+    }
+
+    public int getStart()
+    {
+        return start;
+    }
+
+    public int getPathLength()
+    {
+        return pathLength;
+    }
+
+    public Path.Columns getSegments()
+    {
+        return segments;
+    }
+
+    public Path.Columns getCenter()
+    {
+        return center;
+    }
+
+    public int length()
+    {
+        return segments.length();
+    }
+
+    /**
+     * @return True if this is the last block of its wheel.
+     */
+    public boolean isLast()
+    {
+        return start + segments.length() == pathLength;
+    }
+}
@@ -0,0 +1,89 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.path.Path;
+
+/******************************************************************************
+ *   SegmentCollector
+ *       Puts the blocks of a streamed path back together into a Path, for
+ *       subscribers that use the blocks as they come and still want the
+ *       whole path once it is done. The columns are allocated when the first
+ *       block tells how long the path is and every block is copied in, so
+ *       the blocks can be dropped as soon as they are added.
+ *
+ *       The Path holds the same values as generate() would return, with every
+ *       wheel already built.
+ ******************************************************************************/
+public final class SegmentCollector
+{
+    private DriveBase driveBase;
+    private Path.Columns center;
+    private Path.Columns[] wheels;
+
+    // Segments added so far, over every wheel.
+    private long added = 0;
+
+
+    /**************************************************************************
+     * <p>Copies a block into the path.</p>
+     *
+     * @param block The next block of any wheel.
+     *************************************************************************/
+    public void add( SegmentBlock block )
+    {
+        if( wheels == null )
+        {
+            driveBase = block.getDriveBase();
+            center = new Path.Columns( block.getPathLength() );
+            wheels = new Path.Columns[ driveBase.getNumWheels() ];
+
+            for( int w = 0; w < wheels.length; w++ )
+            {
+                wheels[ w ] = new Path.Columns( block.getPathLength() );
+            }
+        }
+
+        // Every wheel carries the same center, take it from the first one.
+        if( block.getWheel() == 0 )
+            copy( block.getCenter(), center, block.getStart() );
+
+        copy( block.getSegments(), wheels[ block.getWheel() ], block.getStart() );
+
+        added += block.length();
+    }
+
+
+    /**************************************************************************
+     * @return True once every segment of every wheel has been added.
+     *************************************************************************/
+    public boolean isComplete()
+    {
+        return wheels != null && added == (long) wheels.length * center.length();
+    }
+
+
+    /**************************************************************************
+     * <p>Builds the Path from the blocks.</p>
+     *
+     * @return The path, or null if no block was added.
+     *************************************************************************/
+    public Path toPath()
+    {
+        if( wheels == null )
+            return null;
+
+        if( driveBase == DriveBase.SWERVE )
+            return new Path( driveBase, wheels[ 0 ], wheels[ 1 ], wheels[ 2 ], wheels[ 3 ], center );
+        else  // DriveBase.Tank
+            return new Path( driveBase, wheels[ 0 ], wheels[ 1 ], null, null, center );
+    }
+
+
+    private static void copy( Path.Columns from, Path.Columns to, int start )
+    {
+        for( Path.Elements e : Path.Elements.values() )
+        {
+            System.arraycopy( from.get( e ), 0, to.get( e ), start, from.length() );
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.path.Path;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/******************************************************************************
+ *   SegmentPublisher
+ *       The publisher behind Generator.stream(). Nothing is generated until a
+ *       subscriber arrives, then the path is generated once for it on the
+ *       executor. Each subscriber gets its own generation.
+ *
+ *       At most BUFFER_SIZE blocks wait for the subscriber. When they are
+ *       all taken the generation stops until the subscriber catches up, so
+ *       a slow writer never makes the whole path pile up in memory. A
+ *       subscriber that cancels stops the generation at the next block.
+ ******************************************************************************/
+final class SegmentPublisher implements Flow.Publisher<SegmentBlock>
+{
+    // Blocks that may wait for the subscriber, a power of two.
+    static final int BUFFER_SIZE = 16;
+
+    /**************************************************************************
+     *  Generates the path and submits its blocks.
+     *************************************************************************/
+    interface Producer
+    {
+        void produce( Sink sink ) throws Exception;
+    }
+
+    private final Executor executor;
+    private final Producer producer;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param executor Runs the generation and delivers the blocks. Both run at
+     *                 the same time, so it needs more than one thread.
+     * @param producer Generates the path.
+     *************************************************************************/
+    SegmentPublisher( Executor executor, Producer producer )
+    {
+        this.executor = executor;
+        this.producer = producer;
+    }
+
+
+    @Override
+    public void subscribe( Flow.Subscriber<? super SegmentBlock> subscriber )
+    {
+        SubmissionPublisher<SegmentBlock> publisher = new SubmissionPublisher<>( executor, BUFFER_SIZE );
+        publisher.subscribe( subscriber );
+
+        executor.execute( () ->
+        {
+            try
+            {
+                producer.produce( new Sink( publisher ) );
+                publisher.close();
+            }
+            catch( Exception e )
+            {
+                publisher.closeExceptionally( e );
+            }
+        });
+    }
+
+
+    /**************************************************************************
+     *  Where a producer puts its blocks.
+     *************************************************************************/
+    static final class Sink
+    {
+        private final SubmissionPublisher<SegmentBlock> publisher;
+
+        private Sink( SubmissionPublisher<SegmentBlock> publisher )
+        {
+            this.publisher = publisher;
+        }
+
+        /**************************************************************************
+         * <p>Hands a block to the subscriber, waiting while the buffer is full.</p>
+         *
+         * @return False if the subscriber has gone, the producer should stop.
+         *************************************************************************/
+        boolean submit( SegmentBlock block )
+        {
+            if( !publisher.hasSubscribers() )
+                return false;
+
+            publisher.submit( block );
+            return true;
+        }
+
+
+        /**************************************************************************
+         * <p>Cuts every wheel of a finished path into blocks and submits them,
+         *      for generators that can only hand out whole paths.</p>
+         *
+         * @return False if the subscriber has gone.
+         *************************************************************************/
+        boolean submitAll( Path path )
+        {
+            path.computeWheels();
+
+            DriveBase driveBase = path.getDriveBase();
+            Path.Columns[] wheels;
+
+            if( driveBase == DriveBase.TANK )
+                wheels = new Path.Columns[]{ path.getFrontLeft(), path.getFrontRight() };
+            else // driveBase == DriveBase.SWERVE
+                wheels = new Path.Columns[]{ path.getFrontLeft(), path.getFrontRight(), path.getBackLeft(), path.getBackRight() };
+
+            int length = path.getLength();
+
+            for( int start = 0; start < length; start += SegmentBlock.SIZE )
+            {
+                int n = Math.min( SegmentBlock.SIZE, length - start );
+                Path.Columns center = copy( path.getCenter(), start, n );
+
+                for( int w = 0; w < wheels.length; w++ )
+                {
+                    if( !submit( new SegmentBlock( driveBase, w, start, length, copy( wheels[ w ], start, n ), center ) ) )
+                        return false;
+                }
+            }
+
+            return true;
+        }
+
+
+        private static Path.Columns copy( Path.Columns columns, int start, int n )
+        {
+            Path.Columns block = new Path.Columns( n );
+
+            for( Path.Elements e : Path.Elements.values() )
+            {
+                System.arraycopy( columns.get( e ), start, block.get( e ), 0, n );
+            }
+
+            return block;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.PfV1GeneratorVars.FitMethod;
+
+/******************************************************************************
+ *   Spline
+ *       A Hermite spline between two waypoints, fitted the same way Pathfinder
+ *       V1 does it. The spline is expressed in a frame rotated onto the line
+ *       between the two waypoints, so y is a polynomial in x:
+ *
+ *           y = a*x^5 + b*x^4 + c*x^3 + d*x^2 + e*x
+ *
+ *       The cumulative arc length is sampled once when the spline is fitted so
+ *       distance -> percentage lookups are a binary search instead of a
+ *       numerical integration per trajectory segment.
+ ******************************************************************************/
+final class Spline
+{
+    private final double a, b, c, d, e;
+    private final double xOffset, yOffset, angleOffset, knotDistance;
+    private final double cosOffset, sinOffset;
+
+    // arcTable[ i ] is the arc length from the start of the spline to percentage i / samples.
+    private final double[] arcTable;
+    private final double arcLength;
+
+
+    private Spline( double x0, double y0, double angle0, double x1, double y1, double angle1, FitMethod fitMethod, int samples )
+    {
+        xOffset = x0;
+        yOffset = y0;
+        knotDistance = Math.sqrt( ( x1 - x0 ) * ( x1 - x0 ) + ( y1 - y0 ) * ( y1 - y0 ) );
+        angleOffset = Math.atan2( y1 - y0, x1 - x0 );
+        cosOffset = Math.cos( angleOffset );
+        sinOffset = Math.sin( angleOffset );
+
+        double a0Delta = Math.tan( boundRadians( angle0 - angleOffset ) );
+        double a1Delta = Math.tan( boundRadians( angle1 - angleOffset ) );
+        double k = knotDistance;
+
+        switch( fitMethod )
+        {
+            case HERMITE_QUINTIC:
+                a = -( 3 * ( a0Delta + a1Delta ) ) / ( k * k * k * k );
+                b = ( 8 * a0Delta + 7 * a1Delta ) / ( k * k * k );
+                c = -( 6 * a0Delta + 4 * a1Delta ) / ( k * k );
+                d = 0;
+                e = a0Delta;
+                break;
+
+            case HERMITE_CUBIC:
+            default:
+                a = 0;
+                b = 0;
+                c = ( a0Delta + a1Delta ) / ( k * k );
+                d = -( 2 * a0Delta + a1Delta ) / k;
+                e = a0Delta;
+                break;
+        }
+
+        // Trapezoidal integration of sqrt( 1 + (dy/dx)^2 ) over the knot distance.
+        arcTable = new double[ samples + 1 ];
+
+        double lastIntegrand = Math.sqrt( 1 + square( derivative( 0 ) ) );
+        double step = k / samples;
+
+        for( int i = 1; i <= samples; i++ )
+        {
+            double integrand = Math.sqrt( 1 + square( derivative( (double) i / samples ) ) );
+            arcTable[ i ] = arcTable[ i - 1 ] + ( integrand + lastIntegrand ) / 2 * step;
+            lastIntegrand = integrand;
+        }
+
+        arcLength = arcTable[ samples ];
+    }
+
+
+    /**************************************************************************
+     * <p>Fits a spline between two waypoints.</p>
+     *
+     * @param x0 X of the first waypoint.
+     * @param y0 Y of the first waypoint.
+     * @param angle0 Angle of the first waypoint in radians.
+     * @param x1 X of the second waypoint.
+     * @param y1 Y of the second waypoint.
+     * @param angle1 Angle of the second waypoint in radians.
+     * @param fitMethod Cubic or quintic Hermite.
+     * @param samples Number of samples used to build the arc length table.
+     * @return The fitted spline.
+     *************************************************************************/
+    static Spline fit( double x0, double y0, double angle0, double x1, double y1, double angle1, FitMethod fitMethod, int samples )
+    {
+        return new Spline( x0, y0, angle0, x1, y1, angle1, fitMethod, samples );
+    }
+
+
+    double getArcLength()
+    {
+        return arcLength;
+    }
+
+
+    /**************************************************************************
+     * <p>Finds how far along the spline (0 - 1) the given arc length is.</p>
+     *************************************************************************/
+    double percentageForDistance( double distance )
+    {
+        int samples = arcTable.length - 1;
+
+        if( distance <= 0 )
+            return 0;
+
+        if( distance >= arcLength )
+            return 1;
+
+        // Find the first sample at or past the distance.
+        int lo = 0;
+        int hi = samples;
+
+        while( lo < hi )
+        {
+            int mid = ( lo + hi ) >>> 1;
+
+            if( arcTable[ mid ] < distance )
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        // Interpolate between the sample before and this one.
+        double prev = arcTable[ lo - 1 ];
+        double next = arcTable[ lo ];
+        double fraction = ( next > prev ) ? ( distance - prev ) / ( next - prev ) : 0;
+
+        return ( lo - 1 + fraction ) / samples;
+    }
+
+
+    double x( double percentage )
+    {
+        double x = percentage * knotDistance;
+        double y = polynomial( x );
+
+        return x * cosOffset - y * sinOffset + xOffset;
+    }
+
+
+    double y( double percentage )
+    {
+        double x = percentage * knotDistance;
+        double y = polynomial( x );
+
+        return x * sinOffset + y * cosOffset + yOffset;
+    }
+
+
+    /**************************************************************************
+     * <p>Heading of the spline at the given percentage, in radians [0, 2PI).</p>
+     *************************************************************************/
+    double angle( double percentage )
+    {
+        return boundRadians( Math.atan( derivative( percentage ) ) + angleOffset );
+    }
+
+
+    static double boundRadians( double angle )
+    {
+        double newAngle = angle % ( 2 * Math.PI );
+
+        if( newAngle < 0 )
+            newAngle = 2 * Math.PI + newAngle;
+
+        return newAngle;
+    }
+
+
+    private double polynomial( double x )
+    {
+        return ( a * x + b ) * ( x * x * x * x ) + ( c * x + d ) * ( x * x ) + e * x;
+    }
+
+
+    private double derivative( double percentage )
+    {
+        double x = percentage * knotDistance;
+
+        return ( 5 * a * x + 4 * b ) * ( x * x * x ) + ( 3 * c * x + 2 * d ) * x + e;
+    }
+
+
+    private static double square( double v )
+    {
+        return v * v;
+    }
+}
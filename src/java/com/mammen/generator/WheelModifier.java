@@ -0,0 +1,210 @@
+package com.mammen.generator;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.path.Path;
+
+/******************************************************************************
+ *   WheelModifier
+ *       Offsets a center trajectory to the trajectory of a single wheel.
+ *       The math matches Pathfinder V1's TankModifier and SwerveModifier.
+ ******************************************************************************/
+final class WheelModifier
+{
+    private WheelModifier()
+    {
+    }
+
+
+    /**************************************************************************
+     * <p>Makes a Path from a center trajectory. Each wheel is offset from the
+     *      center the first time it is asked for.</p>
+     *
+     * @param center The center trajectory.
+     * @param config The drive base and wheelbase to offset the wheels by.
+     *************************************************************************/
+    static Path path( Path.Columns center, GeneratorConfig config )
+    {
+        if( config.getDriveBase() == DriveBase.SWERVE )
+        {
+            double w = config.getWheelBaseW() / 2;
+            double d = config.getWheelBaseD() / 2;
+
+            return new Path( DriveBase.SWERVE, center,
+                             () -> swerve( center, -w,  d ),
+                             () -> swerve( center,  w,  d ),
+                             () -> swerve( center, -w, -d ),
+                             () -> swerve( center,  w, -d ) );
+        }
+        else  // DriveBase.Tank
+        {
+            double w = config.getWheelBaseW() / 2;
+
+            return new Path( DriveBase.TANK, center,
+                             () -> tank( center,  w ),
+                             () -> tank( center, -w ),
+                             null,
+                             null );
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Builds one side of a tank drive.</p>
+     *
+     * @param center The center trajectory.
+     * @param offset Distance to the left of the center line. Use +W/2 for the
+     *               left side and -W/2 for the right side.
+     * @return The wheel trajectory.
+     *************************************************************************/
+    static Path.Columns tank( Path.Columns center, double offset )
+    {
+        return new TankWheel( offset ).next( center );
+    }
+
+
+    /**************************************************************************
+     * <p>Builds one side of a tank drive a block of segments at a time, for
+     *      paths that are handed out while they are generated. The blocks
+     *      come out the same as the matching part of tank().</p>
+     *
+     * @param offset Distance to the left of the center line.
+     *************************************************************************/
+    static Wheel tankWheel( double offset )
+    {
+        return new TankWheel( offset );
+    }
+
+
+    /**************************************************************************
+     * <p>Builds one wheel of a swerve drive a block of segments at a time.</p>
+     *
+     * @param dx X offset of the wheel from the center.
+     * @param dy Y offset of the wheel from the center.
+     *************************************************************************/
+    static Wheel swerveWheel( double dx, double dy )
+    {
+        return center -> swerve( center, dx, dy );
+    }
+
+
+    /**************************************************************************
+     * <p>Builds one wheel of a swerve drive. Only the position of the wheel
+     *      changes, every other value is copied from the center.</p>
+     *
+     * @param center The center trajectory.
+     * @param dx X offset of the wheel from the center.
+     * @param dy Y offset of the wheel from the center.
+     * @return The wheel trajectory.
+     *************************************************************************/
+    static Path.Columns swerve( Path.Columns center, double dx, double dy )
+    {
+        int n = center.length();
+        Path.Columns wheel = new Path.Columns( n );
+
+        for( Path.Elements e : Path.Elements.values() )
+        {
+            System.arraycopy( center.get( e ), 0, wheel.get( e ), 0, n );
+        }
+
+        double[] x = wheel.getX();
+        double[] y = wheel.getY();
+
+        for( int i = 0; i < n; i++ )
+        {
+            x[ i ] += dx;
+            y[ i ] += dy;
+        }
+
+        return wheel;
+    }
+
+
+    /**************************************************************************
+     *  Builds a wheel from consecutive blocks of the center trajectory.
+     *************************************************************************/
+    interface Wheel
+    {
+        /**
+         * @param center The next block of the center, right after the last one.
+         * @return The same block of the wheel.
+         */
+        Path.Columns next( Path.Columns center );
+    }
+
+
+    /**************************************************************************
+     *  Each segment of a tank wheel depends on the one before it, so the
+     *  last segment is carried over to the next block.
+     *************************************************************************/
+    private static final class TankWheel implements Wheel
+    {
+        private final double offset;
+
+        private boolean first = true;
+        private double lastX;
+        private double lastY;
+        private double lastPosition;
+        private double lastVelocity;
+        private double lastAcceleration;
+
+        TankWheel( double offset )
+        {
+            this.offset = offset;
+        }
+
+        @Override
+        public Path.Columns next( Path.Columns center )
+        {
+            int n = center.length();
+            Path.Columns wheel = new Path.Columns( n );
+
+            double[] dt = center.getDt();
+            double[] heading = center.getHeading();
+            double[] cx = center.getX();
+            double[] cy = center.getY();
+
+            double[] x = wheel.getX();
+            double[] y = wheel.getY();
+            double[] position = wheel.getPosition();
+            double[] velocity = wheel.getVelocity();
+            double[] acceleration = wheel.getAcceleration();
+            double[] jerk = wheel.getJerk();
+
+            System.arraycopy( dt, 0, wheel.getDt(), 0, n );
+            System.arraycopy( heading, 0, wheel.getHeading(), 0, n );
+
+            for( int i = 0; i < n; i++ )
+            {
+                x[ i ] = cx[ i ] - offset * Math.sin( heading[ i ] );
+                y[ i ] = cy[ i ] + offset * Math.cos( heading[ i ] );
+
+                if( !first )
+                {
+                    double distance = Math.sqrt( ( x[ i ] - lastX ) * ( x[ i ] - lastX ) + ( y[ i ] - lastY ) * ( y[ i ] - lastY ) );
+
+                    position[ i ] = lastPosition + distance;
+                    velocity[ i ] = distance / dt[ i ];
+                    acceleration[ i ] = ( velocity[ i ] - lastVelocity ) / dt[ i ];
+                    jerk[ i ] = ( acceleration[ i ] - lastAcceleration ) / dt[ i ];
+                }
+                else
+                {
+                    position[ i ] = center.getPosition()[ i ];
+                    velocity[ i ] = center.getVelocity()[ i ];
+                    acceleration[ i ] = center.getAcceleration()[ i ];
+                    jerk[ i ] = center.getJerk()[ i ];
+
+                    first = false;
+                }
+
+                lastX = x[ i ];
+                lastY = y[ i ];
+                lastPosition = position[ i ];
+                lastVelocity = velocity[ i ];
+                lastAcceleration = acceleration[ i ];
+            }
+
+            return wheel;
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package com.mammen.generator.generator_vars;
 
-// Types of drive bases
+// Types of drive bases, the ordinals are written to .traj files.
 public enum DriveBase
 {
-    TANK( "Tank" ),
-    SWERVE( "Swerve" );
+    TANK( "Tank", 2 ),
+    SWERVE( "Swerve", 4 );
 
     private String label;
+    private int numWheels;
 
-    DriveBase( String label )
+    DriveBase( String label, int numWheels )
     {
         this.label = label;
+        this.numWheels = numWheels;
     }
 
     @Override
@@ -18,4 +20,9 @@ public enum DriveBase
     {
         return label;
     }
+
+    public int getNumWheels()
+    {
+        return numWheels;
+    }
 }
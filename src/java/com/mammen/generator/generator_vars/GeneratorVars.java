@@ -1,11 +1,36 @@
 package com.mammen.generator.generator_vars;
 
-import org.w3c.dom.Element;
+import javafx.beans.value.ObservableValue;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.util.List;
 
 public interface GeneratorVars
 {
-    void writeXMLAttributes( Element element );
-    void readXMLAttributes( Element element );
+    /**
+     * Writes the vars as attributes of the element the writer has just started.
+     * Lengths are written in the given unit.
+     */
+    void writeXMLAttributes( XMLStreamWriter writer, Units unit ) throws XMLStreamException;
+
+    /**
+     * Reads the vars from the attributes of the element the reader is on.
+     * Lengths in the file are in the given unit.
+     */
+    void readXMLAttributes( XMLStreamReader reader, Units unit );
     void setDefaultValues();
-    void changeUnit( Units oldUnit, Units newUnit );
+
+    /**
+     * Every value that is saved with a project, so listeners can tell when the vars change.
+     */
+    List<ObservableValue<?>> getObservables();
+
+    /**
+     * Returns a new instance holding the same values. The copy isn't bound to
+     * anything, so it can be handed to another thread.
+     */
+    GeneratorVars copy();
 }
@@ -1,9 +1,14 @@
 package com.mammen.generator.generator_vars;
 
-import com.mammen.util.Mathf;
 import jaci.pathfinder.Trajectory;
 import javafx.beans.property.*;
-import org.w3c.dom.Element;
+import javafx.beans.value.ObservableValue;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.util.List;
 
 public class PfV1GeneratorVars implements GeneratorVars
 {
@@ -37,17 +42,19 @@ public class PfV1GeneratorVars implements GeneratorVars
     private static PfV1GeneratorVars vars = null;
 
     // Pathfinder V1 vars
-    private DoubleProperty velocity         = new SimpleDoubleProperty( 4.0 );
-    private DoubleProperty accel            = new SimpleDoubleProperty( 3.0 );
-    private DoubleProperty jerk             = new SimpleDoubleProperty( 5.0 );
+    private DoubleProperty velocity         = new SimpleDoubleProperty( Units.FEET.toMeters( 4.0 ) );
+    private DoubleProperty accel            = new SimpleDoubleProperty( Units.FEET.toMeters( 3.0 ) );
+    private DoubleProperty jerk             = new SimpleDoubleProperty( Units.FEET.toMeters( 5.0 ) );
     private Property<FitMethod> fitMethod   = new SimpleObjectProperty<>( FitMethod.HERMITE_CUBIC );
     private BooleanProperty isReversed      = new SimpleBooleanProperty( false );
 
 
     /**************************************************************************
      *   Constructor
+     *       Use getInstance() for the vars the UI is bound to. New instances
+     *       are for generating paths independently of the UI.
      *************************************************************************/
-    private PfV1GeneratorVars()
+    public PfV1GeneratorVars()
     {
     }
 
@@ -67,23 +74,43 @@ public class PfV1GeneratorVars implements GeneratorVars
     }
 
     @Override
-    public void writeXMLAttributes( Element element )
+    public void writeXMLAttributes( XMLStreamWriter writer, Units unit ) throws XMLStreamException
+    {
+        writer.writeAttribute("fitMethod",   "" + fitMethod.getValue().name()        );
+        writer.writeAttribute("velocity",    "" + unit.fromMeters( velocity.get() )  );
+        writer.writeAttribute("acceleration","" + unit.fromMeters( accel.get() )     );
+        writer.writeAttribute("jerk",        "" + unit.fromMeters( jerk.get() )      );
+        writer.writeAttribute("reversed",    "" + isReversed.getValue().toString()   );
+    }
+
+    @Override
+    public void readXMLAttributes( XMLStreamReader reader, Units unit )
+    {
+        fitMethod   .setValue( FitMethod.valueOf( reader.getAttributeValue( null, "fitMethod"   ) ) );
+        velocity    .set( unit.toMeters( Double.parseDouble( reader.getAttributeValue( null, "velocity"     ) ) ) );
+        accel       .set( unit.toMeters( Double.parseDouble( reader.getAttributeValue( null, "acceleration" ) ) ) );
+        jerk        .set( unit.toMeters( Double.parseDouble( reader.getAttributeValue( null, "jerk"         ) ) ) );
+        isReversed  .set( Boolean.parseBoolean( reader.getAttributeValue( null, "reversed"      ) ) );
+    }
+
+    @Override
+    public List<ObservableValue<?>> getObservables()
     {
-        element.setAttribute("fitMethod",   "" + fitMethod.getValue().name() );
-        element.setAttribute("velocity",    "" + velocity.getValue()         );
-        element.setAttribute("acceleration","" + accel.getValue()            );
-        element.setAttribute("jerk",        "" + jerk.getValue()             );
-        element.setAttribute("reversed",    "" + isReversed.getValue().toString() );
+        return List.of( fitMethod, velocity, accel, jerk, isReversed );
     }
 
     @Override
-    public void readXMLAttributes( Element element )
+    public PfV1GeneratorVars copy()
     {
-        fitMethod   .setValue( FitMethod.valueOf( element.getAttribute("fitMethod"   ) ) );
-        velocity    .set( Double.parseDouble( element.getAttribute("velocity"        ) ) );
-        accel       .set( Double.parseDouble( element.getAttribute("acceleration"    ) ) );
-        jerk        .set( Double.parseDouble( element.getAttribute("jerk"            ) ) );
-        isReversed  .set( Boolean.parseBoolean( element.getAttribute("reversed"      ) ) );
+        PfV1GeneratorVars copy = new PfV1GeneratorVars();
+
+        copy.fitMethod  .setValue( fitMethod.getValue() );
+        copy.velocity   .set( velocity.get() );
+        copy.accel      .set( accel.get() );
+        copy.jerk       .set( jerk.get() );
+        copy.isReversed .set( isReversed.get() );
+
+        return copy;
     }
 
     /**
@@ -97,9 +124,9 @@ public class PfV1GeneratorVars implements GeneratorVars
         switch( SharedGeneratorVars.getInstance().getUnit() )
         {
             case FEET:
-                velocity.set( 4.0 );
-                accel.set( 3.0 );
-                jerk.set( 5.0 );
+                velocity.set( Units.FEET.toMeters( 4.0 ) );
+                accel.set( Units.FEET.toMeters( 3.0 ) );
+                jerk.set( Units.FEET.toMeters( 5.0 ) );
                 break;
 
             case METERS:
@@ -108,66 +135,13 @@ public class PfV1GeneratorVars implements GeneratorVars
                 break;
 
             case INCHES:
-                velocity.set( 48 );
-                accel.set( 36 );
-                jerk .set( 720 );
-                break;
-        }
-    }
-
-    @Override
-    public void changeUnit(  Units oldUnit, Units newUnit )
-    {
-        // Convert each MP variable to the new unit
-        double tmp_WBW = 0, tmp_WBD = 0, tmp_vel = 0, tmp_acc = 0, tmp_jer = 0;
-
-        // convert to intermediate unit of feet
-        switch( oldUnit )
-        {
-            case FEET:
-                tmp_vel = velocity.get();
-                tmp_acc = accel.get();
-                tmp_jer = jerk.get();
-                break;
-
-            case INCHES:
-                tmp_vel = Mathf.inchesToFeet( velocity.get() );
-                tmp_acc = Mathf.inchesToFeet( accel.get() );
-                tmp_jer = Mathf.inchesToFeet( jerk.get() );
-                break;
-
-            case METERS:
-                tmp_vel = Mathf.meterToFeet( velocity.get() );
-                tmp_acc = Mathf.meterToFeet( accel.get() );
-                tmp_jer = Mathf.meterToFeet( jerk.get() );
-                break;
-        }
-
-        // convert from intermediate unit of feet
-        switch( newUnit )
-        {
-            case FEET:
-                velocity    .set( tmp_vel );
-                accel       .set( tmp_acc );
-                jerk        .set( tmp_jer );
-                break;
-
-            case INCHES:
-                velocity    .set( Mathf.round( Mathf.feetToInches( tmp_vel ),4 ) );
-                accel       .set( Mathf.round( Mathf.feetToInches( tmp_acc ),4 ) );
-                jerk        .set( Mathf.round( Mathf.feetToInches( tmp_jer ),4 ) );
-
-                break;
-
-            case METERS:
-                velocity    .set( Mathf.round( Mathf.feetToMeter( tmp_vel ),4 ) );
-                accel       .set( Mathf.round( Mathf.feetToMeter( tmp_acc ),4 ) );
-                jerk        .set( Mathf.round( Mathf.feetToMeter( tmp_jer ),4 ) );
+                velocity.set( Units.INCHES.toMeters( 48 ) );
+                accel.set( Units.INCHES.toMeters( 36 ) );
+                jerk .set( Units.INCHES.toMeters( 720 ) );
                 break;
         }
     }
 
-
     // Getters and Setters
     public double getVelocity()
     {
@@ -1,11 +1,16 @@
 package com.mammen.generator.generator_vars;
 
-import com.mammen.util.Mathf;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.Property;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
-import org.w3c.dom.Element;
+import javafx.beans.value.ObservableValue;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.util.List;
 
 public class SharedGeneratorVars implements GeneratorVars
 {
@@ -15,19 +20,17 @@ public class SharedGeneratorVars implements GeneratorVars
     private DoubleProperty timeStep         = new SimpleDoubleProperty( 0.05 );
     private Property<DriveBase> driveBase   = new SimpleObjectProperty<>( DriveBase.TANK );
     private Property<Units> unit            = new SimpleObjectProperty<>( Units.FEET );
-    private DoubleProperty wheelBaseW       = new SimpleDoubleProperty( 1.5 );
-    private DoubleProperty wheelBaseD       = new SimpleDoubleProperty( 2.0 );
+    private DoubleProperty wheelBaseW       = new SimpleDoubleProperty( Units.FEET.toMeters( 1.5 ) );
+    private DoubleProperty wheelBaseD       = new SimpleDoubleProperty( Units.FEET.toMeters( 2.0 ) );
 
 
     /**************************************************************************
      *   Constructor
+     *       Use getInstance() for the vars the UI is bound to. New instances
+     *       are for generating paths independently of the UI.
      *************************************************************************/
-    private SharedGeneratorVars()
+    public SharedGeneratorVars()
     {
-        unit.addListener( (o, oldValue, newValue) ->
-        {
-            changeUnit( oldValue, newValue );
-        });
     }
 
 
@@ -123,23 +126,43 @@ public class SharedGeneratorVars implements GeneratorVars
     }
 
     @Override
-    public void writeXMLAttributes( Element element )
+    public void writeXMLAttributes( XMLStreamWriter writer, Units unit ) throws XMLStreamException
+    {
+        writer.writeAttribute("unit",            "" + unit.name()                            );
+        writer.writeAttribute("driveBase",       "" + driveBase.getValue().name()            );
+        writer.writeAttribute("dt",              "" + timeStep.getValue()                    );
+        writer.writeAttribute("wheelBaseW",      "" + unit.fromMeters( wheelBaseW.get() )    );
+        writer.writeAttribute("wheelBaseD",      "" + unit.fromMeters( wheelBaseD.get() )    );
+    }
+
+    @Override
+    public void readXMLAttributes( XMLStreamReader reader, Units unit )
+    {
+        this.unit   .setValue( unit );
+        driveBase   .setValue( DriveBase.valueOf( reader.getAttributeValue( null, "driveBase"   ) ) );
+        timeStep    .set( Double.parseDouble( reader.getAttributeValue( null, "dt"              ) ) );
+        wheelBaseW  .set( unit.toMeters( Double.parseDouble( reader.getAttributeValue( null, "wheelBaseW" ) ) ) );
+        wheelBaseD  .set( unit.toMeters( Double.parseDouble( reader.getAttributeValue( null, "wheelBaseD" ) ) ) );
+    }
+
+    @Override
+    public List<ObservableValue<?>> getObservables()
     {
-        element.setAttribute("unit",            "" + unit.getValue().name()      );
-        element.setAttribute("driveBase",       "" + driveBase.getValue().name() );
-        element.setAttribute("dt",              "" + timeStep.getValue()         );
-        element.setAttribute("wheelBaseW",      "" + wheelBaseW.getValue()       );
-        element.setAttribute("wheelBaseD",      "" + wheelBaseD.getValue()       );
+        return List.of( unit, driveBase, timeStep, wheelBaseW, wheelBaseD );
     }
 
     @Override
-    public void readXMLAttributes( Element element )
+    public SharedGeneratorVars copy()
     {
-        unit        .setValue( Units    .valueOf( element.getAttribute("unit"        ) ) );
-        driveBase   .setValue( DriveBase.valueOf( element.getAttribute("driveBase"   ) ) );
-        timeStep    .set( Double.parseDouble( element.getAttribute("dt"              ) ) );
-        wheelBaseW  .set( Double.parseDouble( element.getAttribute("wheelBaseW"      ) ) );
-        wheelBaseD  .set( Double.parseDouble( element.getAttribute("wheelBaseD"      ) ) );
+        SharedGeneratorVars copy = new SharedGeneratorVars();
+
+        copy.unit       .setValue( unit.getValue() );
+        copy.driveBase  .setValue( driveBase.getValue() );
+        copy.timeStep   .set( timeStep.get() );
+        copy.wheelBaseW .set( wheelBaseW.get() );
+        copy.wheelBaseD .set( wheelBaseD.get() );
+
+        return copy;
     }
 
     @Override
@@ -151,8 +174,8 @@ public class SharedGeneratorVars implements GeneratorVars
         {
             case FEET:
                 timeStep.set( 0.05 );
-                wheelBaseW.set( 1.5 );
-                wheelBaseD.set( 2.0 );
+                wheelBaseW.set( Units.FEET.toMeters( 1.5 ) );
+                wheelBaseD.set( Units.FEET.toMeters( 2.0 ) );
                 break;
 
             case METERS:
@@ -163,54 +186,8 @@ public class SharedGeneratorVars implements GeneratorVars
 
             case INCHES:
                 timeStep.set( 0.05 );
-                wheelBaseW.set( 17.568 );
-                wheelBaseD.set( 17.568 );
-                break;
-        }
-    }
-
-    @Override
-    public void changeUnit( Units oldUnit, Units newUnit )
-    {
-        // Convert each MP variable to the new unit
-        double tmp_WBW = 0, tmp_WBD = 0, tmp_vel = 0, tmp_acc = 0, tmp_jer = 0;
-
-        // convert to intermediate unit of feet
-        switch( oldUnit )
-        {
-            case FEET:
-                tmp_WBW = wheelBaseW.get();
-                tmp_WBD = wheelBaseD.get();
-                break;
-
-            case INCHES:
-                tmp_WBW = Mathf.inchesToFeet( wheelBaseW.get() );
-                tmp_WBD = Mathf.inchesToFeet( wheelBaseD.get() );
-                break;
-
-            case METERS:
-                tmp_WBW = Mathf.meterToFeet( wheelBaseW.get() );
-                tmp_WBD = Mathf.meterToFeet( wheelBaseD.get() );
-                break;
-        }
-
-        // convert from intermediate unit of feet
-        switch( newUnit )
-        {
-            case FEET:
-                wheelBaseW  .set( tmp_WBW );
-                wheelBaseD  .set( tmp_WBD );
-                break;
-
-            case INCHES:
-                wheelBaseW  .set( Mathf.round( Mathf.feetToInches( tmp_WBW ),4 ) );
-                wheelBaseD  .set( Mathf.round( Mathf.feetToInches( tmp_WBD ),4 ) );
-
-                break;
-
-            case METERS:
-                wheelBaseW  .set( Mathf.round( Mathf.feetToMeter( tmp_WBW ),4 ) );
-                wheelBaseD  .set( Mathf.round( Mathf.feetToMeter( tmp_WBD ),4 ) );
+                wheelBaseW.set( Units.INCHES.toMeters( 17.568 ) );
+                wheelBaseD.set( Units.INCHES.toMeters( 17.568 ) );
                 break;
         }
     }
@@ -1,17 +1,35 @@
 package com.mammen.generator.generator_vars;
 
-// Units of every value
+import com.mammen.util.Mathf;
+
+/******************************************************************************
+ *   Units
+ *       The unit lengths are shown, typed and exported in. Everything in the
+ *       model (waypoints, generator vars, paths) is stored in meters, the
+ *       unit is only applied where a value leaves or enters the program:
+ *       the table, the graph axes, the settings, project files and exports.
+ *       Velocity, acceleration and jerk scale the same way as a length.
+ *
+ *       The ordinals are written to .traj files, only add new units to the end.
+ ******************************************************************************/
 public enum Units
 {
-    FEET( "Feet" ),
-    INCHES( "Inches" ),
-    METERS( "Meter" );
+    FEET( "Feet", "ft", 0.3048 ),
+    INCHES( "Inches", "in", 0.0254 ),
+    METERS( "Meter", "m", 1.0 );
+
+    // Decimal places kept when showing or saving a value that was converted.
+    private static final int PLACES = 9;
 
     private String label;
+    private String abbreviation;
+    private double meters;
 
-    Units( String label )
+    Units( String label, String abbreviation, double meters )
     {
         this.label = label;
+        this.abbreviation = abbreviation;
+        this.meters = meters;
     }
 
     @Override
@@ -20,4 +38,50 @@ public enum Units
         return label;
     }
 
-}
\ No newline at end of file
+    public String getAbbreviation()
+    {
+        return abbreviation;
+    }
+
+
+    /**************************************************************************
+     * <p>Converts a value in this unit to meters.</p>
+     *************************************************************************/
+    public double toMeters( double value )
+    {
+        return value * meters;
+    }
+
+
+    /**************************************************************************
+     * <p>Converts a value in meters to this unit, for showing or saving it.
+     *      The trip through meters can leave a value one bit off what was
+     *      typed in, 1.5 ft coming back as 1.4999999999999998, so the result
+     *      is rounded to nine decimal places.</p>
+     *************************************************************************/
+    public double fromMeters( double value )
+    {
+        if( this == METERS )
+            return value;
+
+        return Mathf.round( value / meters, PLACES );
+    }
+
+
+    /**************************************************************************
+     * <p>Converts a whole column from meters to this unit. Nothing is
+     *      rounded, this is for graphs and exports.</p>
+     *
+     * @param values Values in meters.
+     * @param out Receives the converted values, may be values itself.
+     * @param length Number of values to convert.
+     *************************************************************************/
+    public void fromMeters( double[] values, double[] out, int length )
+    {
+        // A plain loop over the arrays, the JIT turns it into vector instructions.
+        for( int i = 0; i < length; i++ )
+        {
+            out[ i ] = values[ i ] / meters;
+        }
+    }
+}
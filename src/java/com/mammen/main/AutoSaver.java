@@ -0,0 +1,542 @@
+package com.mammen.main;
+
+import com.mammen.file_io.AtomicFile;
+import com.mammen.file_io.ProjectIO;
+import com.mammen.generator.Generator;
+import com.mammen.generator.generator_vars.GeneratorVars;
+import com.mammen.generator.generator_vars.SharedGeneratorVars;
+import com.mammen.path.Waypoint;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/******************************************************************************
+ *   AutoSaver
+ *       Saves the working project in the background. The model hands in a
+ *       snapshot every time something changes, all disk access happens on
+ *       one worker thread so the JavaFX thread never waits on it.
+ *
+ *       Every snapshot is appended to a journal as soon as the worker gets
+ *       to it, only the waypoints that changed are written. Once the edits
+ *       stop for DEBOUNCE_MS the project file is replaced atomically and
+ *       the journal is compacted down to a single snapshot. After a crash
+ *       the journal holds the last state the worker saw.
+ *
+ *       Journal layout (big endian, see DataOutputStream):
+ *
+ *           int magic, short version, UTF project path ("" if untitled)
+ *           then records until the end of the file:
+ *               VARS:   int length, project xml without waypoints
+ *               RESIZE: int number of waypoints
+ *               SET:    int index, double x (m), double y (m), double angle
+ *
+ *       Version 1 journals held x and y in the unit of the project and are
+ *       not recovered.
+ ******************************************************************************/
+public class AutoSaver
+{
+    public static final String JOURNAL_NAME = "autosave.journal";
+    public static final long DEBOUNCE_MS = 2000;
+
+    private static final int MAGIC = 0x4D50474A; // "MPGJ"
+    private static final short VERSION = 2;
+
+    private static final byte VARS = 1;
+    private static final byte RESIZE = 2;
+    private static final byte SET = 3;
+
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    /**************************************************************************
+     *  Everything that is saved with a project, copied on the JavaFX thread
+     *  so the worker can read it without locking.
+     *************************************************************************/
+    public static class Snapshot
+    {
+        private final File project;
+        private final Generator.Type type;
+        private final SharedGeneratorVars sharedVars;
+        private final GeneratorVars vars;
+        private final double[] x;
+        private final double[] y;
+        private final double[] angle;
+
+        /**
+         * @param project The file the project is saved to, null if it hasn't been saved yet.
+         * @param sharedVars A copy of the shared vars.
+         * @param vars A copy of the generator vars.
+         * @param waypoints The waypoints, their values are copied.
+         */
+        public Snapshot( File project, Generator.Type type, SharedGeneratorVars sharedVars, GeneratorVars vars, List<Waypoint> waypoints )
+        {
+            this.project = project;
+            this.type = type;
+            this.sharedVars = sharedVars;
+            this.vars = vars;
+
+            int n = waypoints.size();
+            x = new double[ n ];
+            y = new double[ n ];
+            angle = new double[ n ];
+
+            for( int i = 0; i < n; i++ )
+            {
+                Waypoint wp = waypoints.get( i );
+
+                x[ i ] = wp.getX();
+                y[ i ] = wp.getY();
+                angle[ i ] = wp.getAngle();
+            }
+        }
+
+        private int size()
+        {
+            return x.length;
+        }
+
+        private boolean sameWaypoint( int i, Snapshot other )
+        {
+            return Double.compare( x[ i ], other.x[ i ] ) == 0
+                && Double.compare( y[ i ], other.y[ i ] ) == 0
+                && Double.compare( angle[ i ], other.angle[ i ] ) == 0;
+        }
+
+        private List<Waypoint> waypoints()
+        {
+            List<Waypoint> list = new ArrayList<>( size() );
+
+            for( int i = 0; i < size(); i++ )
+            {
+                list.add( new Waypoint( x[ i ], y[ i ], angle[ i ] ) );
+            }
+
+            return list;
+        }
+
+        private byte[] varsXML() throws IOException, XMLStreamException
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            ProjectIO.save( out, type, sharedVars, vars, Collections.emptyList() );
+
+            return out.toByteArray();
+        }
+    }
+
+
+    /**************************************************************************
+     *  What was read back from a journal.
+     *************************************************************************/
+    public static class Recovered
+    {
+        private final File project;
+        private final byte[] varsXML;
+        private final List<Waypoint> waypoints;
+
+        private Recovered( File project, byte[] varsXML, List<Waypoint> waypoints )
+        {
+            this.project = project;
+            this.varsXML = varsXML;
+            this.waypoints = waypoints;
+        }
+
+        /**
+         * @return The project file, null if the project was never saved.
+         */
+        public File getProject()
+        {
+            return project;
+        }
+
+        /**
+         * @return A project file without any waypoints, holding the generator type and vars.
+         */
+        public byte[] getVarsXML()
+        {
+            return varsXML;
+        }
+
+        public List<Waypoint> getWaypoints()
+        {
+            return waypoints;
+        }
+    }
+
+
+    private final File journalFile;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicReference<Snapshot> pending = new AtomicReference<>();
+
+    /******************************************************
+     *   Only touched on the worker thread.
+     ******************************************************/
+    private DataOutputStream journal;
+    private FileOutputStream journalOut;
+    private Snapshot journaled;
+    private byte[] journaledVars;
+    private boolean dirty = false;
+    private ScheduledFuture<?> saveTask;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param journalFile Where to keep the journal.
+     *************************************************************************/
+    public AutoSaver( File journalFile )
+    {
+        this.journalFile = journalFile;
+
+        executor = new ScheduledThreadPoolExecutor( 1, r ->
+        {
+            Thread t = new Thread( r, "Autosave" );
+            t.setDaemon( true );
+            return t;
+        });
+
+        // A save that is still waiting on the debounce is done by close() instead.
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy( false );
+    }
+
+
+    public File getJournalFile()
+    {
+        return journalFile;
+    }
+
+
+    /**************************************************************************
+     * <p>Records a new state of the project. Returns right away, if the
+     *      worker is still busy only the newest snapshot is written.</p>
+     *
+     * @param snapshot The state of the project.
+     *************************************************************************/
+    public void changed( Snapshot snapshot )
+    {
+        // Only queue the worker if it doesn't have a snapshot waiting already.
+        if( pending.getAndSet( snapshot ) == null )
+        {
+            try
+            {
+                executor.execute( this::writeJournal );
+            }
+            catch( RejectedExecutionException e )
+            {
+                // Closed, the last state has been saved already.
+            }
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Writes the last snapshot and saves the project, then stops the
+     *      worker. The journal is removed unless the project couldn't be
+     *      saved. Waits at most CLOSE_TIMEOUT_MS.</p>
+     *************************************************************************/
+    public void close()
+    {
+        try
+        {
+            executor.execute( () ->
+            {
+                writeJournal();
+                save();
+
+                // Untitled projects were never saved before the autosaver either.
+                if( journaled == null || journaled.project == null || !dirty )
+                    deleteJournal();
+            });
+        }
+        catch( RejectedExecutionException e )
+        {
+            return;
+        }
+
+        executor.shutdown();
+
+        try
+        {
+            executor.awaitTermination( CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**************************************************************************
+     *  Appends the pending snapshot to the journal and restarts the debounce.
+     *************************************************************************/
+    private void writeJournal()
+    {
+        Snapshot snapshot = pending.getAndSet( null );
+
+        if( snapshot == null )
+            return;
+
+        try
+        {
+            if( journal == null || !Objects.equals( snapshot.project, journaled.project ) )
+                rewriteJournal( snapshot );
+            else
+                appendJournal( snapshot );
+
+            dirty = true;
+        }
+        catch( IOException | XMLStreamException e )
+        {
+            e.printStackTrace();
+        }
+
+        if( saveTask != null )
+            saveTask.cancel( false );
+
+        if( !executor.isShutdown() )
+            saveTask = executor.schedule( this::save, DEBOUNCE_MS, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**************************************************************************
+     *  Saves the project file and compacts the journal.
+     *************************************************************************/
+    private void save()
+    {
+        if( !dirty || journaled == null || journaled.project == null )
+            return;
+
+        try
+        {
+            ProjectIO.save( journaled.project, journaled.type, journaled.sharedVars, journaled.vars, journaled.waypoints() );
+            dirty = false;
+
+            rewriteJournal( journaled );
+        }
+        catch( IOException | XMLStreamException e )
+        {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**************************************************************************
+     *  Only writes the parts of the snapshot that changed since the last one.
+     *************************************************************************/
+    private void appendJournal( Snapshot snapshot ) throws IOException, XMLStreamException
+    {
+        byte[] vars = snapshot.varsXML();
+
+        if( !Arrays.equals( vars, journaledVars ) )
+        {
+            journal.writeByte( VARS );
+            journal.writeInt( vars.length );
+            journal.write( vars );
+        }
+
+        if( snapshot.size() != journaled.size() )
+        {
+            journal.writeByte( RESIZE );
+            journal.writeInt( snapshot.size() );
+        }
+
+        for( int i = 0; i < snapshot.size(); i++ )
+        {
+            if( i >= journaled.size() || !snapshot.sameWaypoint( i, journaled ) )
+                writeSet( journal, snapshot, i );
+        }
+
+        journal.flush();
+        journalOut.getChannel().force( false );
+
+        journaled = snapshot;
+        journaledVars = vars;
+    }
+
+
+    /**************************************************************************
+     *  Replaces the journal with one that holds only the given snapshot.
+     *************************************************************************/
+    private void rewriteJournal( Snapshot snapshot ) throws IOException, XMLStreamException
+    {
+        closeJournal();
+
+        byte[] vars = snapshot.varsXML();
+
+        AtomicFile.write( journalFile, stream ->
+        {
+            DataOutputStream out = new DataOutputStream( stream );
+
+            out.writeInt( MAGIC );
+            out.writeShort( VERSION );
+            out.writeUTF( snapshot.project == null ? "" : snapshot.project.getAbsolutePath() );
+
+            out.writeByte( VARS );
+            out.writeInt( vars.length );
+            out.write( vars );
+
+            out.writeByte( RESIZE );
+            out.writeInt( snapshot.size() );
+
+            for( int i = 0; i < snapshot.size(); i++ )
+            {
+                writeSet( out, snapshot, i );
+            }
+
+            out.flush();
+        });
+
+        journalOut = new FileOutputStream( journalFile, true );
+        journal = new DataOutputStream( new BufferedOutputStream( journalOut ) );
+        journaled = snapshot;
+        journaledVars = vars;
+    }
+
+    private static void writeSet( DataOutputStream out, Snapshot snapshot, int i ) throws IOException
+    {
+        out.writeByte( SET );
+        out.writeInt( i );
+        out.writeDouble( snapshot.x[ i ] );
+        out.writeDouble( snapshot.y[ i ] );
+        out.writeDouble( snapshot.angle[ i ] );
+    }
+
+    private void closeJournal()
+    {
+        if( journal == null )
+            return;
+
+        try
+        {
+            journal.close();
+        }
+        catch( IOException e )
+        {
+            e.printStackTrace();
+        }
+
+        journal = null;
+        journalOut = null;
+    }
+
+    private void deleteJournal()
+    {
+        closeJournal();
+
+        if( journalFile.exists() && !journalFile.delete() )
+            System.err.println( "Could not delete " + journalFile );
+    }
+
+
+    /**************************************************************************
+     * <p>Reads back a journal left behind by a crash. A record that was
+     *      only partly written when the program died is ignored.</p>
+     *
+     * @param journalFile The journal to read.
+     * @return The last state in the journal, or null if there is no journal
+     *      or it doesn't hold a project.
+     *************************************************************************/
+    public static Recovered recover( File journalFile )
+    {
+        if( !journalFile.isFile() )
+            return null;
+
+        try( InputStream stream = new BufferedInputStream( new FileInputStream( journalFile ) ) )
+        {
+            DataInputStream in = new DataInputStream( stream );
+
+            if( in.readInt() != MAGIC || in.readShort() != VERSION )
+                return null;
+
+            String projectPath = in.readUTF();
+            byte[] vars = null;
+            List<double[]> waypoints = new ArrayList<>();
+
+            try
+            {
+                while( true )
+                {
+                    byte tag = in.readByte();
+
+                    if( tag == VARS )
+                    {
+                        int length = in.readInt();
+
+                        if( length < 0 || length > journalFile.length() )
+                            break;
+
+                        byte[] read = new byte[ length ];
+                        in.readFully( read );
+                        vars = read;
+                    }
+                    else if( tag == RESIZE )
+                    {
+                        int n = in.readInt();
+
+                        while( waypoints.size() > n )
+                            waypoints.remove( waypoints.size() - 1 );
+
+                        while( waypoints.size() < n )
+                            waypoints.add( new double[ 3 ] );
+                    }
+                    else if( tag == SET )
+                    {
+                        int i = in.readInt();
+                        double[] wp = { in.readDouble(), in.readDouble(), in.readDouble() };
+
+                        if( i < 0 || i >= waypoints.size() )
+                            break;
+
+                        waypoints.set( i, wp );
+                    }
+                    else
+                    {
+                        // Garbage after a torn write, nothing after it can be trusted.
+                        break;
+                    }
+                }
+            }
+            catch( EOFException e )
+            {
+                // End of the journal, or a record that was cut off.
+            }
+
+            if( vars == null )
+                return null;
+
+            List<Waypoint> list = new ArrayList<>( waypoints.size() );
+
+            for( double[] wp : waypoints )
+            {
+                list.add( new Waypoint( wp[ 0 ], wp[ 1 ], wp[ 2 ] ) );
+            }
+
+            return new Recovered( projectPath.isEmpty() ? null : new File( projectPath ), vars, list );
+        }
+        catch( IOException e )
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.mammen.main;
+
+import com.mammen.file_io.FileIO;
+import com.mammen.file_io.ProjectIO;
+import com.mammen.file_io.TrajectoryFile;
+import com.mammen.generator.Generator;
+import com.mammen.generator.GeneratorConfig;
+import com.mammen.generator.JavaGenerator;
+import com.mammen.generator.PfV1Generator;
+import com.mammen.generator.generator_vars.GeneratorVars;
+import com.mammen.generator.generator_vars.PfV1GeneratorVars;
+import com.mammen.generator.generator_vars.SharedGeneratorVars;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/******************************************************************************
+ *   BatchExporter
+ *       Headless entry point that generates every given project and exports
+ *       its path as CSV or binary .traj. Each project gets its own vars and generator, so
+ *       projects are generated in parallel on a fork-join pool. The JavaFX
+ *       toolkit and the settings are never touched.
+ *
+ *       Usage: --batch <dir|file|glob>... [--out <dir>] [--elements <E1,E2,...>] [--format csv|traj]
+ ******************************************************************************/
+public class BatchExporter
+{
+    private static final String USAGE = "Usage: --batch <dir|file|glob>... [--out <dir>] [--elements DELTA_TIME,POSITION,VELOCITY] [--format csv|traj]";
+
+    /**************************************************************************
+     *  Result of exporting a single project.
+     *************************************************************************/
+    private static class Result
+    {
+        File project;
+        int segments;
+        long nanos;
+        Exception error;
+    }
+
+
+    public static void main( String[] args )
+    {
+        List<String> inputs = new ArrayList<>();
+        File outDir = null;
+        boolean binary = false;
+
+        // Same defaults as the settings.
+        List<Path.Elements> elements = List.of( Path.Elements.DELTA_TIME, Path.Elements.POSITION, Path.Elements.VELOCITY );
+
+        try
+        {
+            for( int i = 0; i < args.length; i++ )
+            {
+                switch( args[ i ] )
+                {
+                    case "--out":
+                        outDir = new File( args[ ++i ] );
+                        break;
+
+                    case "--elements":
+                        elements = Stream.of( args[ ++i ].split( "," ) )
+                                         .map( e -> Path.Elements.valueOf( e.trim() ) )
+                                         .collect( Collectors.toList() );
+                        break;
+
+                    case "--format":
+                        String format = args[ ++i ];
+
+                        if( format.equals( TrajectoryFile.EXTENSION ) )
+                            binary = true;
+                        else if( !format.equals( "csv" ) )
+                            throw new IllegalArgumentException( format );
+                        break;
+
+                    default:
+                        inputs.add( args[ i ] );
+                        break;
+                }
+            }
+        }
+        catch( ArrayIndexOutOfBoundsException | IllegalArgumentException e )
+        {
+            System.err.println( USAGE );
+            System.exit( 2 );
+        }
+
+        List<File> projects = new ArrayList<>();
+
+        // A project matched by more than one argument is only exported once.
+        Set<java.nio.file.Path> seen = new HashSet<>();
+
+        try
+        {
+            for( String input : inputs )
+            {
+                for( File project : findProjects( input ) )
+                {
+                    if( seen.add( project.toPath().toAbsolutePath().normalize() ) )
+                        projects.add( project );
+                }
+            }
+        }
+        catch( IOException e )
+        {
+            System.err.println( "Could not list projects: " + e.getMessage() );
+            System.exit( 2 );
+        }
+
+        if( projects.isEmpty() )
+        {
+            System.err.println( "No projects found." );
+            System.err.println( USAGE );
+            System.exit( 2 );
+        }
+
+        if( outDir != null && !outDir.isDirectory() && !outDir.mkdirs() )
+        {
+            System.err.println( "Could not create " + outDir );
+            System.exit( 2 );
+        }
+
+        System.exit( run( projects, outDir, elements, binary ) );
+    }
+
+
+    /**************************************************************************
+     * <p>Generates and exports every project in parallel.</p>
+     *
+     * @param projects The project files to export.
+     * @param outDir Where to write the exported files. Null writes them next to each project.
+     * @param elements The columns to export.
+     * @param binary Export .traj files instead of CSV.
+     * @return The exit code, non zero if any project failed.
+     *************************************************************************/
+    public static int run( List<File> projects, File outDir, List<Path.Elements> elements, boolean binary )
+    {
+        // Projects exported at the same time must not write the same files.
+        Map<File, File> outputs = new HashMap<>();
+
+        for( File project : projects )
+        {
+            File other = outputs.putIfAbsent( outputBase( project, outDir ).getAbsoluteFile(), project );
+
+            if( other != null )
+            {
+                System.err.println( "Both " + other + " and " + project + " would be exported to "
+                                    + outputBase( project, outDir ) + ", export them to different directories." );
+                return 2;
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+        List<Future<Result>> futures = new ArrayList<>();
+
+        // The csv export of a project waits for its stream, which must not run on the pool it waits in.
+        //  Each stream only uses a couple of threads and at most one stream per pool thread is running.
+        ExecutorService streams = Executors.newCachedThreadPool( r ->
+        {
+            Thread t = new Thread( r, "Batch Stream" );
+            t.setDaemon( true );
+            return t;
+        });
+
+        long start = System.nanoTime();
+
+        for( File project : projects )
+        {
+            futures.add( pool.submit( () -> export( project, outDir, elements, binary, streams ) ) );
+        }
+
+        int failed = 0;
+        long segments = 0;
+
+        for( Future<Result> future : futures )
+        {
+            Result result;
+
+            try
+            {
+                result = future.get();
+            }
+            catch( InterruptedException | ExecutionException e )
+            {
+                throw new RuntimeException( e );
+            }
+
+            if( result.error != null )
+            {
+                failed++;
+                System.out.printf( "FAILED  %-40s %s%n", result.project.getName(), result.error );
+            }
+            else
+            {
+                segments += result.segments;
+                System.out.printf( "OK      %-40s %8d segments %10.2f ms%n", result.project.getName(), result.segments, result.nanos / 1e6 );
+            }
+        }
+
+        pool.shutdown();
+        streams.shutdown();
+
+        double totalSeconds = ( System.nanoTime() - start ) / 1e9;
+
+        System.out.printf( "%d of %d projects exported in %.3f s (%.1f projects/s, %.0f segments/s) on %d threads%n",
+                           projects.size() - failed, projects.size(), totalSeconds,
+                           ( projects.size() - failed ) / totalSeconds, segments / totalSeconds,
+                           pool.getParallelism() );
+
+        return failed == 0 ? 0 : 1;
+    }
+
+
+    private static Result export( File project, File outDir, List<Path.Elements> elements, boolean binary, Executor executor )
+    {
+        Result result = new Result();
+        result.project = project;
+
+        long start = System.nanoTime();
+
+        try
+        {
+            SharedGeneratorVars sharedVars = new SharedGeneratorVars();
+            GeneratorVars[] vars = new GeneratorVars[ 1 ];
+            List<Waypoint> waypoints = new ArrayList<>();
+
+            Generator.Type type = ProjectIO.load( project, sharedVars, t -> vars[ 0 ] = createVars( t ), waypoints );
+
+            Generator generator = createGenerator( type );
+            GeneratorConfig config = GeneratorConfig.of( sharedVars, vars[ 0 ] );
+
+            File base = outputBase( project, outDir );
+
+            // Each project is exported in the unit it was saved in.
+            if( binary )
+            {
+                Path path = generator.generate( waypoints, config );
+
+                FileIO.saveBinaryPath( path, base, elements, sharedVars.getUnit() );
+                result.segments = path.getLength();
+            }
+            else
+            {
+                // A .traj file stores a column at a time, but a csv file can be written while the path is generated.
+                CompletableFuture<Integer> export = FileIO.streamPath( generator.stream( waypoints, config, executor ), base,
+                                                                       elements, sharedVars.getUnit(), FileIO.DEFAULT_PRECISION );
+
+                try
+                {
+                    result.segments = export.get();
+                }
+                catch( ExecutionException e )
+                {
+                    // Report what went wrong, not that it went wrong on another thread.
+                    result.error = ( e.getCause() instanceof Exception ) ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        catch( Exception e )
+        {
+            result.error = e;
+        }
+
+        result.nanos = System.nanoTime() - start;
+
+        return result;
+    }
+
+
+    /**************************************************************************
+     * <p>Where the files of a project are written, without the suffixes the
+     *      export adds. The project extension is dropped if it has one.</p>
+     *************************************************************************/
+    private static File outputBase( File project, File outDir )
+    {
+        String name = project.getName();
+        String extension = "." + ProjectIO.PROJECT_EXTENSION;
+
+        if( name.toLowerCase().endsWith( extension ) && name.length() > extension.length() )
+            name = name.substring( 0, name.length() - extension.length() );
+
+        File dir = ( outDir != null ) ? outDir : project.getAbsoluteFile().getParentFile();
+
+        return new File( dir, name );
+    }
+
+
+    private static GeneratorVars createVars( Generator.Type type )
+    {
+        switch( type )
+        {
+            case PATHFINDER_V1:
+            case JAVA:
+                return new PfV1GeneratorVars();
+
+            default:
+                throw new RuntimeException( "The programmer forgot to add a case for the following generator: " + type );
+        }
+    }
+
+
+    private static Generator createGenerator( Generator.Type type )
+    {
+        switch( type )
+        {
+            case PATHFINDER_V1:
+                return new PfV1Generator();
+
+            case JAVA:
+                return new JavaGenerator();
+
+            default:
+                throw new RuntimeException( "The programmer forgot to add a case for the following generator: " + type );
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Resolves a command line argument to project files. The argument may
+     *      be a project file, a directory of projects or a glob such as
+     *      autos/*.xml.</p>
+     *************************************************************************/
+    private static List<File> findProjects( String input ) throws IOException
+    {
+        File file = new File( input );
+
+        if( file.isFile() )
+            return List.of( file );
+
+        if( file.isDirectory() )
+        {
+            File[] files = file.listFiles( ( dir, name ) -> name.toLowerCase().endsWith( "." + ProjectIO.PROJECT_EXTENSION ) );
+
+            List<File> projects = new ArrayList<>();
+            if( files != null )
+            {
+                for( File f : files )
+                    projects.add( f );
+            }
+
+            projects.sort( null );
+            return projects;
+        }
+
+        // Treat it as a glob. Walk from the last directory before the first wildcard.
+        int wildcard = input.length();
+        for( char c : new char[]{ '*', '?', '[', '{' } )
+        {
+            int i = input.indexOf( c );
+            if( i >= 0 )
+                wildcard = Math.min( wildcard, i );
+        }
+
+        int sep = Math.max( input.lastIndexOf( '/', wildcard ), input.lastIndexOf( File.separatorChar, wildcard ) );
+        java.nio.file.Path base = Paths.get( sep < 0 ? "" : input.substring( 0, sep + 1 ) );
+
+        if( !Files.isDirectory( base.toAbsolutePath() ) )
+            return List.of();
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher( "glob:" + input );
+
+        try( Stream<java.nio.file.Path> files = Files.walk( base ) )
+        {
+            return files.filter( Files::isRegularFile )
+                        .filter( matcher::matches )
+                        .map( java.nio.file.Path::toFile )
+                        .sorted()
+                        .collect( Collectors.toList() );
+        }
+    }
+}
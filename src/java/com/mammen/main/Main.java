@@ -1,9 +1,46 @@
 package com.mammen.main;
 
+import com.mammen.metrics.FlightRecording;
+import com.mammen.metrics.Metrics;
+import com.mammen.server.GenerationServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class Main
 {
 	public static void main( String[] args )
 	{
+		Metrics.getInstance().start();
+
+		// --jfr works for the UI, batch export and the server, take it out before any of them sees the arguments.
+		List<String> rest = new ArrayList<>();
+
+		for( String arg : args )
+		{
+			if( FlightRecording.isFlag( arg ) )
+				FlightRecording.start( arg );
+			else
+				rest.add( arg );
+		}
+
+		args = rest.toArray( new String[ 0 ] );
+
+		// Headless batch export, this must not load any JavaFX UI classes.
+		if( args.length > 0 && args[ 0 ].equals( "--batch" ) )
+		{
+			BatchExporter.main( Arrays.copyOfRange( args, 1, args.length ) );
+			return;
+		}
+
+		// Headless generation server, also without any JavaFX UI classes.
+		if( args.length > 0 && args[ 0 ].equals( "--server" ) )
+		{
+			GenerationServer.main( Arrays.copyOfRange( args, 1, args.length ) );
+			return;
+		}
+
 		MainApp.main( args );
 
 		/*
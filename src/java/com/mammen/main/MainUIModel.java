@@ -1,35 +1,28 @@
 package com.mammen.main;
 
 import com.mammen.file_io.FileIO;
+import com.mammen.file_io.ProjectIO;
 import com.mammen.generator.*;
-import com.mammen.generator.generator_vars.Units;
+import com.mammen.generator.generator_vars.GeneratorVars;
 import com.mammen.path.Path;
 import com.mammen.path.Waypoint;
 import com.mammen.settings.SettingsModel;
-import com.mammen.util.Mathf;
 
+import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.property.*;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Text;
-import org.w3c.dom.ls.DOMImplementationLS;
-import org.w3c.dom.ls.LSOutput;
-import org.w3c.dom.ls.LSSerializer;
-import org.w3c.dom.bootstrap.DOMImplementationRegistry;
-
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 /******************************************************************************
@@ -43,7 +36,7 @@ import java.util.List;
  ******************************************************************************/
 public class MainUIModel
 {
-	private static final String PROJECT_EXTENSION = "xml";
+	private static final String PROJECT_EXTENSION = ProjectIO.PROJECT_EXTENSION;
 
     /******************************************************
      *   Waypoints
@@ -56,11 +49,48 @@ public class MainUIModel
      *   Generated path.
      ******************************************************/
     private Property<Path> path = new SimpleObjectProperty<>();
+
+    // The block of the path being generated that came in last, null when no
+    //  path is being streamed. The path replaces the blocks once it is done.
+    private ReadOnlyObjectWrapper<SegmentBlock> streamedBlock = new ReadOnlyObjectWrapper<>();
+
+    /******************************************************
+     *   Runs the generator off the JavaFX thread.
+     ******************************************************/
+    // The position graph draws every wheel, build them on the worker rather than on the JavaFX thread.
+    private GeneratorService generatorService = new GeneratorService( Platform::runLater, Path::computeWheels );
+
+    /******************************************************
+     *   Recently generated paths.
+     ******************************************************/
+    private static final long PATH_CACHE_BYTES = 64L * 1024 * 1024;
+    private PathCache pathCache = new PathCache( PATH_CACHE_BYTES );
+
+    /******************************************************
+     *   Paths generated in earlier runs.
+     ******************************************************/
+    private static final long DISK_CACHE_BYTES = 256L * 1024 * 1024;
+    private DiskPathCache diskCache;
+
+    /******************************************************
+     *   Preview of a waypoint that is being dragged. Only
+     *   one preview runs at a time, the newest position
+     *   waits for it instead of cancelling it.
+     ******************************************************/
+    private boolean previewRunning = false;
+    private List<Waypoint> previewQueued = null;
+    private boolean previewShown = false;
     
     // File stuff
-    private DocumentBuilderFactory dbFactory;
     private File workingProject;
 
+    /******************************************************
+     *   Saves the project in the background.
+     ******************************************************/
+    private AutoSaver autoSaver;
+    private boolean autosavePaused = false;
+    private ChangeListener<Object> autosaveListener = (o, oldValue, newValue) -> autosave();
+
     /******************************************************
      *   Program settings.
      ******************************************************/
@@ -78,11 +108,23 @@ public class MainUIModel
     {
         settings = SettingsModel.getInstance();
 
-    	dbFactory = DocumentBuilderFactory.newInstance();
+        autoSaver = new AutoSaver( new File( SettingsModel.getSettingsDir(), AutoSaver.JOURNAL_NAME ) );
+        diskCache = new DiskPathCache( new File( SettingsModel.getSettingsDir(), DiskPathCache.DIR_NAME ), DISK_CACHE_BYTES );
 
-    	settings.getSharedGeneratorVars().unitProperty().addListener( (o, oldValue, newValue) ->
-            updateVarUnits( oldValue, newValue )
-        );
+        waypointList.addListener( (ListChangeListener<Waypoint>) c -> autosave() );
+        settings.generatorTypeProperty().addListener( autosaveListener );
+
+        for( ObservableValue<?> value : settings.getSharedGeneratorVars().getObservables() )
+        {
+            value.addListener( autosaveListener );
+        }
+
+        watchGeneratorVars( null, settings.getGeneratorVars() );
+        settings.generatorVarsProperty().addListener( (o, oldValue, newValue) -> watchGeneratorVars( oldValue, newValue ) );
+
+        // Saves whatever the workers haven't gotten to yet.
+        Runtime.getRuntime().addShutdownHook( new Thread( autoSaver::close ) );
+        Runtime.getRuntime().addShutdownHook( new Thread( diskCache::close ) );
 
     }   /* MainUIModel() */
 
@@ -104,89 +146,266 @@ public class MainUIModel
 
 
     /**************************************************************************
-     * <p>Generates a Path that fits the given waypoints.</p>
+     * <p>Generates a Path that fits the given waypoints in the background.
+     *      pathProperty() is updated on the JavaFX thread once the newest
+     *      request finishes. Failures are ignored.</p>
+     *************************************************************************/
+    public void generatePath()
+    {
+        generatePath( e -> {} );
+    }   /* generatePath() */
+
+
+    /**************************************************************************
+     * <p>Generates a Path that fits the given waypoints in the background.
+     *      pathProperty() is updated on the JavaFX thread once the newest
+     *      request finishes, until then streamedBlockProperty() gets its
+     *      blocks as they are generated. Older requests still in flight are
+     *      dropped.</p>
      *
-     * @throws com.mammen.generator.Generator.PathGenerationException
-     *      The path failed to generate.
-     * @throws com.mammen.generator.Generator.NotEnoughPointsException
-     *      There were not enough points to generate a path.
+     * @param onFailure Called on the JavaFX thread with the
+     *      {@link com.mammen.generator.Generator.PathGenerationException} or
+     *      {@link com.mammen.generator.Generator.NotEnoughPointsException}
+     *      if this request fails.
      *************************************************************************/
-    public void generatePath() throws Generator.PathGenerationException, Generator.NotEnoughPointsException
+    public void generatePath( Consumer<Exception> onFailure )
     {
-        Path newPath = settings.getGenerator().generate( waypointList );
+        // The worker must not see the waypoints change under it, so hand it a copy.
+        List<Waypoint> snapshot = copyWaypoints();
+
+        // This request supersedes any preview, whose callbacks will never run now.
+        endPreview();
 
-        if( newPath != null )
+        GeneratorConfig config = currentConfig();
+        PathCache.Key key = PathCache.Key.of( settings.getGeneratorType(), config, snapshot );
+        Path cached = pathCache.get( key );
+
+        if( cached != null )
         {
-            path.setValue( newPath );
+            // Nothing in flight should replace the path we already have.
+            generatorService.cancel();
+            path.setValue( cached );
+            return;
         }
+
+        // A path generated in an earlier run is read from disk by the worker instead of being generated again.
+        Generator generator = diskCache.wrap( settings.getGeneratorType(), settings.getGenerator() );
+
+        // The graphs draw the blocks as they come, a long path shows up long before it is done.
+        generatorService.stream( generator, config, snapshot, streamedBlock::set, newPath ->
+        {
+            if( newPath != null )
+            {
+                pathCache.put( key, newPath );
+                path.setValue( newPath );
+            }
+
+            streamedBlock.set( null );
+        }, e ->
+        {
+            // Back to the path that was there before.
+            streamedBlock.set( null );
+            onFailure.accept( e );
+        });
     }   /* generatePath() */
 
 
     /**************************************************************************
-     *  updateVarUnits
-     *      Converts the waypoints list from one Unit to another.
+     * <p>Shows a rough path for a waypoint that is being dragged, without
+     *      touching the waypoint itself. Meant to be called at most once per
+     *      frame. If a preview is still running the position waits for it,
+     *      so a slow preview is never cancelled by the next frame.</p>
+     *
+     * @param index Index of the waypoint being dragged.
+     * @param x Where the waypoint is being dragged to.
+     * @param y Where the waypoint is being dragged to.
+     *************************************************************************/
+    public void previewWaypointMove( int index, double x, double y )
+    {
+        List<Waypoint> snapshot = copyWaypoints();
+        snapshot.set( index, new Waypoint( x, y, snapshot.get( index ).getAngle() ) );
+
+        if( snapshot.size() < 2 )
+            return;
+
+        if( previewRunning )
+        {
+            previewQueued = snapshot;
+            return;
+        }
+
+        submitPreview( snapshot );
+    }
+
+    private void submitPreview( List<Waypoint> snapshot )
+    {
+        // The full path may already be known, dragging back to where a waypoint came from is common.
+        GeneratorConfig config = currentConfig();
+        Path cached = pathCache.get( PathCache.Key.of( settings.getGeneratorType(), config, snapshot ) );
+
+        if( cached != null )
+        {
+            // The path on screen no longer matches the waypoints, the drop has to put it back.
+            previewShown = true;
+            generatorService.cancel();
+            path.setValue( cached );
+            return;
+        }
+
+        previewRunning = true;
+
+        generatorService.submit( settings.getGenerator(), config, snapshot, true, newPath ->
+        {
+            previewShown = true;
+            path.setValue( newPath );
+            previewDone();
+        }, e -> previewDone() );
+    }
+
+    private void previewDone()
+    {
+        previewRunning = false;
+
+        if( previewQueued != null )
+        {
+            List<Waypoint> next = previewQueued;
+            previewQueued = null;
+
+            submitPreview( next );
+        }
+    }
+
+    private void endPreview()
+    {
+        previewRunning = false;
+        previewQueued = null;
+        previewShown = false;
+    }
+
+
+    /**************************************************************************
+     * <p>Moves a waypoint in one step, so the path is generated once instead
+     *      of once for x and once for y. Ends any preview of the move.</p>
      *
-     * @param old_unit The current Unit.
-     * @param new_unit The Unit to convert to.
-     **************************************************************************/
-    private void updateVarUnits( Units old_unit, Units new_unit )
+     * @param index Index of the waypoint.
+     * @param x The new x position.
+     * @param y The new y position.
+     *************************************************************************/
+    public void moveWaypoint( int index, double x, double y )
     {
-        // TODO: Find a better way of doing this!!!
-        //          Maybe storing the values in the backend in feet
-        //          and only convert it for display.
+        Waypoint wp = waypointList.get( index );
+
+        if( wp.getX() != x || wp.getY() != y )
+        {
+            // A single replace is a single change for the listeners.
+            waypointList.set( index, new Waypoint( x, y, wp.getAngle() ) );
+        }
+        else if( previewShown || previewRunning )
+        {
+            // Dropped where it started, put the full quality path back.
+            generatePath();
+        }
+    }
 
-        List<Waypoint> tmpList = new ArrayList<>();
 
-    	// Convert each point in the waypoints list
+    private List<Waypoint> copyWaypoints()
+    {
+        List<Waypoint> copy = new ArrayList<>( waypointList.size() );
+
         for( Waypoint wp : waypointList )
         {
-            double tmp_x = 0, tmp_y = 0;
+            copy.add( new Waypoint( wp.getX(), wp.getY(), wp.getAngle() ) );
+        }
+
+        return copy;
+    }
+
+
+    /**************************************************************************
+     *  The settings as they are right now, for a generation on the worker.
+     *************************************************************************/
+    private GeneratorConfig currentConfig()
+    {
+        return GeneratorConfig.of( settings.getSharedGeneratorVars(), settings.getGeneratorVars() );
+    }
+
 
-            // convert to intermediate unit of feet
-            switch( old_unit )
+    /**************************************************************************
+     *  Moves the autosave listener to the vars of the selected generator.
+     *************************************************************************/
+    private void watchGeneratorVars( GeneratorVars oldVars, GeneratorVars newVars )
+    {
+        if( oldVars != null )
+        {
+            for( ObservableValue<?> value : oldVars.getObservables() )
             {
-                case FEET:
-                    tmp_x = wp.getX();
-                    tmp_y = wp.getY();
-                    break;
-
-                case INCHES:
-                    tmp_x = Mathf.inchesToFeet( wp.getX() );
-                    tmp_y = Mathf.inchesToFeet( wp.getY() );
-                    break;
-
-                case METERS:
-                    tmp_x = Mathf.meterToFeet( wp.getX() );
-                    tmp_y = Mathf.meterToFeet( wp.getY() );
-                    break;
+                value.removeListener( autosaveListener );
             }
+        }
 
-            // convert from intermediate unit of feet
-            switch( new_unit )
+        if( newVars != null )
+        {
+            for( ObservableValue<?> value : newVars.getObservables() )
             {
-                case FEET:
-                    tmpList.add( new Waypoint( tmp_x, tmp_y, wp.getAngle() ) );
-                    break;
-
-                case INCHES:
-                    tmpList.add( new Waypoint( Mathf.feetToInches( tmp_x ),
-                                               Mathf.feetToInches( tmp_y ),
-                                               wp.getAngle() ) );
-
-                    break;
-
-                case METERS:
-                    tmpList.add( new Waypoint( Mathf.feetToMeter( tmp_x ),
-                                               Mathf.feetToMeter( tmp_y ),
-                                               wp.getAngle() ) );
-                    break;
+                value.addListener( autosaveListener );
             }
         }
+    }
 
-        waypointList.clear();
-        waypointList.addAll( tmpList );
 
-    }   /* updateVarUnits() */
+    /**************************************************************************
+     *  Hands a copy of the project to the autosaver. Cheap enough to call on
+     *  every edit, the autosaver only writes the newest copy.
+     *************************************************************************/
+    private void autosave()
+    {
+        if( autosavePaused )
+            return;
+
+        autoSaver.changed( new AutoSaver.Snapshot( workingProject,
+                                                   settings.getGeneratorType(),
+                                                   settings.getSharedGeneratorVars().copy(),
+                                                   settings.getGeneratorVars().copy(),
+                                                   waypointList ) );
+    }
+
+
+    /**************************************************************************
+     * <p>Restores the project from the autosave journal if the program didn't
+     *      shut down cleanly last time.</p>
+     *
+     * @return True if a project was restored.
+     *************************************************************************/
+    public boolean recoverAutosave()
+    {
+        AutoSaver.Recovered recovered = AutoSaver.recover( autoSaver.getJournalFile() );
+
+        if( recovered == null )
+            return false;
+
+        autosavePaused = true;
+
+        try
+        {
+            ProjectIO.load( new ByteArrayInputStream( recovered.getVarsXML() ), settings.getSharedGeneratorVars(), this::varsForType, new ArrayList<>() );
+
+            waypointList.setAll( recovered.getWaypoints() );
+            workingProject = recovered.getProject();
+        }
+        catch( XMLStreamException e )
+        {
+            e.printStackTrace();
+            return false;
+        }
+        finally
+        {
+            autosavePaused = false;
+        }
+
+        autosave();
+
+        return true;
+    }
 
 
     /**************************************************************************
@@ -198,16 +417,27 @@ public class MainUIModel
      *                   Each filename will be an appended version of the .csv
      *                   that parentPath references.
      *************************************************************************/
-    public void exportPath( File parentPath ) throws FileNotFoundException
+    public void exportPath( File parentPath ) throws IOException
     {
-        FileIO.savePath( path.getValue(), parentPath, settings.getChosenCSVElements() );
+        FileIO.savePath( path.getValue(), parentPath, settings.getChosenCSVElements(), settings.getSharedGeneratorVars().getUnit() );
     }   /* exportPath() */
 
 
+    /**************************************************************************
+     * <p>Exports the Path to a single binary .traj file.</p>
+     *
+     * @param parentPath Root name of the file, the .traj extension is appended to it.
+     *************************************************************************/
+    public void exportBinaryPath( File parentPath ) throws IOException
+    {
+        FileIO.saveBinaryPath( path.getValue(), parentPath, settings.getChosenCSVElements(), settings.getSharedGeneratorVars().getUnit() );
+    }   /* exportBinaryPath() */
+
+
     /**
      * Saves the project in XML format.
      */
-    public void saveProjectAs( File path ) throws ParserConfigurationException
+    public void saveProjectAs( File path ) throws IOException, XMLStreamException
     {
         if( !path.getAbsolutePath().endsWith("." + PROJECT_EXTENSION ) )
             path = new File(path + "." + PROJECT_EXTENSION );
@@ -220,9 +450,6 @@ public class MainUIModel
                 return;
         }
 
-        if( path.exists() && !path.delete() )
-            return;
-
         workingProject = path;
 
         saveWorkingProject();
@@ -231,124 +458,56 @@ public class MainUIModel
     /**
      * Saves the working project.
      */
-    public void saveWorkingProject() throws ParserConfigurationException
+    public void saveWorkingProject() throws IOException, XMLStreamException
     {
         if( workingProject != null )
         {
-            // Create document
-            DocumentBuilder db = dbFactory.newDocumentBuilder();
-            Document dom = db.newDocument();
-
-            // XML entry for the path waypoints and vars
-            Element pathElement = dom.createElement("Path" );
-
-            // Save generator type
-            pathElement.setAttribute( "GeneratorType", settings.getGeneratorType().name() );
-
-            // Save shared vars
-            settings.getSharedGeneratorVars().writeXMLAttributes( pathElement );
-
-            // Write generator vars to xml file
-            settings.getGeneratorVars().writeXMLAttributes( pathElement );
-            dom.appendChild( pathElement );
-
-            // Write waypoints to xml file
-            for( Waypoint wp : waypointList )
-            {
-                Element waypointEle = dom.createElement("Waypoint" );
-                Element xEle = dom.createElement("X" );
-                Element yEle = dom.createElement("Y" );
-                Element angleEle = dom.createElement("Angle" );
-                Text xText = dom.createTextNode("" + wp.getX() );
-                Text yText = dom.createTextNode("" + wp.getY() );
-                Text angleText = dom.createTextNode("" + wp.getAngle() );
-
-                xEle.appendChild( xText );
-                yEle.appendChild( yText );
-                angleEle.appendChild( angleText );
-
-                waypointEle.appendChild( xEle );
-                waypointEle.appendChild( yEle );
-                waypointEle.appendChild( angleEle );
-
-                pathElement.appendChild( waypointEle );
-            }
-
-            FileOutputStream fos;
-            try
-            {
-                fos = new FileOutputStream( workingProject );
-                DOMImplementationRegistry reg = DOMImplementationRegistry.newInstance();
-                DOMImplementationLS impl = (DOMImplementationLS) reg.getDOMImplementation("LS" );
-                LSSerializer serializer = impl.createLSSerializer();
-                
-                serializer.getDomConfig().setParameter("format-pretty-print", Boolean.TRUE );
-                
-                LSOutput lso = impl.createLSOutput();
-                lso.setByteStream( fos );
-                serializer.write( dom, lso );
-               
-            }
-            catch( Exception e )
-            {
-                throw new RuntimeException( e );
-            }
+            ProjectIO.save( workingProject, settings.getGeneratorType(), settings.getSharedGeneratorVars(), settings.getGeneratorVars(), waypointList );
         }
     }
     
     /**
      * Loads a project from file.
      */
-    public void loadProject( File path ) throws IOException, ParserConfigurationException, SAXException
+    public void loadProject( File path ) throws IOException, XMLStreamException
     {
         if( !path.exists() || path.isDirectory() )
             return;
 
         if( path.getAbsolutePath().toLowerCase().endsWith( "." + PROJECT_EXTENSION ) )
         {
-            DocumentBuilder db = dbFactory.newDocumentBuilder();
-            Document dom = db.parse( path );
-
-            Element docEle = dom.getDocumentElement();
-
-            // Get generator type
-            settings.setGeneratorType( Generator.Type.valueOf( docEle.getAttribute( "GeneratorType" ) ));
+            List<Waypoint> loaded = new ArrayList<>();
 
-            // Get shared vars from xml file
-            settings.getSharedGeneratorVars().readXMLAttributes( docEle );
+            // Nothing of the half loaded project may be autosaved over the old one.
+            autosavePaused = true;
 
-            // TODO: Does the settings.generatorType change listener get called before the next line?
-            //  If not, the settings.generatorVars variable will potentially be the wrong one.
-            //  I suspect that it does.
-
-            // Get generator vars from xml file.
-            settings.getGeneratorVars().readXMLAttributes( docEle );
+            try
+            {
+                ProjectIO.load( path, settings.getSharedGeneratorVars(), this::varsForType, loaded );
 
-            // Get waypoints from xml file.
-            NodeList waypointEleList = docEle.getElementsByTagName( "Waypoint" );
+                editWaypoints( list ->
+                {
+                    list.clear();
+                    list.addAll( loaded );
+                });
 
-            waypointList.clear();
-            if( waypointEleList != null && waypointEleList.getLength() > 0 )
+                workingProject = path;
+            }
+            finally
             {
-                for( int i = 0; i < waypointEleList.getLength(); i++ )
-                {
-                    Element waypointEle = (Element) waypointEleList.item( i );
-
-                    String xText = waypointEle.getElementsByTagName("X").item(0).getTextContent();
-                    String yText = waypointEle.getElementsByTagName("Y").item(0).getTextContent();
-                    String angleText = waypointEle.getElementsByTagName("Angle").item(0).getTextContent();
-
-                    waypointList.add( new Waypoint(
-                                            Double.parseDouble( xText ),
-                                            Double.parseDouble( yText ),
-                                            Double.parseDouble( angleText )
-                                        ) );
-                }
+                autosavePaused = false;
             }
 
-            workingProject = path;
+            autosave();
         }
     }
+
+    private GeneratorVars varsForType( Generator.Type type )
+    {
+        // Switching the generator type also switches settings.getGeneratorVars() to the right vars.
+        settings.setGeneratorType( type );
+        return settings.getGeneratorVars();
+    }
     
     /**
      * Clears the working project files
@@ -358,6 +517,28 @@ public class MainUIModel
         workingProject = null;
     }
 
+    /**************************************************************************
+     * <p>Changes the waypoints in one step. The edit is made to a copy of the
+     *      list and the listeners see a single change once it is done, so the
+     *      path is generated once however many waypoints were touched.</p>
+     *
+     * @param edit Changes the list it is given. Waypoints in it may be
+     *             replaced but must not be modified, they are still the
+     *             ones in the model.
+     *************************************************************************/
+    public void editWaypoints( Consumer<List<Waypoint>> edit )
+    {
+        List<Waypoint> edited = new ArrayList<>( waypointList );
+
+        edit.accept( edited );
+
+        // Nothing to tell anybody about.
+        if( edited.equals( waypointList ) )
+            return;
+
+        waypointList.setAll( edited );
+    }
+
     /**
      * Adds a waypoint to the list of waypoints
      */
@@ -389,6 +570,24 @@ public class MainUIModel
         waypointList.remove( first, last + 1 );
     }
 
+    /**
+     * Removes the waypoints at the given indices, in any order.
+     */
+    public void removePoints( List<Integer> indices )
+    {
+        List<Integer> sorted = new ArrayList<>( indices );
+        sorted.sort( Collections.reverseOrder() );
+
+        // From the back so the indices still left stay valid.
+        editWaypoints( list ->
+        {
+            for( int index : sorted )
+            {
+                list.remove( index );
+            }
+        });
+    }
+
     public int getNumWaypoints()
     {
         return waypointList.size();
@@ -405,6 +604,10 @@ public class MainUIModel
      */
     public void clearPoints() 
     {
+        // Don't let a generation that is still running bring the old path back.
+        generatorService.cancel();
+        endPreview();
+
         waypointList.clear();
         path.setValue( null );
     }
@@ -433,6 +636,21 @@ public class MainUIModel
     {
         return path;
     }
+
+    public ReadOnlyObjectProperty<SegmentBlock> streamedBlockProperty()
+    {
+        return streamedBlock.getReadOnlyProperty();
+    }
+
+    public PathCache getPathCache()
+    {
+        return pathCache;
+    }
+
+    public DiskPathCache getDiskCache()
+    {
+        return diskCache;
+    }
 }
 
 
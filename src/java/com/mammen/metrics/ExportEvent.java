@@ -0,0 +1,31 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *   ExportEvent
+ *       Writing a path to csv or .traj files.
+ ******************************************************************************/
+@Name( "com.mammen.Export" )
+@Label( "Export" )
+@Category( { "Motion Profile Generator", "Files" } )
+@StackTrace( false )
+public class ExportEvent extends jdk.jfr.Event
+{
+    @Label( "Format" )
+    public String format;
+
+    @Label( "File" )
+    public String file;
+
+    @Label( "Segments" )
+    public int segments;
+
+    @Label( "Bytes Written" )
+    @DataAmount
+    public long bytes;
+}
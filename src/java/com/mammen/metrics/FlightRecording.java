@@ -0,0 +1,97 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+/******************************************************************************
+ *   FlightRecording
+ *       Records the program with Java Flight Recorder when it is started
+ *       with --jfr or --jfr=<file>. Next to the JVM's own profile events the
+ *       recording holds an event for every stage of an edit: the generation
+ *       request, the generation, traj2Path, the series builds and the graph
+ *       refresh, plus exports and project files. Open the file in JDK Mission
+ *       Control to see where the time of a single edit went.
+ *
+ *       The recording is written when the program exits.
+ ******************************************************************************/
+public final class FlightRecording
+{
+    public static final String FLAG = "--jfr";
+
+    private static final List<Class<? extends Event>> EVENTS = List.of( GenerationRequestEvent.class,
+                                                                       GenerationEvent.class,
+                                                                       Traj2PathEvent.class,
+                                                                       SeriesBuildEvent.class,
+                                                                       GraphRefreshEvent.class,
+                                                                       ExportEvent.class,
+                                                                       ProjectEvent.class );
+
+    private static Recording recording = null;
+
+    private FlightRecording()
+    {
+    }
+
+
+    /**************************************************************************
+     * <p>Checks whether a command line argument asks for a recording.</p>
+     *************************************************************************/
+    public static boolean isFlag( String arg )
+    {
+        return arg.equals( FLAG ) || arg.startsWith( FLAG + "=" );
+    }
+
+
+    /**************************************************************************
+     * <p>Starts recording.</p>
+     *
+     * @param flag The --jfr argument. Without a file name the recording goes
+     *             to a file named after the current time in the working
+     *             directory.
+     *************************************************************************/
+    public static synchronized void start( String flag )
+    {
+        if( recording != null )
+            return;
+
+        Path file;
+
+        if( flag.startsWith( FLAG + "=" ) )
+            file = Paths.get( flag.substring( FLAG.length() + 1 ) );
+        else
+            file = Paths.get( "mpg-" + new SimpleDateFormat( "yyyyMMdd-HHmmss" ).format( new Date() ) + ".jfr" );
+
+        try
+        {
+            // The profile settings sample the threads often enough to see what a short stall was doing.
+            recording = new Recording( Configuration.getConfiguration( "profile" ) );
+            recording.setName( "Motion Profile Generator" );
+            recording.setToDisk( true );
+            recording.setDumpOnExit( true );
+            recording.setDestination( file );
+
+            for( Class<? extends Event> event : EVENTS )
+            {
+                recording.enable( event );
+            }
+
+            recording.start();
+
+            System.out.println( "Recording to " + file.toAbsolutePath() );
+        }
+        catch( IOException | ParseException | IllegalStateException | SecurityException e )
+        {
+            e.printStackTrace();
+            recording = null;
+        }
+    }
+}
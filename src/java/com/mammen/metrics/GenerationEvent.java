@@ -0,0 +1,35 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *   GenerationEvent
+ *       Generating a path and building its wheels on the generator thread.
+ ******************************************************************************/
+@Name( "com.mammen.Generation" )
+@Label( "Generation" )
+@Category( { "Motion Profile Generator", "Generation" } )
+@StackTrace( false )
+public class GenerationEvent extends jdk.jfr.Event
+{
+    @Label( "Request Id" )
+    public long requestId;
+
+    @Label( "Generator" )
+    public String generator;
+
+    @Label( "Preview" )
+    public boolean preview;
+
+    @Label( "Drive Base" )
+    public String driveBase;
+
+    @Label( "Segments" )
+    public int segments;
+
+    @Label( "Failed" )
+    public boolean failed;
+}
@@ -0,0 +1,29 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *   GenerationRequestEvent
+ *       A path was asked for. The GenerationEvent with the same request id
+ *       shows when it was generated, if it wasn't superseded first.
+ ******************************************************************************/
+@Name( "com.mammen.GenerationRequest" )
+@Label( "Generation Request" )
+@Category( { "Motion Profile Generator", "Generation" } )
+@StackTrace( false )
+public class GenerationRequestEvent extends jdk.jfr.Event
+{
+    @Label( "Request Id" )
+    public long requestId;
+
+    @Label( "Preview" )
+    @Description( "A quick generation while a waypoint is dragged." )
+    public boolean preview;
+
+    @Label( "Waypoints" )
+    public int waypoints;
+}
@@ -0,0 +1,29 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *   GraphRefreshEvent
+ *       Showing a new path on a graph. The chart renderer only updates its
+ *       series here, JavaFX lays them out and draws them on the next pulse.
+ ******************************************************************************/
+@Name( "com.mammen.GraphRefresh" )
+@Label( "Graph Refresh" )
+@Category( { "Motion Profile Generator", "Graphs" } )
+@StackTrace( false )
+public class GraphRefreshEvent extends jdk.jfr.Event
+{
+    @Label( "Graph" )
+    @Description( "Position or Velocity." )
+    public String graph;
+
+    @Label( "Renderer" )
+    public String renderer;
+
+    @Label( "Segments" )
+    public int segments;
+}
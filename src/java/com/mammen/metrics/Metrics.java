@@ -0,0 +1,184 @@
+package com.mammen.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *   Metrics
+ *       The timers around the slow parts of the program: generation, export,
+ *       project files and the graphs. They are published over JMX, so a
+ *       running program can be looked at with JConsole or VisualVM.
+ *
+ *       Starting the program with -Dmpg.metrics.log=<seconds> also prints
+ *       every timer that recorded something to stdout at that interval.
+ ******************************************************************************/
+public final class Metrics implements MetricsMXBean
+{
+    public static final String OBJECT_NAME = "com.mammen:type=Metrics";
+    public static final String LOG_PROPERTY = "mpg.metrics.log";
+
+    public static final Timer GENERATE       = new Timer( "generate" );
+    public static final Timer PREVIEW        = new Timer( "preview" );
+    public static final Timer TRAJ2PATH      = new Timer( "traj2Path" );
+    public static final Timer CSV_EXPORT     = new Timer( "csvExport" );
+    public static final Timer BINARY_EXPORT  = new Timer( "binaryExport" );
+    public static final Timer PROJECT_SAVE   = new Timer( "projectSave" );
+    public static final Timer PROJECT_LOAD   = new Timer( "projectLoad" );
+    public static final Timer GRAPH_REFRESH  = new Timer( "graphRefresh" );
+
+    private static final Timer[] TIMERS = { GENERATE, PREVIEW, TRAJ2PATH, CSV_EXPORT, BINARY_EXPORT,
+                                            PROJECT_SAVE, PROJECT_LOAD, GRAPH_REFRESH };
+
+    private static Metrics instance = null;
+
+    private ScheduledExecutorService logger;
+
+    private Metrics()
+    {
+    }
+
+    public static synchronized Metrics getInstance()
+    {
+        if( instance == null )
+        {
+            instance = new Metrics();
+        }
+
+        return instance;
+    }
+
+
+    /**************************************************************************
+     * <p>Registers the timers with the platform MBean server and starts the
+     *      log if it was asked for. Calling this again does nothing.</p>
+     *************************************************************************/
+    public synchronized void start()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean( this, new ObjectName( OBJECT_NAME ) );
+        }
+        catch( InstanceAlreadyExistsException e )
+        {
+            // Already started.
+        }
+        catch( JMException e )
+        {
+            e.printStackTrace();
+        }
+
+        long seconds = parseSeconds( System.getProperty( LOG_PROPERTY ) );
+
+        if( seconds > 0 && logger == null )
+        {
+            logger = Executors.newSingleThreadScheduledExecutor( r ->
+            {
+                Thread t = new Thread( r, "Metrics Log" );
+                t.setDaemon( true );
+                return t;
+            });
+
+            logger.scheduleAtFixedRate( this::log, seconds, seconds, TimeUnit.SECONDS );
+        }
+    }
+
+    private static long parseSeconds( String value )
+    {
+        if( value == null )
+            return 0;
+
+        try
+        {
+            return Long.parseLong( value.trim() );
+        }
+        catch( NumberFormatException e )
+        {
+            System.err.println( "Ignoring " + LOG_PROPERTY + ", not a number of seconds: " + value );
+            return 0;
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Prints every timer that recorded something.</p>
+     *************************************************************************/
+    public void log()
+    {
+        StringBuilder out = new StringBuilder( "Metrics" ).append( System.lineSeparator() );
+
+        for( Timer timer : TIMERS )
+        {
+            TimerStats stats = timer.snapshot();
+
+            if( stats.getCount() > 0 )
+                out.append( String.format( "  %-14s %s%n", timer.getName(), stats ) );
+        }
+
+        System.out.print( out );
+    }
+
+
+    @Override
+    public TimerStats getGenerate()
+    {
+        return GENERATE.snapshot();
+    }
+
+    @Override
+    public TimerStats getPreview()
+    {
+        return PREVIEW.snapshot();
+    }
+
+    @Override
+    public TimerStats getTraj2Path()
+    {
+        return TRAJ2PATH.snapshot();
+    }
+
+    @Override
+    public TimerStats getCsvExport()
+    {
+        return CSV_EXPORT.snapshot();
+    }
+
+    @Override
+    public TimerStats getBinaryExport()
+    {
+        return BINARY_EXPORT.snapshot();
+    }
+
+    @Override
+    public TimerStats getProjectSave()
+    {
+        return PROJECT_SAVE.snapshot();
+    }
+
+    @Override
+    public TimerStats getProjectLoad()
+    {
+        return PROJECT_LOAD.snapshot();
+    }
+
+    @Override
+    public TimerStats getGraphRefresh()
+    {
+        return GRAPH_REFRESH.snapshot();
+    }
+
+    @Override
+    public void reset()
+    {
+        for( Timer timer : TIMERS )
+        {
+            timer.reset();
+        }
+    }
+}
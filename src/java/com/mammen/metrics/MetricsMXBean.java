@@ -0,0 +1,34 @@
+package com.mammen.metrics;
+
+/******************************************************************************
+ *   MetricsMXBean
+ *       The timers as JConsole and VisualVM see them, under the name
+ *       com.mammen:type=Metrics.
+ ******************************************************************************/
+public interface MetricsMXBean
+{
+    /** Full generations, segments is the length of each generated path. */
+    TimerStats getGenerate();
+
+    /** Quick generations shown while a waypoint is dragged. */
+    TimerStats getPreview();
+
+    /** Copying a Pathfinder trajectory into a Path. */
+    TimerStats getTraj2Path();
+
+    /** CSV exports, segments counts every wheel written. */
+    TimerStats getCsvExport();
+
+    /** Binary .traj exports, segments counts every wheel written. */
+    TimerStats getBinaryExport();
+
+    TimerStats getProjectSave();
+
+    TimerStats getProjectLoad();
+
+    /** Showing a new path on the graphs. With the chart renderer the layout JavaFX does afterwards isn't included. */
+    TimerStats getGraphRefresh();
+
+    /** Forgets everything the timers recorded. */
+    void reset();
+}
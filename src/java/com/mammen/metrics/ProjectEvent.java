@@ -0,0 +1,31 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *   ProjectEvent
+ *       Saving or loading a project file.
+ ******************************************************************************/
+@Name( "com.mammen.Project" )
+@Label( "Project File" )
+@Category( { "Motion Profile Generator", "Files" } )
+@StackTrace( false )
+public class ProjectEvent extends jdk.jfr.Event
+{
+    @Label( "Operation" )
+    public String operation;
+
+    @Label( "File" )
+    public String file;
+
+    @Label( "Waypoints" )
+    public int waypoints;
+
+    @Label( "Size" )
+    @DataAmount
+    public long bytes;
+}
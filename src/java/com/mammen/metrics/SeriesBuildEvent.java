@@ -0,0 +1,26 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *   SeriesBuildEvent
+ *       Downsampling a trajectory and putting it into a chart series.
+ ******************************************************************************/
+@Name( "com.mammen.SeriesBuild" )
+@Label( "Series Build" )
+@Category( { "Motion Profile Generator", "Graphs" } )
+@StackTrace( false )
+public class SeriesBuildEvent extends jdk.jfr.Event
+{
+    @Label( "Series" )
+    public String series;
+
+    @Label( "Segments" )
+    public int segments;
+
+    @Label( "Points Shown" )
+    public int points;
+}
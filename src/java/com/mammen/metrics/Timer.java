@@ -0,0 +1,192 @@
+package com.mammen.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/******************************************************************************
+ *   Timer
+ *       Counts how often an operation ran and how long it took. Durations go
+ *       into a histogram with eight buckets per power of two, so percentiles
+ *       come out within 12.5% of the real value without keeping every sample.
+ *
+ *       Recording takes two calls to System.nanoTime() and a few atomic adds,
+ *       no locks and no allocation, so timers can stay in the hot paths.
+ *
+ *           long start = Metrics.GENERATE.start();
+ *           ...
+ *           Metrics.GENERATE.stop( start, segments, 0 );
+ ******************************************************************************/
+public final class Timer
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Enough buckets for any positive long.
+    private static final int BUCKETS = ( Long.SIZE - SUB_BUCKET_BITS ) * SUB_BUCKETS;
+
+    private final String name;
+
+    private final AtomicLongArray histogram = new AtomicLongArray( BUCKETS );
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder segments = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+
+    Timer( String name )
+    {
+        this.name = name;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+
+    /**************************************************************************
+     * <p>Starts timing an operation.</p>
+     *
+     * @return The start time, to hand to stop().
+     *************************************************************************/
+    public long start()
+    {
+        return System.nanoTime();
+    }
+
+
+    /**************************************************************************
+     * <p>Records an operation that started at the given time.</p>
+     *
+     * @param start The value start() returned.
+     * @param segments Path segments the operation handled, 0 if none.
+     * @param bytes Bytes the operation wrote, 0 if none.
+     *************************************************************************/
+    public void stop( long start, long segments, long bytes )
+    {
+        record( System.nanoTime() - start, segments, bytes );
+    }
+
+
+    /**************************************************************************
+     * <p>Records an operation that took the given time.</p>
+     *************************************************************************/
+    public void record( long nanos, long segments, long bytes )
+    {
+        if( nanos < 0 )
+            nanos = 0;
+
+        histogram.incrementAndGet( bucket( nanos ) );
+        count.increment();
+        totalNanos.add( nanos );
+
+        if( segments != 0 )
+            this.segments.add( segments );
+
+        if( bytes != 0 )
+            this.bytes.add( bytes );
+
+        if( nanos > maxNanos.get() )
+            maxNanos.accumulateAndGet( nanos, Math::max );
+    }
+
+
+    /**************************************************************************
+     * <p>Forgets everything recorded so far. Operations recorded while this
+     *      runs may be half counted.</p>
+     *************************************************************************/
+    public void reset()
+    {
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            histogram.set( i, 0 );
+        }
+
+        count.reset();
+        totalNanos.reset();
+        segments.reset();
+        bytes.reset();
+        maxNanos.set( 0 );
+    }
+
+
+    /**************************************************************************
+     * <p>Takes a copy of what was recorded so far. Operations recorded while
+     *      this runs may show up in some of the numbers and not in others.</p>
+     *************************************************************************/
+    public TimerStats snapshot()
+    {
+        long[] counts = new long[ BUCKETS ];
+        long total = 0;
+
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            counts[ i ] = histogram.get( i );
+            total += counts[ i ];
+        }
+
+        long max = maxNanos.get();
+
+        return new TimerStats( count.sum(),
+                               totalNanos.sum(),
+                               percentile( counts, total, 0.50, max ),
+                               percentile( counts, total, 0.90, max ),
+                               percentile( counts, total, 0.99, max ),
+                               max,
+                               segments.sum(),
+                               bytes.sum() );
+    }
+
+
+    /**************************************************************************
+     * <p>The highest value of the bucket the given share of the operations
+     *      falls in, never more than the longest operation.</p>
+     *************************************************************************/
+    private static long percentile( long[] counts, long total, double share, long max )
+    {
+        if( total == 0 )
+            return 0;
+
+        long rank = (long) Math.ceil( share * total );
+        long seen = 0;
+
+        for( int i = 0; i < counts.length; i++ )
+        {
+            seen += counts[ i ];
+
+            if( seen >= rank )
+                return Math.min( bucketEnd( i ), max );
+        }
+
+        return max;
+    }
+
+
+    /**************************************************************************
+     *  Values below SUB_BUCKETS get a bucket each. Above that the bucket is
+     *  the position of the highest set bit followed by the next three bits.
+     *************************************************************************/
+    static int bucket( long nanos )
+    {
+        if( nanos < SUB_BUCKETS )
+            return (int) nanos;
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros( nanos );
+        int sub = (int)( nanos >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 );
+
+        return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + sub;
+    }
+
+    static long bucketEnd( int bucket )
+    {
+        if( bucket < SUB_BUCKETS )
+            return bucket;
+
+        int shift = bucket / SUB_BUCKETS - 1;
+        long start = (long)( SUB_BUCKETS + bucket % SUB_BUCKETS ) << shift;
+
+        return start + ( 1L << shift ) - 1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.mammen.metrics;
+
+/******************************************************************************
+ *   TimerStats
+ *       What a Timer recorded up to some point. JMX shows it as a composite
+ *       value, one item per getter, times in milliseconds.
+ ******************************************************************************/
+public final class TimerStats
+{
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final long count;
+    private final long totalNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+    private final long segments;
+    private final long bytes;
+
+    TimerStats( long count, long totalNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos, long segments, long bytes )
+    {
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+        this.segments = segments;
+        this.bytes = bytes;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getTotalMillis()
+    {
+        return totalNanos / NANOS_PER_MILLI;
+    }
+
+    public double getMeanMillis()
+    {
+        return count == 0 ? 0 : totalNanos / NANOS_PER_MILLI / count;
+    }
+
+    public double getP50Millis()
+    {
+        return p50Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP90Millis()
+    {
+        return p90Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getP99Millis()
+    {
+        return p99Nanos / NANOS_PER_MILLI;
+    }
+
+    public double getMaxMillis()
+    {
+        return maxNanos / NANOS_PER_MILLI;
+    }
+
+    /** Path segments handled by all the recorded operations. */
+    public long getSegments()
+    {
+        return segments;
+    }
+
+    /** Bytes written by all the recorded operations, or read for loads. */
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "count %d  mean %.3f ms  p50 %.3f ms  p90 %.3f ms  p99 %.3f ms  max %.3f ms  segments %d  bytes %d",
+                              count, getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(), getMaxMillis(), segments, bytes );
+    }
+}
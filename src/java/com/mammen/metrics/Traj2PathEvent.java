@@ -0,0 +1,21 @@
+package com.mammen.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/******************************************************************************
+ *   Traj2PathEvent
+ *       Copying a Pathfinder trajectory into a Path. The rest of a Pathfinder
+ *       generation is spent in the native library.
+ ******************************************************************************/
+@Name( "com.mammen.Traj2Path" )
+@Label( "Trajectory To Path" )
+@Category( { "Motion Profile Generator", "Generation" } )
+@StackTrace( false )
+public class Traj2PathEvent extends jdk.jfr.Event
+{
+    @Label( "Segments" )
+    public int segments;
+}
@@ -1,28 +1,44 @@
 package com.mammen.path;
 
 import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.Units;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class Path
 {
     /**
      * Reresents Each var in a Segment
+     * The ordinals are written to .traj files, only add new elements to the end.
      */
     public enum Elements
     {
-        DELTA_TIME( "Delta Time" ),
-        X_POINT( "X Point" ),
-        Y_POINT( "Y Point" ),
-        POSITION( "Position" ),
-        VELOCITY( "Velocity" ),
-        ACCELERATION( "Acceleration" ),
-        JERK( "Jerk" ),
-        HEADING( "Heading" );
+        DELTA_TIME( "Delta Time", false ),
+        X_POINT( "X Point", true ),
+        Y_POINT( "Y Point", true ),
+        POSITION( "Position", true ),
+        VELOCITY( "Velocity", true ),
+        ACCELERATION( "Acceleration", true ),
+        JERK( "Jerk", true ),
+        HEADING( "Heading", false );
 
         private String label;
+        private boolean length;
 
-        Elements( String label )
+        Elements( String label, boolean length )
         {
             this.label = label;
+            this.length = length;
+        }
+
+        /**
+         * @return True if the element is a length, or a rate of one, and so depends on the unit.
+         */
+        public boolean isLength()
+        {
+            return length;
         }
 
         @Override
@@ -33,119 +49,356 @@ public class Path
 
     }
 
-    public static class Segment
+    /**
+     * One trajectory (the center or a single wheel) stored column by column.
+     * Each Elements value has its own contiguous double[] indexed by segment.
+     * The arrays are handed out directly, callers must not modify them once
+     * the Path has been built. Lengths are in meters, see Units.
+     */
+    public static final class Columns
+    {
+        private final double[][] columns;
+        private final int length;
+
+        public Columns( int length )
+        {
+            this.length = length;
+            this.columns = new double[ Elements.values().length ][ length ];
+        }
+
+        public int length()
+        {
+            return length;
+        }
+
+        /**
+         * @return The backing array for the given element.
+         */
+        public double[] get( Elements element )
+        {
+            return columns[ element.ordinal() ];
+        }
+
+        /**
+         * @return The given element in the given unit. The backing array if
+         *         the element isn't a length or the unit is meters, a converted
+         *         copy otherwise.
+         */
+        public double[] get( Elements element, Units unit )
+        {
+            double[] values = get( element );
+
+            if( !element.isLength() || unit == Units.METERS )
+                return values;
+
+            double[] converted = new double[ length ];
+            unit.fromMeters( values, converted, length );
+
+            return converted;
+        }
+
+        public double get( Elements element, int i )
+        {
+            return columns[ element.ordinal() ][ i ];
+        }
+
+        public double[] getDt()
+        {
+            return columns[ Elements.DELTA_TIME.ordinal() ];
+        }
+
+        public double[] getX()
+        {
+            return columns[ Elements.X_POINT.ordinal() ];
+        }
+
+        public double[] getY()
+        {
+            return columns[ Elements.Y_POINT.ordinal() ];
+        }
+
+        public double[] getPosition()
+        {
+            return columns[ Elements.POSITION.ordinal() ];
+        }
+
+        public double[] getVelocity()
+        {
+            return columns[ Elements.VELOCITY.ordinal() ];
+        }
+
+        public double[] getAcceleration()
+        {
+            return columns[ Elements.ACCELERATION.ordinal() ];
+        }
+
+        public double[] getJerk()
+        {
+            return columns[ Elements.JERK.ordinal() ];
+        }
+
+        public double[] getHeading()
+        {
+            return columns[ Elements.HEADING.ordinal() ];
+        }
+
+        /**
+         * @return A view of a single segment. Nothing is copied.
+         */
+        public Segment getSegment( int i )
+        {
+            return new Segment( this, i );
+        }
+    }
+
+    /**
+     * A flyweight view of a single segment of a Columns trajectory.
+     */
+    public static final class Segment
+    {
+        private final Columns columns;
+        private final int index;
+
+        private Segment( Columns columns, int index )
+        {
+            this.columns = columns;
+            this.index = index;
+        }
+
+        public double get( Elements element )
+        {
+            return columns.get( element, index );
+        }
+
+        public double getDt()
+        {
+            return columns.getDt()[ index ];
+        }
+
+        public double getX()
+        {
+            return columns.getX()[ index ];
+        }
+
+        public double getY()
+        {
+            return columns.getY()[ index ];
+        }
+
+        public double getPosition()
+        {
+            return columns.getPosition()[ index ];
+        }
+
+        public double getVelocity()
+        {
+            return columns.getVelocity()[ index ];
+        }
+
+        public double getAcceleration()
+        {
+            return columns.getAcceleration()[ index ];
+        }
+
+        public double getJerk()
+        {
+            return columns.getJerk()[ index ];
+        }
+
+        public double getHeading()
+        {
+            return columns.getHeading()[ index ];
+        }
+    }
+
+    /**
+     * A wheel trajectory that is only built the first time somebody asks for it.
+     * Threads asking at the same time wait for a single build.
+     */
+    private static final class LazyColumns
     {
-        public double dt;
-        public double x;
-        public double y;
-        public double position;
-        public double velocity;
-        public double acceleration;
-        public double jerk;
-        public double heading;
+        private Supplier<Columns> supplier;
+        private volatile Columns columns;
+
+        LazyColumns( Columns columns )
+        {
+            this.columns = columns;
+        }
+
+        LazyColumns( Supplier<Columns> supplier )
+        {
+            this.supplier = supplier;
+        }
+
+        Columns get()
+        {
+            Columns result = columns;
+
+            if( result == null )
+            {
+                synchronized( this )
+                {
+                    if( columns == null )
+                    {
+                        columns = supplier.get();
+                        supplier = null;
+                    }
+
+                    result = columns;
+                }
+            }
+
+            return result;
+        }
+
+        boolean isBuilt()
+        {
+            return columns != null;
+        }
+
+        static LazyColumns of( Columns columns )
+        {
+            return ( columns == null ) ? null : new LazyColumns( columns );
+        }
 
-        public Segment( double dt, double x, double y, double position, double velocity, double acceleration, double jerk, double heading )
+        static LazyColumns of( Supplier<Columns> supplier )
         {
-            this.dt = dt;
-            this.x = x;
-            this.y = y;
-            this.position = position;
-            this.velocity = velocity;
-            this.acceleration = acceleration;
-            this.jerk = jerk;
-            this.heading = heading;
+            return ( supplier == null ) ? null : new LazyColumns( supplier );
         }
     }
 
     // Generated paths
-    private Segment[] center;
-    private Segment[] frontLeft;
-    private Segment[] frontRight;
-    private Segment[] backLeft;
-    private Segment[] backRight;
+    private Columns center;
+    private LazyColumns frontLeft;
+    private LazyColumns frontRight;
+    private LazyColumns backLeft;
+    private LazyColumns backRight;
 
     private DriveBase driveBase;
 
-    public Path( DriveBase driveBase, Segment[] left, Segment[] right )
+    public Path( DriveBase driveBase, Columns left, Columns right )
     {
         this.driveBase = driveBase;
-        this.frontLeft = left;
-        this.frontRight = right;
+        this.frontLeft = LazyColumns.of( left );
+        this.frontRight = LazyColumns.of( right );
     }
 
-    public Path( DriveBase driveBase, Segment[] frontLeft, Segment[] frontRight, Segment[] backLeft, Segment[] backRight )
+    public Path( DriveBase driveBase, Columns frontLeft, Columns frontRight, Columns backLeft, Columns backRight )
     {
         this( driveBase, frontLeft, frontRight );
 
-        this.backLeft = backLeft;
-        this.backRight = backRight;
+        this.backLeft = LazyColumns.of( backLeft );
+        this.backRight = LazyColumns.of( backRight );
     }
 
-    public Path( DriveBase driveBase, Segment[] frontLeft, Segment[] frontRight, Segment[] backLeft, Segment[] backRight, Segment[] center )
+    public Path( DriveBase driveBase, Columns frontLeft, Columns frontRight, Columns backLeft, Columns backRight, Columns center )
     {
         this( driveBase, frontLeft, frontRight, backLeft, backRight );
         this.center = center;
     }
 
+    /**
+     * Builds a Path where only the center is known up front. Each wheel is built
+     * by its supplier the first time it is asked for, or by computeWheels().
+     * The suppliers may run on any thread. Pass null for wheels the drive base
+     * doesn't have.
+     */
+    public Path( DriveBase driveBase, Columns center, Supplier<Columns> frontLeft, Supplier<Columns> frontRight,
+                 Supplier<Columns> backLeft, Supplier<Columns> backRight )
+    {
+        this.driveBase = driveBase;
+        this.center = center;
+        this.frontLeft = LazyColumns.of( frontLeft );
+        this.frontRight = LazyColumns.of( frontRight );
+        this.backLeft = LazyColumns.of( backLeft );
+        this.backRight = LazyColumns.of( backRight );
+    }
+
+    /**
+     * Builds every wheel that hasn't been built yet, in parallel on the common
+     * fork join pool, and waits for them. Use this when all the wheels are
+     * needed anyway.
+     */
+    public void computeWheels()
+    {
+        List<LazyColumns> pending = new ArrayList<>( 4 );
+
+        for( LazyColumns wheel : new LazyColumns[]{ frontLeft, frontRight, backLeft, backRight } )
+        {
+            if( wheel != null && !wheel.isBuilt() )
+                pending.add( wheel );
+        }
+
+        if( pending.size() > 1 )
+            pending.parallelStream().forEach( LazyColumns::get );
+        else
+            pending.forEach( LazyColumns::get );
+    }
+
     // Getters and Setters
     public DriveBase getDriveBase()
     {
         return driveBase;
     }
 
-    public Segment[] getCenter()
+    public Columns getCenter()
     {
         return center;
     }
 
-    public Segment[] getFrontLeft()
+    public Columns getFrontLeft()
+    {
+        return get( frontLeft );
+    }
+
+    public Columns getFrontRight()
     {
-        return frontLeft;
+        return get( frontRight );
     }
 
-    public Segment[] getFrontRight()
+    public Columns getBackLeft()
     {
-        return frontRight;
+        return get( backLeft );
     }
 
-    public Segment[] getBackLeft()
+    public Columns getBackRight()
     {
-        return backLeft;
+        return get( backRight );
     }
 
-    public Segment[] getBackRight()
+    private static Columns get( LazyColumns wheel )
     {
-        return backRight;
+        return ( wheel == null ) ? null : wheel.get();
     }
 
     public int getLength()
     {
-        return center.length;
+        return center.length();
     }
 
     public Segment getCenterSegment( int i )
     {
-        return center[ i ];
+        return center.getSegment( i );
     }
 
     public Segment getFrontLeftSegment( int i )
     {
-        return frontLeft[ i ];
+        return getFrontLeft().getSegment( i );
     }
 
     public Segment getFrontRightSegment( int i )
     {
-        return frontRight[ i ];
+        return getFrontRight().getSegment( i );
     }
 
     public Segment getBackLeftSegment( int i )
     {
-        return backLeft[ i ];
+        return getBackLeft().getSegment( i );
     }
 
     public Segment getBackRightSegment( int i )
     {
-        return backRight[ i ];
+        return getBackRight().getSegment( i );
     }
 
 }
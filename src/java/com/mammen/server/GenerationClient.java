@@ -0,0 +1,123 @@
+package com.mammen.server;
+
+import com.mammen.file_io.TrajectoryFile;
+import com.mammen.generator.Generator;
+import com.mammen.generator.GeneratorConfig;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/******************************************************************************
+ *   GenerationClient
+ *       Asks a GenerationServer on this machine for paths. A client holds a
+ *       single connection and is not thread safe, open one client per thread
+ *       to have several paths generated at once.
+ *
+ *           try( GenerationClient client = new GenerationClient( Protocol.DEFAULT_PORT ) )
+ *           {
+ *               TrajectoryFile path = client.generate( Generator.Type.JAVA, config, waypoints,
+ *                                                      elements, Units.FEET );
+ *               DoubleBuffer velocity = path.getColumn( TrajectoryFile.LEFT, Path.Elements.VELOCITY );
+ *           }
+ ******************************************************************************/
+public class GenerationClient implements Closeable
+{
+    /**************************************************************************
+     *  The server answered with something other than a path.
+     *************************************************************************/
+    public static class ServerException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final byte status;
+
+        ServerException( byte status, String message )
+        {
+            super( message );
+            this.status = status;
+        }
+
+        /** One of the Protocol status codes. */
+        public byte getStatus()
+        {
+            return status;
+        }
+
+        /** The server had no room for the request, it may be sent again later. */
+        public boolean isBusy()
+        {
+            return status == Protocol.BUSY;
+        }
+    }
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param port Port of the server on the loopback address.
+     *************************************************************************/
+    public GenerationClient( int port ) throws IOException
+    {
+        socket = new Socket( InetAddress.getLoopbackAddress(), port );
+        socket.setTcpNoDelay( true );
+
+        in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+        out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+    }
+
+
+    /**************************************************************************
+     * <p>Has the server generate a path and waits for it.</p>
+     *
+     * @param type The generator to use.
+     * @param config The settings to generate with, lengths in meters.
+     * @param waypoints The waypoints, lengths in meters.
+     * @param elements The columns to return, in order.
+     * @param unit The unit of the returned lengths.
+     * @return The path, read the same way as a .traj file.
+     * @throws ServerException If the server was busy or couldn't generate the path.
+     *************************************************************************/
+    public TrajectoryFile generate( Generator.Type type, GeneratorConfig config, List<Waypoint> waypoints,
+                                    List<Path.Elements> elements, Units unit ) throws IOException
+    {
+        Protocol.writeRequest( out, type, config, waypoints, elements, unit );
+        out.flush();
+
+        byte status = in.readByte();
+
+        if( status != Protocol.OK )
+            throw new ServerException( status, in.readUTF() );
+
+        long size = in.readLong();
+
+        if( size < 0 || size > Integer.MAX_VALUE )
+            throw new IOException( "Path too big: " + size + " bytes" );
+
+        byte[] data = new byte[ (int) size ];
+        in.readFully( data );
+
+        return TrajectoryFile.wrap( ByteBuffer.wrap( data ) );
+    }
+
+
+    @Override
+    public void close() throws IOException
+    {
+        socket.close();
+    }
+}
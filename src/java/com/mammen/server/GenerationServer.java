@@ -0,0 +1,377 @@
+package com.mammen.server;
+
+import com.mammen.file_io.FileIO;
+import com.mammen.file_io.TrajectoryFile;
+import com.mammen.generator.Generator;
+import com.mammen.generator.JavaGenerator;
+import com.mammen.generator.PfV1Generator;
+import com.mammen.path.Path;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/******************************************************************************
+ *   GenerationServer
+ *       Headless server that generates paths for other programs on the same
+ *       machine, such as robot simulators and test harnesses. It listens on
+ *       the loopback address only. See Protocol for what goes over the wire,
+ *       GenerationClient is a client for it.
+ *
+ *       Paths are generated on a fixed pool of workers. Requests wait in a
+ *       queue of limited depth, a request that finds the queue full is
+ *       answered with BUSY straight away rather than piling up. Each
+ *       connection has one request in flight at most and reads the next one
+ *       only once its response is written, so a client that sends faster
+ *       than the workers keep up is slowed down to their pace.
+ *
+ *       Usage: --server [--port <port>] [--workers <n>] [--queue <n>]
+ ******************************************************************************/
+public class GenerationServer implements Closeable
+{
+    private static final String USAGE = "Usage: --server [--port " + Protocol.DEFAULT_PORT + "] [--workers <n>] [--queue <n>]";
+
+    private static final int MAX_CONNECTIONS = 64;
+    private static final int MAX_WAYPOINTS = 10_000;
+
+    // About 70 MB for a swerve path with every column, more would let one request starve the others.
+    private static final int MAX_SEGMENTS = 200_000;
+
+    private final ServerSocket serverSocket;
+    private final ThreadPoolExecutor workers;
+    private final Semaphore connections = new Semaphore( MAX_CONNECTIONS );
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    // Generators are thread safe, each worker shares the one of its type.
+    private final Map<Generator.Type, Generator> generators = new EnumMap<>( Generator.Type.class );
+
+    private volatile boolean closed = false;
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param port Port to listen on, 0 for any free port.
+     * @param numWorkers Number of paths generated at once.
+     * @param queueDepth Number of requests that may wait for a worker.
+     *************************************************************************/
+    public GenerationServer( int port, int numWorkers, int queueDepth ) throws IOException
+    {
+        for( Generator.Type type : Generator.Type.values() )
+        {
+            generators.put( type, createGenerator( type ) );
+        }
+
+        AtomicInteger workerCount = new AtomicInteger();
+
+        workers = new ThreadPoolExecutor( numWorkers, numWorkers, 0, TimeUnit.MILLISECONDS,
+                                          new ArrayBlockingQueue<>( queueDepth ),
+                                          r ->
+                                          {
+                                              Thread t = new Thread( r, "Generation Worker " + workerCount.incrementAndGet() );
+                                              t.setDaemon( true );
+                                              return t;
+                                          },
+                                          new ThreadPoolExecutor.AbortPolicy() );
+
+        serverSocket = new ServerSocket( port, MAX_CONNECTIONS, InetAddress.getLoopbackAddress() );
+    }
+
+
+    public static void main( String[] args )
+    {
+        int port = Protocol.DEFAULT_PORT;
+        int numWorkers = Runtime.getRuntime().availableProcessors();
+        int queueDepth = 4 * numWorkers;
+
+        try
+        {
+            for( int i = 0; i < args.length; i++ )
+            {
+                switch( args[ i ] )
+                {
+                    case "--port":
+                        port = Integer.parseInt( args[ ++i ] );
+                        break;
+
+                    case "--workers":
+                        numWorkers = Integer.parseInt( args[ ++i ] );
+                        break;
+
+                    case "--queue":
+                        queueDepth = Integer.parseInt( args[ ++i ] );
+                        break;
+
+                    default:
+                        throw new IllegalArgumentException( args[ i ] );
+                }
+            }
+
+            if( numWorkers < 1 || queueDepth < 1 )
+                throw new IllegalArgumentException();
+        }
+        catch( ArrayIndexOutOfBoundsException | IllegalArgumentException e )
+        {
+            System.err.println( USAGE );
+            System.exit( 2 );
+        }
+
+        try
+        {
+            GenerationServer server = new GenerationServer( port, numWorkers, queueDepth );
+
+            System.out.printf( "Generating paths on %s:%d with %d workers and a queue of %d%n",
+                               InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(), numWorkers, queueDepth );
+
+            server.run();
+        }
+        catch( IOException e )
+        {
+            System.err.println( "Could not start the server: " + e.getMessage() );
+            System.exit( 1 );
+        }
+    }
+
+
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+
+    /**************************************************************************
+     * <p>Accepts connections on a background thread and returns.</p>
+     *************************************************************************/
+    public void start()
+    {
+        Thread t = new Thread( this::run, "Generation Server" );
+        t.setDaemon( true );
+        t.start();
+    }
+
+
+    /**************************************************************************
+     * <p>Accepts connections until the server is closed.</p>
+     *************************************************************************/
+    public void run()
+    {
+        while( !closed )
+        {
+            Socket socket;
+
+            try
+            {
+                socket = serverSocket.accept();
+            }
+            catch( IOException e )
+            {
+                if( !closed )
+                    e.printStackTrace();
+
+                continue;
+            }
+
+            if( !connections.tryAcquire() )
+            {
+                refuse( socket );
+                continue;
+            }
+
+            Thread t = new Thread( () ->
+            {
+                try
+                {
+                    serve( socket );
+                }
+                finally
+                {
+                    connections.release();
+                }
+            }, "Generation Connection " + connectionCount.incrementAndGet() );
+
+            t.setDaemon( true );
+            t.start();
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Stops accepting connections and drops the requests still waiting
+     *      for a worker. Open connections are closed by their clients.</p>
+     *************************************************************************/
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        serverSocket.close();
+        workers.shutdownNow();
+    }
+
+
+    private void serve( Socket socket )
+    {
+        try( Socket s = socket )
+        {
+            s.setTcpNoDelay( true );
+
+            DataInputStream in = new DataInputStream( new BufferedInputStream( s.getInputStream() ) );
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( s.getOutputStream() ) );
+
+            while( !closed )
+            {
+                Protocol.Request request;
+
+                try
+                {
+                    request = Protocol.readRequest( in, MAX_WAYPOINTS );
+                }
+                catch( EOFException e )
+                {
+                    // The client is done.
+                    return;
+                }
+                catch( Protocol.ProtocolException e )
+                {
+                    // We can't tell where the next request starts, so this is the last one.
+                    reply( out, Protocol.BAD_REQUEST, e.getMessage() );
+                    return;
+                }
+
+                try
+                {
+                    handle( request, out );
+                }
+                catch( Protocol.ProtocolException e )
+                {
+                    // A bad request ends the connection, the same as one that can't be read.
+                    reply( out, Protocol.BAD_REQUEST, e.getMessage() );
+                    return;
+                }
+            }
+        }
+        catch( SocketException e )
+        {
+            // The client went away.
+        }
+        catch( IOException e )
+        {
+            e.printStackTrace();
+        }
+    }
+
+
+    private void handle( Protocol.Request request, DataOutputStream out ) throws IOException
+    {
+        Future<Path> result;
+
+        try
+        {
+            Generator generator = generators.get( request.type );
+
+            result = workers.submit( () ->
+            {
+                // Checked before any of the path is allocated. The Java generator follows the
+                //  same algorithm as Pathfinder V1, so its count holds for both.
+                double segments = JavaGenerator.countSegments( request.waypoints, request.config );
+
+                if( segments > MAX_SEGMENTS )
+                    throw new Protocol.ProtocolException( "The path would have " + (long) segments
+                                                          + " segments, at most " + MAX_SEGMENTS + " are allowed." );
+
+                Path path = generator.generate( request.waypoints, request.config );
+
+                // Build the wheels on the worker, not on the connection thread.
+                path.computeWheels();
+                return path;
+            });
+        }
+        catch( RejectedExecutionException e )
+        {
+            reply( out, Protocol.BUSY, "The queue is full." );
+            return;
+        }
+
+        Path path;
+
+        try
+        {
+            path = result.get();
+        }
+        catch( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+
+            if( cause instanceof Protocol.ProtocolException )
+                throw (Protocol.ProtocolException) cause;
+
+            reply( out, Protocol.FAILED, cause.getMessage() != null ? cause.getMessage() : cause.toString() );
+            return;
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException( "Interrupted while generating.", e );
+        }
+
+        out.writeByte( Protocol.OK );
+        out.writeLong( TrajectoryFile.size( path.getDriveBase().getNumWheels(), request.elements.size(), path.getLength() ) );
+        FileIO.writeBinaryPath( path, Channels.newChannel( out ), request.elements, request.unit );
+        out.flush();
+    }
+
+
+    private static void reply( DataOutputStream out, byte status, String message ) throws IOException
+    {
+        out.writeByte( status );
+        out.writeUTF( message );
+        out.flush();
+    }
+
+
+    private static void refuse( Socket socket )
+    {
+        try( Socket s = socket )
+        {
+            reply( new DataOutputStream( s.getOutputStream() ), Protocol.BUSY, "Too many connections." );
+        }
+        catch( IOException e )
+        {
+            // Nothing to do, the client will see the connection close.
+        }
+    }
+
+
+    private static Generator createGenerator( Generator.Type type )
+    {
+        switch( type )
+        {
+            case PATHFINDER_V1:
+                return new PfV1Generator();
+
+            case JAVA:
+                return new JavaGenerator();
+
+            default:
+                throw new RuntimeException( "The programmer forgot to add a case for the following generator: " + type );
+        }
+    }
+}
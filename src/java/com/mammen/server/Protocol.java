@@ -0,0 +1,223 @@
+package com.mammen.server;
+
+import com.mammen.generator.Generator;
+import com.mammen.generator.GeneratorConfig;
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.PfV1GeneratorVars.FitMethod;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/******************************************************************************
+ *   Protocol
+ *       What the generation server and its clients send each other. A
+ *       connection carries any number of requests, one at a time: the client
+ *       sends a request and reads the response before sending the next one.
+ *       Requests are written with DataOutput, so they are big endian.
+ *
+ *       Request:
+ *           int     magic "MPGR"
+ *           short   version
+ *           UTF     generator, a Generator.Type name
+ *           double  time step, in seconds
+ *           UTF     drive base, a DriveBase name
+ *           double  wheelbase width, wheelbase depth
+ *           double  velocity, acceleration, jerk
+ *           UTF     fit method, a FitMethod name
+ *           boolean reversed
+ *           UTF     unit of the returned columns, a Units name
+ *           byte    number of columns, then one Path.Elements ordinal each
+ *           int     number of waypoints, then x, y and angle of each
+ *
+ *       Lengths in the request are in meters and angles in degrees, the same
+ *       as a GeneratorConfig and a Waypoint. The time step, the wheelbase
+ *       and the limits must be positive and every number must be finite,
+ *       anything else is a bad request.
+ *
+ *       Response:
+ *           byte    status
+ *           OK:     long size, then the path in the .traj layout (see
+ *                   TrajectoryFile), lengths in the requested unit
+ *           others: UTF message
+ ******************************************************************************/
+public final class Protocol
+{
+    public static final int DEFAULT_PORT = 5805;
+
+    static final int MAGIC = 0x4D504752;
+    static final short VERSION = 1;
+
+    /******************************************************
+     *   Response status
+     ******************************************************/
+    public static final byte OK = 0;
+    public static final byte BUSY = 1;           // The queue is full, try again later.
+    public static final byte BAD_REQUEST = 2;    // The server closes the connection after this.
+    public static final byte FAILED = 3;         // The path couldn't be generated.
+
+    /**************************************************************************
+     *  A request as the server reads it.
+     *************************************************************************/
+    static final class Request
+    {
+        Generator.Type type;
+        GeneratorConfig config;
+        Units unit;
+        List<Path.Elements> elements;
+        List<Waypoint> waypoints;
+    }
+
+    private Protocol()
+    {
+    }
+
+
+    static void writeRequest( DataOutput out, Generator.Type type, GeneratorConfig config, List<Waypoint> waypoints,
+                              List<Path.Elements> elements, Units unit ) throws IOException
+    {
+        out.writeInt( MAGIC );
+        out.writeShort( VERSION );
+
+        out.writeUTF( type.name() );
+
+        out.writeDouble( config.getTimeStep() );
+        out.writeUTF( config.getDriveBase().name() );
+        out.writeDouble( config.getWheelBaseW() );
+        out.writeDouble( config.getWheelBaseD() );
+        out.writeDouble( config.getVelocity() );
+        out.writeDouble( config.getAccel() );
+        out.writeDouble( config.getJerk() );
+        out.writeUTF( config.getFitMethod().name() );
+        out.writeBoolean( config.isReversed() );
+
+        out.writeUTF( unit.name() );
+
+        out.writeByte( elements.size() );
+        for( Path.Elements e : elements )
+        {
+            out.writeByte( e.ordinal() );
+        }
+
+        out.writeInt( waypoints.size() );
+        for( Waypoint wp : waypoints )
+        {
+            out.writeDouble( wp.getX() );
+            out.writeDouble( wp.getY() );
+            out.writeDouble( wp.getAngle() );
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Reads a request.</p>
+     *
+     * @throws ProtocolException If the request is malformed.
+     * @throws IOException If the connection fails.
+     *************************************************************************/
+    static Request readRequest( DataInput in, int maxWaypoints ) throws IOException
+    {
+        if( in.readInt() != MAGIC )
+            throw new ProtocolException( "Not a generation request." );
+
+        short version = in.readShort();
+
+        if( version != VERSION )
+            throw new ProtocolException( "Unsupported request version: " + version );
+
+        Request request = new Request();
+
+        try
+        {
+            request.type = Generator.Type.valueOf( in.readUTF() );
+
+            double timeStep = readPositive( in, "Time step" );
+            DriveBase driveBase = DriveBase.valueOf( in.readUTF() );
+            double wheelBaseW = readPositive( in, "Wheelbase width" );
+            double wheelBaseD = readPositive( in, "Wheelbase depth" );
+            double velocity = readPositive( in, "Velocity" );
+            double accel = readPositive( in, "Acceleration" );
+            double jerk = readPositive( in, "Jerk" );
+            FitMethod fitMethod = FitMethod.valueOf( in.readUTF() );
+            boolean reversed = in.readBoolean();
+
+            request.config = new GeneratorConfig( timeStep, driveBase, wheelBaseW, wheelBaseD, velocity, accel, jerk, fitMethod, reversed );
+            request.unit = Units.valueOf( in.readUTF() );
+        }
+        catch( IllegalArgumentException e )
+        {
+            throw new ProtocolException( e.getMessage() );
+        }
+
+        int numColumns = in.readUnsignedByte();
+        request.elements = new ArrayList<>( numColumns );
+
+        for( int i = 0; i < numColumns; i++ )
+        {
+            int element = in.readUnsignedByte();
+
+            if( element >= Path.Elements.values().length )
+                throw new ProtocolException( "Unknown column: " + element );
+
+            request.elements.add( Path.Elements.values()[ element ] );
+        }
+
+        int numWaypoints = in.readInt();
+
+        if( numWaypoints < 0 || numWaypoints > maxWaypoints )
+            throw new ProtocolException( "Too many waypoints: " + numWaypoints );
+
+        request.waypoints = new ArrayList<>( numWaypoints );
+
+        for( int i = 0; i < numWaypoints; i++ )
+        {
+            double x = readFinite( in, "Waypoint x" );
+            double y = readFinite( in, "Waypoint y" );
+            double angle = readFinite( in, "Waypoint angle" );
+
+            request.waypoints.add( new Waypoint( x, y, angle ) );
+        }
+
+        return request;
+    }
+
+
+    private static double readPositive( DataInput in, String name ) throws IOException
+    {
+        double value = readFinite( in, name );
+
+        if( value <= 0 )
+            throw new ProtocolException( name + " must be positive: " + value );
+
+        return value;
+    }
+
+    private static double readFinite( DataInput in, String name ) throws IOException
+    {
+        double value = in.readDouble();
+
+        if( !Double.isFinite( value ) )
+            throw new ProtocolException( name + " must be a finite number: " + value );
+
+        return value;
+    }
+
+
+    /**************************************************************************
+     *  A request the server can't make sense of.
+     *************************************************************************/
+    static class ProtocolException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+
+        ProtocolException( String message )
+        {
+            super( message );
+        }
+    }
+}
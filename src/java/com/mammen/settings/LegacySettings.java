@@ -0,0 +1,140 @@
+package com.mammen.settings;
+
+import com.mammen.generator.Generator;
+import com.mammen.path.Path;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/******************************************************************************
+ *   LegacySettings
+ *       Reads the settings.set file that versions up to 4.0.1 wrote with
+ *       Java serialization, so the settings can be moved to the new format
+ *       once. Nothing writes this format anymore.
+ *
+ *       The old file names SettingsModel as its class and carries the
+ *       serialVersionUID computed from it. This class declares the same
+ *       one and its descriptor is swapped in while reading, a file with any
+ *       other serialVersionUID is rejected.
+ ******************************************************************************/
+class LegacySettings implements Serializable
+{
+    // The serialVersionUID of SettingsModel up to 4.0.1, it never declared one.
+    private static final long serialVersionUID = 2799403755449354594L;
+
+    private static final String LEGACY_CLASS = "com.mammen.settings.SettingsModel";
+
+    String graphBGImagePath;
+    boolean addPointOnClick;
+    SourcePathDisplayType sourcePathDisplayType;
+    List<Path.Elements> chosenCSVElements;
+    List<Path.Elements> availableCSVElements;
+    String workingDirectory;
+    Generator.Type generatorType;
+
+
+    /**************************************************************************
+     * <p>Reads a legacy settings file.</p>
+     *
+     * @param file The settings.set file.
+     * @return The settings in the file, or null if it can't be read.
+     *************************************************************************/
+    static LegacySettings load( File file )
+    {
+        try( InputStream in = new BufferedInputStream( new FileInputStream( file ) );
+             ObjectInputStream s = new LegacyInputStream( in ) )
+        {
+            return (LegacySettings) s.readObject();
+        }
+        catch( IOException | ClassNotFoundException | ClassCastException e )
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    /**************************************************************************
+     *  Reads the fields in the order SettingsModel.writeObject() wrote them.
+     *************************************************************************/
+    private void readObject( ObjectInputStream s ) throws IOException, ClassNotFoundException
+    {
+        graphBGImagePath = s.readUTF();
+        addPointOnClick = s.readBoolean();
+        sourcePathDisplayType = (SourcePathDisplayType) s.readObject();
+        chosenCSVElements = readElements( s );
+        availableCSVElements = readElements( s );
+        workingDirectory = s.readUTF();
+        generatorType = (Generator.Type) s.readObject();
+    }
+
+    private static List<Path.Elements> readElements( ObjectInputStream s ) throws IOException, ClassNotFoundException
+    {
+        int size = s.readInt();
+        List<Path.Elements> list = new ArrayList<>( size );
+
+        for( int i = 0; i < size; i++ )
+        {
+            list.add( (Path.Elements) s.readObject() );
+        }
+
+        return list;
+    }
+
+    // Only here so the stream knows the object has custom data to read.
+    private void writeObject( ObjectOutputStream s ) throws IOException
+    {
+        throw new NotSerializableException( "The legacy settings format is read only." );
+    }
+
+
+    /**************************************************************************
+     *  Reads the old SettingsModel as a LegacySettings.
+     *************************************************************************/
+    private static class LegacyInputStream extends ObjectInputStream
+    {
+        LegacyInputStream( InputStream in ) throws IOException
+        {
+            super( in );
+
+            // The file only ever held the settings object and enums.
+            setObjectInputFilter( info ->
+            {
+                Class<?> type = info.serialClass();
+
+                if( type == null || type == LegacySettings.class || type.isEnum() || type == Enum.class )
+                    return ObjectInputFilter.Status.UNDECIDED;
+
+                return ObjectInputFilter.Status.REJECTED;
+            });
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException
+        {
+            ObjectStreamClass desc = super.readClassDescriptor();
+
+            if( desc.getName().equals( LEGACY_CLASS ) )
+            {
+                if( desc.getSerialVersionUID() != serialVersionUID )
+                    throw new InvalidClassException( LEGACY_CLASS, "Unknown serialVersionUID " + desc.getSerialVersionUID() );
+
+                return ObjectStreamClass.lookup( LegacySettings.class );
+            }
+
+            return desc;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.mammen.settings;
+
+public enum PosGraphRenderer
+{
+    CANVAS( "Canvas" ),
+    CHART( "Chart nodes" );
+
+    private String label;
+
+    PosGraphRenderer( String label )
+    {
+        this.label = label;
+    }
+
+    @Override
+    public String toString()
+    {
+        return label;
+    }
+}
@@ -1,32 +1,76 @@
 package com.mammen.settings;
 
 import com.mammen.generator.Generator;
+import com.mammen.generator.JavaGenerator;
 import com.mammen.generator.PfV1Generator;
 import com.mammen.generator.generator_vars.GeneratorVars;
 import com.mammen.generator.generator_vars.PfV1GeneratorVars;
 import com.mammen.generator.generator_vars.SharedGeneratorVars;
+import com.mammen.file_io.AtomicFile;
 import com.mammen.path.Path;
-import com.mammen.util.SerializeHelpers.ObjectSerializer;
-import com.mammen.util.SerializeHelpers.ReadObjectsHelper;
-import com.mammen.util.SerializeHelpers.WriteObjectsHelper;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import java.io.*;
-
-public class SettingsModel implements Serializable
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/******************************************************************************
+ *   SettingsModel
+ *       Program settings. They are stored as key/value pairs in
+ *       settings.properties and written again whenever one of them changes.
+ *
+ *       The file carries a version number. Keys this version doesn't know
+ *       are kept as they are, so a newer program can read the file back.
+ *       A value that can't be read only resets that one setting.
+ ******************************************************************************/
+public class SettingsModel
 {
     /******************************************************
      *   File stuff
      ******************************************************/
-    private static final String FILE_NAME = "settings.set";
+    private static final String FILE_NAME = "settings.properties";
+    private static final String LEGACY_FILE_NAME = "settings.set";
     private static final String DIR_NAME = ".motion-profile-generator";
     private static final String SETTINGS_DIR = System.getProperty("user.home") + File.separator + DIR_NAME;
     private static final String SETTINGS_FILE_PATH = SETTINGS_DIR + File.separator + FILE_NAME;
+    private static final String LEGACY_FILE_PATH = SETTINGS_DIR + File.separator + LEGACY_FILE_NAME;
     private Boolean settingsDirExist;
 
 
+    /******************************************************
+     *   File format
+     ******************************************************/
+    // Bump this and add a step to migrate() whenever a key changes meaning or is renamed.
+    private static final int FORMAT_VERSION = 1;
+
+    private static final String KEY_VERSION             = "version";
+    private static final String KEY_BG_IMAGE            = "graph.backgroundImage";
+    private static final String KEY_ADD_POINT_ON_CLICK  = "graph.addPointOnClick";
+    private static final String KEY_SOURCE_DISPLAY      = "graph.sourcePathDisplay";
+    private static final String KEY_POS_GRAPH_RENDERER  = "graph.positionRenderer";
+    private static final String KEY_CHOSEN_ELEMENTS     = "export.chosenElements";
+    private static final String KEY_AVAILABLE_ELEMENTS  = "export.availableElements";
+    private static final String KEY_WORKING_DIR         = "workingDirectory";
+    private static final String KEY_GENERATOR_TYPE      = "generator.type";
+
+    // Everything read from the file, including keys from newer versions.
+    private Properties stored = new Properties();
+
+    // Writes the settings off the JavaFX thread, only the newest copy is written.
+    private final AtomicReference<Properties> pendingSave = new AtomicReference<>();
+    private final ThreadPoolExecutor saver;
+
+
     /******************************************************
      *   The one and only instance of this class.
      ******************************************************/
@@ -36,23 +80,25 @@ public class SettingsModel implements Serializable
     /******************************************************
      *   Settings
      ******************************************************/
-    private transient StringProperty graphBGImagePath;
-    private transient BooleanProperty addPointOnClick;
-    private transient Property<SourcePathDisplayType> sourcePathDisplayType;
-    private transient ListProperty<Path.Elements> chosenCSVElements;
-    private transient ListProperty<Path.Elements> availableCSVElements;
-    private transient StringProperty workingDirectory;
-    private transient Property<Generator.Type> generatorType;
-    private transient Property<GeneratorVars> generatorVars;
-    private transient Property<Generator> generator;
+    private StringProperty graphBGImagePath;
+    private BooleanProperty addPointOnClick;
+    private Property<SourcePathDisplayType> sourcePathDisplayType;
+    private Property<PosGraphRenderer> posGraphRenderer;
+    private ListProperty<Path.Elements> chosenCSVElements;
+    private ListProperty<Path.Elements> availableCSVElements;
+    private StringProperty workingDirectory;
+    private Property<Generator.Type> generatorType;
+    private Property<GeneratorVars> generatorVars;
+    private Property<Generator> generator;
 
 
     /******************************************************
      *   Instance of each generator and vars type.
      ******************************************************/
-    private transient SharedGeneratorVars sharedVars;
-    private transient PfV1GeneratorVars pfV1Vars;
-    private transient PfV1Generator pfV1Generator;
+    private SharedGeneratorVars sharedVars;
+    private PfV1GeneratorVars pfV1Vars;
+    private PfV1Generator pfV1Generator;
+    private JavaGenerator javaGenerator;
 
 
     /******************************************************
@@ -61,6 +107,11 @@ public class SettingsModel implements Serializable
     // Prevent instantiation of this class
     private SettingsModel()
     {
+        // The thread isn't a daemon so a change made right before exit still reaches the disk,
+        // it stops by itself once it has been idle for a second.
+        saver = new ThreadPoolExecutor( 1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread( r, "Settings" ) );
+        saver.allowCoreThreadTimeOut( true );
+
         // Create settings dir if it does not exist yet
         File settingsDir = new File( SettingsModel.getSettingsDir() );
         if( !settingsDir.exists() )
@@ -94,6 +145,11 @@ public class SettingsModel implements Serializable
                     generator.setValue( pfV1Generator );
                     break;
 
+                case JAVA:
+                    generatorVars.setValue( pfV1Vars );
+                    generator.setValue( javaGenerator );
+                    break;
+
                 default:
                     throw new RuntimeException( "The programmer forgot to add a case for the following generator: " + newValue );
             }
@@ -105,10 +161,12 @@ public class SettingsModel implements Serializable
         sharedVars = SharedGeneratorVars.getInstance();
         pfV1Vars = PfV1GeneratorVars.getInstance();
         pfV1Generator = new PfV1Generator();
+        javaGenerator = new JavaGenerator();
 
         graphBGImagePath        = new SimpleStringProperty();
         addPointOnClick         = new SimpleBooleanProperty( true );
         sourcePathDisplayType   = new SimpleObjectProperty<>( SourcePathDisplayType.WP_ONLY );
+        posGraphRenderer        = new SimpleObjectProperty<>( PosGraphRenderer.CANVAS );
         chosenCSVElements       = new SimpleListProperty<>( FXCollections.observableArrayList() );
         availableCSVElements    = new SimpleListProperty<>( FXCollections.observableArrayList() );
         workingDirectory        = new SimpleStringProperty( System.getProperty( "user.dir" ) );
@@ -128,26 +186,286 @@ public class SettingsModel implements Serializable
     {
         if( settings == null )
         {
-            settings = (SettingsModel)ObjectSerializer.loadObject( SETTINGS_FILE_PATH );
+            settings = new SettingsModel();
+            settings.load();
+            settings.saveOnChange();
+        }
 
-            if( settings == null )
+        return settings;
+    }
+
+
+    /**************************************************************************
+     *  load
+     *      Reads the settings file. The first time the program runs after an
+     *      update the old settings.set file is moved over to the new format.
+     *************************************************************************/
+    private void load()
+    {
+        File file = new File( SETTINGS_FILE_PATH );
+        File legacyFile = new File( LEGACY_FILE_PATH );
+
+        if( file.exists() )
+        {
+            try( Reader in = new BufferedReader( new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) )
+            {
+                stored.load( in );
+            }
+            catch( IOException | IllegalArgumentException e )
             {
-                settings = new SettingsModel();
+                e.printStackTrace();
+                stored = new Properties();
             }
+
+            migrate( stored );
+            apply( stored );
         }
+        else if( legacyFile.exists() )
+        {
+            LegacySettings legacy = LegacySettings.load( legacyFile );
 
-        return settings;
+            if( legacy != null )
+            {
+                apply( legacy );
+
+                try
+                {
+                    saveSettings();
+
+                    if( !legacyFile.delete() )
+                        System.err.println( "Could not delete " + legacyFile );
+                }
+                catch( IOException e )
+                {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+
+    /**************************************************************************
+     *  migrate
+     *      Brings settings written by an older version up to FORMAT_VERSION.
+     *      Files from a newer version are used as they are, the keys this
+     *      version knows still mean the same thing.
+     *************************************************************************/
+    private static void migrate( Properties p )
+    {
+        // Each step moves the file up by one version.
+        for( int version = parseInt( p.getProperty( KEY_VERSION ), FORMAT_VERSION ); version < FORMAT_VERSION; version++ )
+        {
+            switch( version )
+            {
+                default:
+                    throw new RuntimeException( "The programmer forgot to add a migration from settings version " + version );
+            }
+        }
+    }
+
+
+    /**************************************************************************
+     *  apply
+     *      Copies the values in the file to the settings. Missing or broken
+     *      values keep their defaults.
+     *************************************************************************/
+    private void apply( Properties p )
+    {
+        graphBGImagePath.set( p.getProperty( KEY_BG_IMAGE, graphBGImagePath.get() ) );
+        addPointOnClick.set( Boolean.parseBoolean( p.getProperty( KEY_ADD_POINT_ON_CLICK, Boolean.toString( addPointOnClick.get() ) ) ) );
+        sourcePathDisplayType.setValue( parseEnum( SourcePathDisplayType.class, p.getProperty( KEY_SOURCE_DISPLAY ), sourcePathDisplayType.getValue() ) );
+        posGraphRenderer.setValue( parseEnum( PosGraphRenderer.class, p.getProperty( KEY_POS_GRAPH_RENDERER ), posGraphRenderer.getValue() ) );
+        workingDirectory.set( p.getProperty( KEY_WORKING_DIR, workingDirectory.get() ) );
+        generatorType.setValue( parseEnum( Generator.Type.class, p.getProperty( KEY_GENERATOR_TYPE ), generatorType.getValue() ) );
+
+        String chosen = p.getProperty( KEY_CHOSEN_ELEMENTS );
+        String available = p.getProperty( KEY_AVAILABLE_ELEMENTS );
+
+        if( chosen != null && available != null )
+            setElements( parseElements( chosen ), parseElements( available ) );
+    }
+
+    private void apply( LegacySettings legacy )
+    {
+        graphBGImagePath.set( legacy.graphBGImagePath );
+        addPointOnClick.set( legacy.addPointOnClick );
+        sourcePathDisplayType.setValue( legacy.sourcePathDisplayType );
+        workingDirectory.set( legacy.workingDirectory );
+        generatorType.setValue( legacy.generatorType );
+
+        setElements( legacy.chosenCSVElements, legacy.availableCSVElements );
+    }
+
+    private void setElements( List<Path.Elements> chosen, List<Path.Elements> available )
+    {
+        // Elements added since the file was written show up as available.
+        for( Path.Elements e : Path.Elements.values() )
+        {
+            if( !chosen.contains( e ) && !available.contains( e ) )
+                available.add( e );
+        }
+
+        chosenCSVElements.setAll( chosen );
+        availableCSVElements.setAll( available );
+    }
+
+    private static List<Path.Elements> parseElements( String value )
+    {
+        List<Path.Elements> list = new ArrayList<>();
+
+        for( String name : value.split( "," ) )
+        {
+            Path.Elements e = parseEnum( Path.Elements.class, name.trim(), null );
+
+            // Elements this version doesn't know are dropped.
+            if( e != null && !list.contains( e ) )
+                list.add( e );
+        }
+
+        return list;
+    }
+
+    private static <E extends Enum<E>> E parseEnum( Class<E> type, String value, E defaultValue )
+    {
+        if( value == null )
+            return defaultValue;
+
+        try
+        {
+            return Enum.valueOf( type, value );
+        }
+        catch( IllegalArgumentException e )
+        {
+            return defaultValue;
+        }
+    }
+
+    private static int parseInt( String value, int defaultValue )
+    {
+        if( value == null )
+            return defaultValue;
+
+        try
+        {
+            return Integer.parseInt( value.trim() );
+        }
+        catch( NumberFormatException e )
+        {
+            return defaultValue;
+        }
+    }
+
+
+    /**************************************************************************
+     *  toProperties
+     *      The current settings, on top of the keys read from the file.
+     *************************************************************************/
+    private Properties toProperties()
+    {
+        Properties p = new Properties();
+        p.putAll( stored );
+
+        int version = parseInt( stored.getProperty( KEY_VERSION ), FORMAT_VERSION );
+
+        // Don't claim a newer file is an older version, its own migrations would run again.
+        p.setProperty( KEY_VERSION, Integer.toString( Math.max( version, FORMAT_VERSION ) ) );
+
+        if( graphBGImagePath.get() != null )
+            p.setProperty( KEY_BG_IMAGE, graphBGImagePath.get() );
+        else
+            p.remove( KEY_BG_IMAGE );
+
+        p.setProperty( KEY_ADD_POINT_ON_CLICK, Boolean.toString( addPointOnClick.get() ) );
+        p.setProperty( KEY_SOURCE_DISPLAY, sourcePathDisplayType.getValue().name() );
+        p.setProperty( KEY_POS_GRAPH_RENDERER, posGraphRenderer.getValue().name() );
+        p.setProperty( KEY_CHOSEN_ELEMENTS, joinElements( chosenCSVElements ) );
+        p.setProperty( KEY_AVAILABLE_ELEMENTS, joinElements( availableCSVElements ) );
+        p.setProperty( KEY_WORKING_DIR, workingDirectory.get() );
+        p.setProperty( KEY_GENERATOR_TYPE, generatorType.getValue().name() );
+
+        return p;
+    }
+
+    private static String joinElements( List<Path.Elements> elements )
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for( Path.Elements e : elements )
+        {
+            if( sb.length() > 0 )
+                sb.append( ',' );
+
+            sb.append( e.name() );
+        }
+
+        return sb.toString();
+    }
+
+
+    /**************************************************************************
+     *  saveOnChange
+     *      Writes the settings in the background whenever one of them changes.
+     *************************************************************************/
+    private void saveOnChange()
+    {
+        InvalidationListener listener = ( Observable o ) ->
+        {
+            // Coalesce changes that come in faster than they can be written.
+            if( pendingSave.getAndSet( toProperties() ) == null )
+                saver.execute( this::writeSettings );
+        };
+
+        graphBGImagePath.addListener( listener );
+        addPointOnClick.addListener( listener );
+        sourcePathDisplayType.addListener( listener );
+        posGraphRenderer.addListener( listener );
+        chosenCSVElements.addListener( listener );
+        availableCSVElements.addListener( listener );
+        workingDirectory.addListener( listener );
+        generatorType.addListener( listener );
     }
 
 
     /**************************************************************************
      *  saveSettings
-     *      Save the settings to a file.
+     *      Save the settings to a file now. Settings are saved by themselves
+     *      when they change, this is only needed to be sure they are on disk.
      *************************************************************************/
     public void saveSettings() throws IOException
     {
-        if( settingsDirExist )
-            ObjectSerializer.saveObject( this, SETTINGS_FILE_PATH );
+        pendingSave.set( toProperties() );
+
+        if( !writeSettings() )
+            throw new IOException( "Could not save the settings to " + SETTINGS_FILE_PATH );
+    }
+
+    /**
+     * Writes the newest pending settings. Synchronized so an older copy never lands after a newer one.
+     * @return False if the settings could not be written.
+     */
+    private synchronized boolean writeSettings()
+    {
+        Properties p = pendingSave.getAndSet( null );
+
+        if( p == null || !settingsDirExist )
+            return true;
+
+        try
+        {
+            AtomicFile.write( new File( SETTINGS_FILE_PATH ), out ->
+            {
+                Writer writer = new OutputStreamWriter( out, StandardCharsets.UTF_8 );
+                p.store( writer, "Motion Profile Generator settings" );
+                writer.flush();
+            });
+
+            return true;
+        }
+        catch( IOException e )
+        {
+            e.printStackTrace();
+            return false;
+        }
     }
 
 
@@ -211,6 +529,21 @@ public class SettingsModel implements Serializable
         this.sourcePathDisplayType.setValue( sourcePathDisplayType );
     }
 
+    public PosGraphRenderer getPosGraphRenderer()
+    {
+        return posGraphRenderer.getValue();
+    }
+
+    public Property<PosGraphRenderer> posGraphRendererProperty()
+    {
+        return posGraphRenderer;
+    }
+
+    public void setPosGraphRenderer( PosGraphRenderer posGraphRenderer )
+    {
+        this.posGraphRenderer.setValue( posGraphRenderer );
+    }
+
     public ObservableList<Path.Elements> getChosenCSVElements()
     {
         return chosenCSVElements.get();
@@ -305,44 +638,4 @@ public class SettingsModel implements Serializable
     {
         this.sharedVars = sharedVars;
     }
-
-    /**************************************************************************
-     *  THESE TWO METHODS ARE NEEDED TO SERIALIZE THIS CLASS
-     *************************************************************************/
-    private void writeObject( ObjectOutputStream s ) throws IOException
-    {
-        WriteObjectsHelper.writeStringProp( s, graphBGImagePath );
-        WriteObjectsHelper.writeBoolProp( s, addPointOnClick );
-        WriteObjectsHelper.writeObjectProp( s, sourcePathDisplayType );
-        WriteObjectsHelper.writeListPropPathElem( s, chosenCSVElements );
-        WriteObjectsHelper.writeListPropPathElem( s, availableCSVElements );
-        WriteObjectsHelper.writeStringProp( s, workingDirectory );
-        WriteObjectsHelper.writeObjectProp( s, generatorType );
-    }
-
-    private void readObject( ObjectInputStream s ) throws IOException, ClassNotFoundException
-    {
-        settingsDirExist = true;
-
-        initialize();
-
-        ReadObjectsHelper.readStringProp( s, graphBGImagePath );
-        ReadObjectsHelper.readBoolProp( s, addPointOnClick );
-        ReadObjectsHelper.readObjectProp( s, sourcePathDisplayType, SourcePathDisplayType.class );
-        ReadObjectsHelper.readListPropPathElem( s, chosenCSVElements );
-        ReadObjectsHelper.readListPropPathElem( s, availableCSVElements );
-        ReadObjectsHelper.readStringProp( s, workingDirectory );
-        ReadObjectsHelper.readObjectProp( s, generatorType, Generator.Type.class );
-
-        switch( generatorType.getValue() )
-        {
-            case PATHFINDER_V1:
-                generatorVars.setValue( pfV1Vars );
-                generator.setValue( pfV1Generator );
-                break;
-
-            default:
-                throw new RuntimeException( "The programmer forgot to add a case for the following generator: " + generatorType.getValue() );
-        }
-    }
 }
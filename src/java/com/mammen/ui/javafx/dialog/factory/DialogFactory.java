@@ -2,6 +2,8 @@ package com.mammen.ui.javafx.dialog.factory;
 
 import java.awt.Toolkit;
 
+import com.mammen.generator.generator_vars.SharedGeneratorVars;
+import com.mammen.generator.generator_vars.Units;
 import com.mammen.path.Waypoint;
 import com.mammen.util.ResourceLoader;
 import com.mammen.ui.javafx.dialog.add_waypoint.AddWaypointDialogController;
@@ -108,7 +110,10 @@ public class DialogFactory
                     double y     = Double.parseDouble( txtWY.getText().trim() );
                     double angle = Double.parseDouble( txtWA.getText().trim() );
 
-                    return new Waypoint( x, y, angle );
+                    // Typed in the selected unit, stored in meters.
+                    Units unit = SharedGeneratorVars.getInstance().getUnit();
+
+                    return new Waypoint( unit.toMeters( x ), unit.toMeters( y ), angle );
                 }
 
                 return null;
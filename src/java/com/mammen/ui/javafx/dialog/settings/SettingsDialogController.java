@@ -2,6 +2,7 @@ package com.mammen.ui.javafx.dialog.settings;
 
 import com.mammen.generator.Generator;
 import com.mammen.path.Path;
+import com.mammen.settings.PosGraphRenderer;
 import com.mammen.settings.SettingsModel;
 import com.mammen.settings.SourcePathDisplayType;
 import javafx.fxml.FXML;
@@ -27,6 +28,9 @@ public class SettingsDialogController
     @FXML
     private ChoiceBox<SourcePathDisplayType> choSourceDisplayType;
 
+    @FXML
+    private ChoiceBox<PosGraphRenderer> choPosGraphRenderer;
+
     @FXML
     private ChoiceBox<Generator.Type> cho_generatorType;
 
@@ -51,6 +55,7 @@ public class SettingsDialogController
          *   Setup ui elements
          ******************************************************/
         choSourceDisplayType.getItems().setAll( SourcePathDisplayType.values() );
+        choPosGraphRenderer .getItems().setAll( PosGraphRenderer.values()      );
         cho_generatorType   .getItems().setAll( Generator.Type.values()         );
 
 
@@ -59,6 +64,7 @@ public class SettingsDialogController
          ******************************************************/
         txtOverlayDir           .textProperty()     .bindBidirectional( settings.graphBGImagePathProperty()      );
         choSourceDisplayType    .valueProperty()    .bindBidirectional( settings.sourcePathDisplayTypeProperty() );
+        choPosGraphRenderer     .valueProperty()    .bindBidirectional( settings.posGraphRendererProperty()      );
         chkAddWaypointOnClick   .selectedProperty() .bindBidirectional( settings.addPointOnClickProperty()       );
         lst_chosenElements      .itemsProperty()    .bindBidirectional( settings.chosenCSVElementsProperty()     );
         lst_availableElements   .itemsProperty()    .bindBidirectional( settings.availableCSVElementsProperty()  );
@@ -73,7 +79,9 @@ public class SettingsDialogController
         {
             switch( newValue )
             {
+                // The Java generator uses the Pathfinder V1 vars.
                 case PATHFINDER_V1:
+                case JAVA:
                     pnl_pfV1Vars.setVisible( true );
                     break;
 
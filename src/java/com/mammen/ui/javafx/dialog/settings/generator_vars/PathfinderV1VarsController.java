@@ -112,11 +112,11 @@ public class PathfinderV1VarsController
         choUnits        .valueProperty().bindBidirectional( sharedVars.unitProperty()      );
 
         txtTimeStep     .textProperty().bindBidirectional( sharedVars.timeStepProperty(),   converter );
-        txtWheelBaseW   .textProperty().bindBidirectional( sharedVars.wheelBaseWProperty(), converter );
-        txtWheelBaseD   .textProperty().bindBidirectional( sharedVars.wheelBaseDProperty(), converter );
-        txtVelocity     .textProperty().bindBidirectional( vars.velocityProperty(),   converter );
-        txtAcceleration .textProperty().bindBidirectional( vars.accelProperty(),      converter );
-        txtJerk         .textProperty().bindBidirectional( vars.jerkProperty(),       converter );
+
+        bindLengths( sharedVars.getUnit() );
+
+        // Show the lengths in the new unit, their values don't change.
+        choUnits.valueProperty().addListener( ( o, oldValue, newValue ) -> bindLengths( newValue ) );
 
 
         // Disable WheelBaseD for Tank DriveBase
@@ -128,5 +128,44 @@ public class PathfinderV1VarsController
         });
 
     }
+
+    /**
+     * Binds the fields that hold a length, or a rate of one, so they are typed in the
+     * given unit. The vars hold meters. Binding again sets the text from the vars,
+     * so switching the unit never writes a rounded value back.
+     */
+    private void bindLengths( Units unit )
+    {
+        StringConverter<Number> converter = new StringConverter<>()
+        {
+            private final StringConverter<Number> number = new NumberStringConverter();
+
+            @Override
+            public String toString( Number meters )
+            {
+                return number.toString( unit.fromMeters( meters.doubleValue() ) );
+            }
+
+            @Override
+            public Number fromString( String text )
+            {
+                Number value = number.fromString( text );
+
+                return value == null ? null : unit.toMeters( value.doubleValue() );
+            }
+        };
+
+        txtWheelBaseW   .textProperty().unbindBidirectional( sharedVars.wheelBaseWProperty() );
+        txtWheelBaseD   .textProperty().unbindBidirectional( sharedVars.wheelBaseDProperty() );
+        txtVelocity     .textProperty().unbindBidirectional( vars.velocityProperty() );
+        txtAcceleration .textProperty().unbindBidirectional( vars.accelProperty() );
+        txtJerk         .textProperty().unbindBidirectional( vars.jerkProperty() );
+
+        txtWheelBaseW   .textProperty().bindBidirectional( sharedVars.wheelBaseWProperty(), converter );
+        txtWheelBaseD   .textProperty().bindBidirectional( sharedVars.wheelBaseDProperty(), converter );
+        txtVelocity     .textProperty().bindBidirectional( vars.velocityProperty(),   converter );
+        txtAcceleration .textProperty().bindBidirectional( vars.accelProperty(),      converter );
+        txtJerk         .textProperty().bindBidirectional( vars.jerkProperty(),       converter );
+    }
 }
 
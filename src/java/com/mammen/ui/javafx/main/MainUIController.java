@@ -1,11 +1,11 @@
 package com.mammen.ui.javafx.main;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
 
-import com.mammen.generator.Generator;
+import com.mammen.file_io.TrajectoryFile;
+import com.mammen.generator.generator_vars.Units;
 import com.mammen.path.Waypoint;
 import com.mammen.settings.SettingsModel;
 import com.mammen.ui.javafx.dialog.factory.AlertFactory;
@@ -106,17 +106,18 @@ public class MainUIController
                 return cell;
         };
 
-        // Handle editing waypoints table elements
+        // Handle editing waypoints table elements. X and Y are typed in the selected unit.
         EventHandler<TableColumn.CellEditEvent<Waypoint, Double>> editHandler = ( TableColumn.CellEditEvent<Waypoint, Double> t ) ->
         {
                 Waypoint curWaypoint = t.getRowValue();
+                Units unit = settings.getSharedGeneratorVars().getUnit();
 
                 if( t.getTableColumn() == colWaypointAngle )
                     curWaypoint.setAngle( t.getNewValue() );
                 else if (t.getTableColumn() == colWaypointY )
-                    curWaypoint.setY( t.getNewValue() );
+                    curWaypoint.setY( unit.toMeters( t.getNewValue() ) );
                 else
-                    curWaypoint.setX( t.getNewValue() );
+                    curWaypoint.setX( unit.toMeters( t.getNewValue() ) );
 
         };
         
@@ -133,7 +134,7 @@ public class MainUIController
             @Override
             public Double getValue()
             {
-                return d.getValue().getX();
+                return settings.getSharedGeneratorVars().getUnit().fromMeters( d.getValue().getX() );
             }
         });
 
@@ -141,7 +142,7 @@ public class MainUIController
         {
             @Override
             public Double getValue() {
-                return d.getValue().getY();
+                return settings.getSharedGeneratorVars().getUnit().fromMeters( d.getValue().getY() );
             }
         });
 
@@ -164,23 +165,17 @@ public class MainUIController
             btnClearPoints.setDisable( backend.isWaypointListEmpty() );
             tblWaypoints.refresh();
 
-            try
+            // Generate new path with new settings
+            if( backend.getNumWaypoints() > 1 )
             {
-                // Generate new path with new settings
-                if( backend.getNumWaypoints() > 1 )
-                    backend.generatePath();
-            }
-            catch( Generator.PathGenerationException | Generator.NotEnoughPointsException e )
-            {
-                Alert alert = new Alert( Alert.AlertType.INFORMATION );
-                alert.setTitle( "Invalid point" );
-                alert.setHeaderText( "Invalid point" );
-                alert.setContentText( "The point you entered was invalid.");
-                alert.showAndWait();
-
-                // Run later because we don't want to modify a list inside it's own change listener.
-                Platform.runLater( () ->
+                backend.generatePath( e ->
                 {
+                    Alert alert = new Alert( Alert.AlertType.INFORMATION );
+                    alert.setTitle( "Invalid point" );
+                    alert.setHeaderText( "Invalid point" );
+                    alert.setContentText( "The point you entered was invalid.");
+                    alert.showAndWait();
+
                     // Remove problem point.
                     backend.removeLastPoint();
                 });
@@ -189,25 +184,27 @@ public class MainUIController
 
         tblWaypoints.itemsProperty().bindBidirectional( backend.waypointListProperty() );
 
+        // The waypoints are stored in meters, only what the table shows changes.
+        settings.getSharedGeneratorVars().unitProperty().addListener( (o, oldValue, newValue) -> tblWaypoints.refresh() );
+
+        // Bring back the project if the program crashed last time.
+        if( backend.recoverAutosave() )
+        {
+            Platform.runLater( () ->
+            {
+                Alert alert = new Alert( Alert.AlertType.INFORMATION );
+                alert.setTitle( "Project recovered" );
+                alert.setHeaderText( "Project recovered" );
+                alert.setContentText( "The program did not shut down cleanly last time. Your unsaved changes have been restored." );
+                alert.showAndWait();
+            });
+        }
+
         tblWaypoints.getSelectionModel().setSelectionMode( SelectionMode.MULTIPLE );
         tblWaypoints.getSelectionModel().selectedIndexProperty().addListener( (observable, oldValue, newValue) ->
             btnDelete.setDisable( tblWaypoints.getSelectionModel().getSelectedIndices().get(0) == -1 )
         );
         
-        Runtime.getRuntime().addShutdownHook( new Thread( () ->
-        {
-            settings.setWorkingDirectory( workingDirectory.getAbsolutePath() );
-
-            try
-            {
-                settings.saveSettings();
-            }
-            catch( IOException e )
-            {
-                e.printStackTrace();
-            }
-        }));
-
         // Maintains the aspect ratio of the position graph
         graphTabs.widthProperty().addListener( (o, oldValue, newValue) ->
         {
@@ -264,11 +261,11 @@ public class MainUIController
         {
             if( b )
             {
+                // Generate new path with new settings
+                backend.generatePath();
+
                 try
                 {
-                    // Generate new path with new settings
-                    backend.generatePath();
-
                     //posGraphController.setBGImg();
 
                     settings.saveSettings();
@@ -278,11 +275,6 @@ public class MainUIController
                     Alert alert = AlertFactory.createExceptionAlert( e );
                     alert.showAndWait();
                 }
-                catch( Generator.PathGenerationException | Generator.NotEnoughPointsException e )
-                {
-                    // Don't do anything.
-                    // TODO: Probably should do something here
-                }
             }
         });
     } /* showSettingsDialog() */
@@ -313,8 +305,11 @@ public class MainUIController
 
         fileChooser.setInitialDirectory( new File( System.getProperty("user.dir") ) );
         fileChooser.setTitle("Export");
+        FileChooser.ExtensionFilter binaryFilter = new FileChooser.ExtensionFilter("Binary Trajectory", "*." + TrajectoryFile.EXTENSION );
+
         fileChooser.getExtensionFilters().addAll(
-                new FileChooser.ExtensionFilter("Comma Separated Values", "*.csv" )
+                new FileChooser.ExtensionFilter("Comma Separated Values", "*.csv" ),
+                binaryFilter
         );
 
         File result = fileChooser.showSaveDialog( root.getScene().getWindow() );
@@ -322,20 +317,25 @@ public class MainUIController
         if( result != null )
         {
             String parentPath = result.getAbsolutePath();
-            String ext = parentPath.substring( parentPath.lastIndexOf(".") );
+            boolean binary = fileChooser.getSelectedExtensionFilter() == binaryFilter
+                          || parentPath.endsWith( "." + TrajectoryFile.EXTENSION );
 
-            parentPath = parentPath.substring( 0, parentPath.lastIndexOf( ext ) );
+            if( parentPath.lastIndexOf(".") > parentPath.lastIndexOf( File.separatorChar ) )
+                parentPath = parentPath.substring( 0, parentPath.lastIndexOf(".") );
             
             try
             {
-                backend.exportPath( new File( parentPath ) );
+                if( binary )
+                    backend.exportBinaryPath( new File( parentPath ) );
+                else
+                    backend.exportPath( new File( parentPath ) );
             }
-            catch( FileNotFoundException e )
+            catch( IOException e )
             {
                 Alert alert = new Alert( Alert.AlertType.ERROR);
 
-                alert.setTitle( "FileNotFoundException" );
-                alert.setHeaderText( "FileNotFoundException" );
+                alert.setTitle( "IOException" );
+                alert.setHeaderText( "IOException" );
                 alert.setContentText( e.getLocalizedMessage() );
                 alert.showAndWait();
 			}
@@ -360,6 +360,7 @@ public class MainUIController
             try
             {
                 workingDirectory = result.getParentFile();
+                settings.setWorkingDirectory( workingDirectory.getAbsolutePath() );
                 backend.saveProjectAs( result );
                 mnuFileSave.setDisable( false );
             }
@@ -389,6 +390,7 @@ public class MainUIController
             try
             {
                 workingDirectory = result.getParentFile();
+                settings.setWorkingDirectory( workingDirectory.getAbsolutePath() );
                 backend.loadProject( result );
 
                 mnuFileSave.setDisable( false );
@@ -484,9 +486,7 @@ public class MainUIController
     {
         List<Integer> selectedIndices = tblWaypoints.getSelectionModel().getSelectedIndices();
 
-        int firstIndex = selectedIndices.get( 0 );
-        int lastIndex = selectedIndices.get( selectedIndices.size() - 1 );
-
-        backend.removePoints( firstIndex, lastIndex );
+        // Only the selected rows, the selection doesn't have to be one block.
+        backend.removePoints( selectedIndices );
     } /* deletePoints() */
 }
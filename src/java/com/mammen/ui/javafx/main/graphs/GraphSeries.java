@@ -0,0 +1,115 @@
+package com.mammen.ui.javafx.main.graphs;
+
+import javafx.collections.ObservableList;
+import javafx.scene.chart.XYChart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/******************************************************************************
+ *   GraphSeries
+ *       Updates the data of a series that stays in its chart. The existing
+ *       XYChart.Data objects are given the new values and only the
+ *       difference in length is added or removed, so the chart keeps its
+ *       nodes instead of building a new one for every point.
+ ******************************************************************************/
+final class GraphSeries
+{
+    private GraphSeries()
+    {
+    }
+
+
+    /**************************************************************************
+     * <p>Sets the points of a series.</p>
+     *
+     * @param series The series to update.
+     * @param x X values, only read at the given indices.
+     * @param y Y values, only read at the given indices.
+     * @param indices The points to show, in order.
+     * @return Index of the first Data that was added, everything before it
+     *      was reused.
+     *************************************************************************/
+    static int update( XYChart.Series<Double, Double> series, double[] x, double[] y, int[] indices )
+    {
+        ObservableList<XYChart.Data<Double, Double>> data = series.getData();
+        int reused = Math.min( data.size(), indices.length );
+
+        for( int i = 0; i < reused; i++ )
+        {
+            set( data.get( i ), x[ indices[ i ] ], y[ indices[ i ] ] );
+        }
+
+        if( data.size() > indices.length )
+        {
+            data.remove( indices.length, data.size() );
+        }
+        else if( data.size() < indices.length )
+        {
+            List<XYChart.Data<Double, Double>> added = new ArrayList<>( indices.length - reused );
+
+            for( int i = reused; i < indices.length; i++ )
+            {
+                added.add( new XYChart.Data<>( x[ indices[ i ] ], y[ indices[ i ] ] ) );
+            }
+
+            // One change for the chart instead of one per point.
+            data.addAll( added );
+        }
+
+        return reused;
+    }
+
+
+    /**************************************************************************
+     * <p>Adds points to the end of a series, the points already there are
+     *      left alone.</p>
+     *
+     * @param series The series to add to.
+     * @param x X values, only read at the given indices.
+     * @param y Y values, only read at the given indices.
+     * @param indices The points to add, in order.
+     * @return Index of the first Data that was added.
+     *************************************************************************/
+    static int append( XYChart.Series<Double, Double> series, double[] x, double[] y, int[] indices )
+    {
+        ObservableList<XYChart.Data<Double, Double>> data = series.getData();
+        int first = data.size();
+
+        List<XYChart.Data<Double, Double>> added = new ArrayList<>( indices.length );
+
+        for( int i : indices )
+        {
+            added.add( new XYChart.Data<>( x[ i ], y[ i ] ) );
+        }
+
+        // One change for the chart instead of one per point.
+        data.addAll( added );
+
+        return first;
+    }
+
+
+    /**************************************************************************
+     * <p>Removes every point of a series.</p>
+     *************************************************************************/
+    static void clear( XYChart.Series<Double, Double> series )
+    {
+        if( !series.getData().isEmpty() )
+            series.getData().clear();
+    }
+
+
+    /**************************************************************************
+     * <p>Moves a point, values that didn't change are left alone so the
+     *      chart isn't laid out for nothing.</p>
+     *************************************************************************/
+    static void set( XYChart.Data<Double, Double> data, double x, double y )
+    {
+        if( data.getXValue() == null || data.getXValue() != x )
+            data.setXValue( x );
+
+        if( data.getYValue() == null || data.getYValue() != y )
+            data.setYValue( y );
+    }
+}
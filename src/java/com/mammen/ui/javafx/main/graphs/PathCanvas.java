@@ -0,0 +1,357 @@
+package com.mammen.ui.javafx.main.graphs;
+
+import com.mammen.generator.SegmentBlock;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+import com.mammen.util.Downsampler;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/******************************************************************************
+ *   PathCanvas
+ *       Draws the field image, the grid, the trajectories and the waypoints
+ *       of the position graph onto a single Canvas. The trajectories are
+ *       drawn straight from the Path arrays, so a path with thousands of
+ *       samples costs no more scene graph nodes than one with ten.
+ *
+ *       The canvas covers the plot area of the chart, values are mapped to
+ *       pixels with the bounds of the chart axes.
+ *
+ *       A path that is still being generated is drawn a block at a time,
+ *       each block is added to what is on the canvas without drawing the
+ *       rest again.
+ ******************************************************************************/
+public class PathCanvas extends Canvas
+{
+    private static final double WAYPOINT_RADIUS = 5.0;
+    private static final double WAYPOINT_INNER_RADIUS = 3.0;
+    private static final double HIT_RADIUS = 8.0;
+    private static final double LINE_WIDTH = 2.0;
+
+    private static final Color GRID_COLOR = Color.rgb( 150, 153, 158, 0.5 );
+    private static final Color CENTER_COLOR = Color.ORANGE;
+    private static final Color FRONT_COLOR = Color.RED;
+    private static final Color BACK_COLOR = Color.BLUE;
+    private static final Color WAYPOINT_COLOR = Color.ORANGE;
+
+    private final NumberAxis xAxis;
+    private final NumberAxis yAxis;
+
+    private Image background;
+    private Path path;
+    private boolean showCenter;
+
+    // Blocks of a path that is being generated, drawn when there is no path.
+    private final List<SegmentBlock> blocks = new ArrayList<>();
+
+    // The last block drawn of each wheel, then of the center. The next one continues its line.
+    private final Path.Columns[] lastBlocks = new Path.Columns[ 5 ];
+
+    // Waypoint positions in graph units, a drag moves these before the waypoint itself.
+    private double[] wpX = new double[ 0 ];
+    private double[] wpY = new double[ 0 ];
+
+
+    /**************************************************************************
+     *   Constructor
+     *
+     * @param xAxis The x axis of the chart the canvas is drawn on.
+     * @param yAxis The y axis of the chart the canvas is drawn on.
+     *************************************************************************/
+    public PathCanvas( NumberAxis xAxis, NumberAxis yAxis )
+    {
+        this.xAxis = xAxis;
+        this.yAxis = yAxis;
+    }
+
+
+    /**************************************************************************
+     * <p>Sets the image stretched over the plot area.</p>
+     *
+     * @param image The image, null for none. Images that are still loading
+     *              are drawn once they finish.
+     *************************************************************************/
+    public void setBackground( Image image )
+    {
+        background = image;
+
+        if( image != null && image.getProgress() < 1.0 )
+        {
+            image.progressProperty().addListener( (o, oldValue, newValue) ->
+            {
+                if( newValue.doubleValue() >= 1.0 && background == image )
+                    redraw();
+            });
+        }
+
+        redraw();
+    }
+
+
+    /**************************************************************************
+     * <p>Sets the path to draw.</p>
+     *
+     * @param path The path, null for none.
+     * @param showCenter Also draw the center trajectory.
+     *************************************************************************/
+    public void setPath( Path path, boolean showCenter )
+    {
+        this.path = path;
+        this.showCenter = showCenter;
+
+        blocks.clear();
+        Arrays.fill( lastBlocks, null );
+    }
+
+
+    /**************************************************************************
+     * <p>Draws a block of a path that is being generated on top of what is
+     *      on the canvas. Set a null path before the first block of a path.
+     *      The blocks are drawn again by redraw() until the next setPath().</p>
+     *
+     * @param block The next block of any wheel.
+     *************************************************************************/
+    public void addBlock( SegmentBlock block )
+    {
+        blocks.add( block );
+
+        drawBlock( getGraphicsContext2D(), block, lastBlocks );
+    }
+
+
+    /**************************************************************************
+     * <p>Sets the waypoints to draw, their positions are copied.</p>
+     *************************************************************************/
+    public void setWaypoints( List<Waypoint> waypoints )
+    {
+        int n = waypoints == null ? 0 : waypoints.size();
+
+        wpX = new double[ n ];
+        wpY = new double[ n ];
+
+        for( int i = 0; i < n; i++ )
+        {
+            wpX[ i ] = waypoints.get( i ).getX();
+            wpY[ i ] = waypoints.get( i ).getY();
+        }
+    }
+
+
+    /**************************************************************************
+     * <p>Moves a drawn waypoint without touching the waypoint itself.</p>
+     *
+     * @param index Index of the waypoint.
+     * @param x The new x position in graph units.
+     * @param y The new y position in graph units.
+     *************************************************************************/
+    public void moveWaypoint( int index, double x, double y )
+    {
+        wpX[ index ] = x;
+        wpY[ index ] = y;
+
+        redraw();
+    }
+
+    public double getWaypointX( int index )
+    {
+        return wpX[ index ];
+    }
+
+    public double getWaypointY( int index )
+    {
+        return wpY[ index ];
+    }
+
+
+    /**************************************************************************
+     * <p>Finds the waypoint under a point on the canvas.</p>
+     *
+     * @param px X pixel, relative to the canvas.
+     * @param py Y pixel, relative to the canvas.
+     * @return Index of the closest waypoint within reach, or -1.
+     *************************************************************************/
+    public int waypointAt( double px, double py )
+    {
+        int closest = -1;
+        double closestDist = HIT_RADIUS * HIT_RADIUS;
+
+        for( int i = 0; i < wpX.length; i++ )
+        {
+            double dx = toPixelX( wpX[ i ] ) - px;
+            double dy = toPixelY( wpY[ i ] ) - py;
+            double dist = dx * dx + dy * dy;
+
+            if( dist <= closestDist )
+            {
+                closest = i;
+                closestDist = dist;
+            }
+        }
+
+        return closest;
+    }
+
+
+    /**************************************************************************
+     * <p>Draws everything again.</p>
+     *************************************************************************/
+    public void redraw()
+    {
+        GraphicsContext gc = getGraphicsContext2D();
+        double width = getWidth();
+        double height = getHeight();
+
+        gc.clearRect( 0, 0, width, height );
+
+        if( width <= 0 || height <= 0 )
+            return;
+
+        if( background != null && background.getProgress() >= 1.0 && !background.isError() )
+            gc.drawImage( background, 0, 0, width, height );
+
+        drawGrid( gc, width, height );
+
+        if( path != null )
+        {
+            if( showCenter )
+                drawColumns( gc, path.getCenter(), CENTER_COLOR );
+
+            drawColumns( gc, path.getFrontLeft(), FRONT_COLOR );
+            drawColumns( gc, path.getFrontRight(), FRONT_COLOR );
+            drawColumns( gc, path.getBackLeft(), BACK_COLOR );
+            drawColumns( gc, path.getBackRight(), BACK_COLOR );
+        }
+        else
+        {
+            Path.Columns[] last = new Path.Columns[ lastBlocks.length ];
+
+            for( SegmentBlock block : blocks )
+            {
+                drawBlock( gc, block, last );
+            }
+        }
+
+        for( int i = 0; i < wpX.length; i++ )
+        {
+            double px = toPixelX( wpX[ i ] );
+            double py = toPixelY( wpY[ i ] );
+
+            gc.setFill( WAYPOINT_COLOR );
+            gc.fillOval( px - WAYPOINT_RADIUS, py - WAYPOINT_RADIUS, 2 * WAYPOINT_RADIUS, 2 * WAYPOINT_RADIUS );
+            gc.setFill( Color.WHITE );
+            gc.fillOval( px - WAYPOINT_INNER_RADIUS, py - WAYPOINT_INNER_RADIUS, 2 * WAYPOINT_INNER_RADIUS, 2 * WAYPOINT_INNER_RADIUS );
+        }
+    }
+
+    private void drawGrid( GraphicsContext gc, double width, double height )
+    {
+        gc.setStroke( GRID_COLOR );
+        gc.setLineWidth( 1.0 );
+
+        double xTick = xAxis.getTickUnit();
+        double yTick = yAxis.getTickUnit();
+
+        if( xTick > 0 )
+        {
+            for( double x = xAxis.getLowerBound(); x <= xAxis.getUpperBound(); x += xTick )
+            {
+                // Half pixel offset keeps the lines one pixel wide.
+                double px = Math.floor( toPixelX( x ) ) + 0.5;
+                gc.strokeLine( px, 0, px, height );
+            }
+        }
+
+        if( yTick > 0 )
+        {
+            for( double y = yAxis.getLowerBound(); y <= yAxis.getUpperBound(); y += yTick )
+            {
+                double py = Math.floor( toPixelY( y ) ) + 0.5;
+                gc.strokeLine( 0, py, width, py );
+            }
+        }
+    }
+
+    private void drawColumns( GraphicsContext gc, Path.Columns columns, Color color )
+    {
+        drawPart( gc, columns, null, columns == null ? 0 : columns.length(), color );
+    }
+
+    /**
+     * Draws a block and remembers it in last, so the block after it is joined on.
+     */
+    private void drawBlock( GraphicsContext gc, SegmentBlock block, Path.Columns[] last )
+    {
+        int wheel = block.getWheel();
+
+        // The center is the same in the blocks of every wheel, draw it once.
+        if( showCenter && wheel == 0 )
+        {
+            drawPart( gc, block.getCenter(), last[ 4 ], block.getPathLength(), CENTER_COLOR );
+            last[ 4 ] = block.getCenter();
+        }
+
+        drawPart( gc, block.getSegments(), last[ wheel ], block.getPathLength(), wheel < 2 ? FRONT_COLOR : BACK_COLOR );
+        last[ wheel ] = block.getSegments();
+    }
+
+    /**
+     * Draws part of a trajectory, downsampled to its share of the points.
+     * @param previous The part before it, the line starts from its last point. Null for none.
+     * @param length Length of the whole trajectory.
+     */
+    private void drawPart( GraphicsContext gc, Path.Columns columns, Path.Columns previous, int length, Color color )
+    {
+        if( columns == null || columns.length() == 0 )
+            return;
+
+        double[] x = columns.getX();
+        double[] y = columns.getY();
+        int threshold = Downsampler.pointsForPart( Downsampler.pointsForWidth( getWidth() ), columns.length(), length );
+        int[] points = Downsampler.lttb( x, y, columns.length(), threshold );
+
+        gc.setStroke( color );
+        gc.setLineWidth( LINE_WIDTH );
+        gc.beginPath();
+
+        if( previous != null && previous.length() > 0 )
+        {
+            int end = previous.length() - 1;
+
+            gc.moveTo( toPixelX( previous.getX()[ end ] ), toPixelY( previous.getY()[ end ] ) );
+            gc.lineTo( toPixelX( x[ points[ 0 ] ] ), toPixelY( y[ points[ 0 ] ] ) );
+        }
+        else
+        {
+            gc.moveTo( toPixelX( x[ points[ 0 ] ] ), toPixelY( y[ points[ 0 ] ] ) );
+        }
+
+        for( int p = 1; p < points.length; p++ )
+        {
+            gc.lineTo( toPixelX( x[ points[ p ] ] ), toPixelY( y[ points[ p ] ] ) );
+        }
+
+        gc.stroke();
+    }
+
+
+    /**************************************************************************
+     *  Conversions from graph units to canvas pixels. The axes don't
+     *  auto range, so the mapping is linear over the plot area.
+     *************************************************************************/
+    private double toPixelX( double x )
+    {
+        return ( x - xAxis.getLowerBound() ) / ( xAxis.getUpperBound() - xAxis.getLowerBound() ) * getWidth();
+    }
+
+    private double toPixelY( double y )
+    {
+        return getHeight() - ( y - yAxis.getLowerBound() ) / ( yAxis.getUpperBound() - yAxis.getLowerBound() ) * getHeight();
+    }
+}
@@ -0,0 +1,62 @@
+package com.mammen.ui.javafx.main.graphs;
+
+import javafx.beans.NamedArg;
+import javafx.scene.chart.Axis;
+import javafx.scene.chart.LineChart;
+
+/******************************************************************************
+ *   PosGraphChart
+ *       The LineChart behind the position graph. It can host a PathCanvas
+ *       over its plot area, the chart then only draws the axes and the
+ *       canvas draws everything else.
+ ******************************************************************************/
+public class PosGraphChart extends LineChart<Double, Double>
+{
+    private PathCanvas canvas;
+
+    public PosGraphChart( @NamedArg( "xAxis" ) Axis<Double> xAxis, @NamedArg( "yAxis" ) Axis<Double> yAxis )
+    {
+        super( xAxis, yAxis );
+    }
+
+
+    /**************************************************************************
+     * <p>Puts a canvas over the plot area, or removes it.</p>
+     *
+     * @param canvas The canvas, null to go back to drawing with chart nodes.
+     *************************************************************************/
+    public void setCanvas( PathCanvas canvas )
+    {
+        if( this.canvas != null )
+            getPlotChildren().remove( this.canvas );
+
+        this.canvas = canvas;
+
+        if( canvas != null )
+            getPlotChildren().add( canvas );
+
+        requestChartLayout();
+    }
+
+
+    @Override
+    protected void layoutPlotChildren()
+    {
+        super.layoutPlotChildren();
+
+        // The plot children start at the top left of the plot area.
+        if( canvas != null )
+        {
+            double width = getXAxis().getWidth();
+            double height = getYAxis().getHeight();
+
+            if( width != canvas.getWidth() || height != canvas.getHeight() )
+            {
+                canvas.setWidth( width );
+                canvas.setHeight( height );
+            }
+
+            canvas.redraw();
+        }
+    }
+}
@@ -1,27 +1,37 @@
 package com.mammen.ui.javafx.main.graphs;
 
+import com.mammen.generator.SegmentBlock;
 import com.mammen.generator.generator_vars.SharedGeneratorVars;
 import com.mammen.generator.generator_vars.Units;
+import com.mammen.metrics.GraphRefreshEvent;
+import com.mammen.metrics.Metrics;
+import com.mammen.metrics.SeriesBuildEvent;
 import com.mammen.path.Path;
 import com.mammen.path.Waypoint;
 import com.mammen.main.MainUIModel;
+import com.mammen.settings.PosGraphRenderer;
 import com.mammen.settings.SettingsModel;
 import com.mammen.settings.SourcePathDisplayType;
 import com.mammen.ui.javafx.dialog.factory.DialogFactory;
+import com.mammen.util.Downsampler;
 import com.mammen.util.Mathf;
 import com.mammen.util.OSValidator;
 import com.mammen.util.ResourceLoader;
+import javafx.animation.AnimationTimer;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.geometry.Point2D;
 import javafx.scene.Cursor;
 import javafx.scene.Node;
-import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
+import javafx.scene.image.Image;
 import javafx.scene.input.MouseEvent;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,7 +43,7 @@ public class PosGraphController
             axisPosY;
 
     @FXML
-    private LineChart<Double, Double> posGraph;
+    private PosGraphChart posGraph;
 
     private MainUIModel backend;
     private SharedGeneratorVars vars;
@@ -43,6 +53,33 @@ public class PosGraphController
     private XYChart.Series<Double, Double> sourceSeries;
     private XYChart.Series<Double, Double> flSeries, frSeries, blSeries, brSeries;
 
+    // The series above by wheel number, see SegmentBlock.
+    private List<XYChart.Series<Double, Double>> wheelSeries;
+
+    // Used instead of the series when the canvas renderer is selected.
+    private PathCanvas canvas;
+
+    // The waypoint being dragged and where to. Mouse events only record the
+    //  position, dragTimer applies it once per frame.
+    private int dragIndex = -1;
+    private double dragX, dragY;
+    private boolean dragMoved = false;
+
+    private final AnimationTimer dragTimer = new AnimationTimer()
+    {
+        @Override
+        public void handle( long now )
+        {
+            applyDrag();
+        }
+    };
+
+    // Number of points the path series were last downsampled to.
+    private int shownPoints = Integer.MAX_VALUE;
+
+    // True while the graph shows the blocks of a path that is still being generated.
+    private boolean streaming = false;
+
     private SettingsModel settings;
 
 
@@ -56,7 +93,34 @@ public class PosGraphController
         settings = SettingsModel.getInstance();
         vars = settings.getSharedGeneratorVars();
 
-        setBGImg();
+        // The series stay in the chart, only their data changes.
+        sourceSeries = new XYChart.Series<>();
+        flSeries = new XYChart.Series<>();
+        frSeries = new XYChart.Series<>();
+        blSeries = new XYChart.Series<>();
+        brSeries = new XYChart.Series<>();
+        waypointSeries = new XYChart.Series<>();
+        wheelSeries = List.of( flSeries, frSeries, blSeries, brSeries );
+
+        posGraph.getData().addAll( List.of( sourceSeries, flSeries, frSeries, blSeries, brSeries, waypointSeries ) );
+
+        sourceSeries.getNode().setStyle( "-fx-stroke: orange" );
+        flSeries.getNode().setStyle( "-fx-stroke: red" );
+        frSeries.getNode().setStyle( "-fx-stroke: red" );
+        blSeries.getNode().setStyle( "-fx-stroke: blue" );
+        brSeries.getNode().setStyle( "-fx-stroke: blue" );
+        waypointSeries.getNode().setStyle( "-fx-stroke: transparent" );
+
+        setRenderer( settings.getPosGraphRenderer() );
+        refresh();
+
+        settings.posGraphRendererProperty().addListener( (o, oldValue, newValue) ->
+        {
+            setRenderer( newValue );
+
+            // Display series.
+            refresh();
+        });
 
         settings.graphBGImagePathProperty().addListener( (o, oldValue, newValue) ->
         {
@@ -66,41 +130,80 @@ public class PosGraphController
         // Watch this to know when a new path has been generated
         backend.pathProperty().addListener( ( o, oldValue, newValue ) ->
         {
-            // Build path series'
-            buildPathSeries( newValue );
+            // Leave the waypoints alone, one may be halfway through a drag.
+            showPath( newValue );
+        });
 
-            // Display series'.
-            refresh();
+        // Draw a path that is being generated a block at a time.
+        backend.streamedBlockProperty().addListener( ( o, oldValue, newValue ) ->
+        {
+            if( null != newValue )
+                addBlock( newValue );
+            else if( streaming )
+                showPath( backend.getPath() );  // It failed, show the old path again.
         });
 
+        updateAxis( vars.getUnit() );
+
         vars.unitProperty().addListener( ( o, oldValue, newValue ) ->
         {
             // Update axis to reflect the new unit
             updateAxis( newValue );
         });
 
-        backend.waypointListProperty().addListener( ( o, oldValue, newValue ) ->
+        backend.waypointListProperty().addListener( ( ListChangeListener<Waypoint> ) c ->
         {
-            buildWaypointSeries( newValue );
-
-            // Display series.
-            refresh();
+            if( null != canvas )
+                refreshCanvas();
+            else
+                updateWaypointSeries( c );
         });
 
         settings.sourcePathDisplayTypeProperty().addListener( (o, oldValue, newValue) ->
         {
-            buildWaypointSeries( backend.getWaypointList() );
-            buildPathSeries( backend.getPath() );
-
             // Display series.
             refresh();
         });
 
+        // The path series are sized to the chart, pick the points again when it is resized.
+        // The canvas downsamples every time it draws.
+        posGraph.widthProperty().addListener( (o, oldValue, newValue) ->
+        {
+            if( null == canvas && Downsampler.pointsForWidth( newValue.doubleValue() ) != shownPoints )
+                updatePathSeries( backend.getPath() );
+        });
+
         posGraph.lookup(".chart-vertical-grid-lines").setStyle( "-fx-stroke: rgba( 150, 153, 158, 0.5 );" );
         posGraph.lookup(".chart-horizontal-grid-lines").setStyle( "-fx-stroke: rgba( 150, 153, 158, 0.5 );" );
 
     }
 
+    /**
+     * Switches between drawing the graph with chart nodes and drawing it on a canvas.
+     */
+    private void setRenderer( PosGraphRenderer renderer )
+    {
+        if( renderer == PosGraphRenderer.CANVAS )
+        {
+            canvas = new PathCanvas( axisPosX, axisPosY );
+            setOnCanvasEvents( canvas );
+        }
+        else
+        {
+            canvas = null;
+        }
+
+        dragTimer.stop();
+        dragIndex = -1;
+        posGraph.setCanvas( canvas );
+
+        // The canvas draws its own grid over the field image.
+        posGraph.setVerticalGridLinesVisible( canvas == null );
+        posGraph.setHorizontalGridLinesVisible( canvas == null );
+
+        setBGImg();
+    }
+
     /**
      * Displays the given image behind the graph.
      */
@@ -136,6 +239,13 @@ public class PosGraphController
             path = imgFile.toURI().toString();
         }
 
+        if( canvas != null )
+        {
+            posGraph.lookup(".chart-plot-background").setStyle( "" );
+            canvas.setBackground( new Image( path, true ) );
+            return;
+        }
+
         // Set background image via css styles
         posGraph.lookup(".chart-plot-background").setStyle( "-fx-background-image: url(" + path + ");" +
                                                                     "-fx-background-size: stretch;" +
@@ -143,198 +253,314 @@ public class PosGraphController
                                                                     "-fx-background-repeat: no-repeat;" );
     }
 
+    /**
+     * The axes run in meters whatever the unit, so the series, the canvas and the
+     * waypoints never change with it. Only the bounds and the labels do.
+     */
     private void updateAxis( Units unit )
     {
         switch( unit )
         {
             case FEET:
-                axisPosX.setUpperBound(54);
-                axisPosX.setTickUnit(1);
-                axisPosX.setLabel("X-Position (ft)");
+                axisPosX.setUpperBound( unit.toMeters( 54 ) );
+                axisPosX.setTickUnit( unit.toMeters( 1 ) );
 
-                axisPosY.setUpperBound(27);
-                axisPosY.setTickUnit(1);
-                axisPosY.setLabel("Y-Position (ft)");
+                axisPosY.setUpperBound( unit.toMeters( 27 ) );
+                axisPosY.setTickUnit( unit.toMeters( 1 ) );
                 break;
 
             case METERS:
-                axisPosX.setUpperBound(16.5);
-                axisPosX.setTickUnit(0.5);
-                axisPosX.setLabel("X-Position (m)");
+                axisPosX.setUpperBound( 16.5 );
+                axisPosX.setTickUnit( 0.5 );
 
-                axisPosY.setUpperBound(8.23);
-                axisPosY.setTickUnit(0.5);
-                axisPosY.setLabel("Y-Position (m)");
+                axisPosY.setUpperBound( 8.23 );
+                axisPosY.setTickUnit( 0.5 );
                 break;
 
             case INCHES:
-                axisPosX.setUpperBound(648);
-                axisPosX.setTickUnit(12);
-                axisPosX.setLabel("X-Position (in)");
+                axisPosX.setUpperBound( unit.toMeters( 648 ) );
+                axisPosX.setTickUnit( unit.toMeters( 12 ) );
 
-                axisPosY.setUpperBound(324);
-                axisPosY.setTickUnit(12);
-                axisPosY.setLabel("Y-Position (in)");
+                axisPosY.setUpperBound( unit.toMeters( 324 ) );
+                axisPosY.setTickUnit( unit.toMeters( 12 ) );
                 break;
         }
+
+        axisPosX.setLabel( "X-Position (" + unit.getAbbreviation() + ")" );
+        axisPosY.setLabel( "Y-Position (" + unit.getAbbreviation() + ")" );
+
+        // A new formatter makes the axes label their ticks again, even when the bounds didn't change.
+        axisPosX.setTickLabelFormatter( new UnitTickFormatter( unit ) );
+        axisPosY.setTickLabelFormatter( new UnitTickFormatter( unit ) );
     }
 
     /**
-     * Populates the graph with the newest path data.
+     * Populates the graph with the newest path and waypoints.
      */
     private void refresh()
     {
-        // Clear data from position graph
-        posGraph.getData().clear();
-
-        if( null != sourceSeries )
+        if( null != canvas )
         {
-            posGraph.getData().add( sourceSeries );
-            setSeriesVisuals( sourceSeries, "orange" );
-        }
+            // The series stay empty while the canvas draws.
+            for( XYChart.Series<Double, Double> series : posGraph.getData() )
+            {
+                GraphSeries.clear( series );
+            }
 
-        if( null != flSeries )
-        {
-            posGraph.getData().add( flSeries );
-            setSeriesVisuals( flSeries, "red" );
+            refreshCanvas();
+            return;
         }
 
-        if( null != frSeries )
-        {
-            posGraph.getData().add( frSeries );
-            setSeriesVisuals( frSeries, "red" );
-        }
+        updatePathSeries( backend.getPath() );
+        updateWaypointSeries( null );
+    }
 
-        if( null != blSeries )
-        {
-            posGraph.getData().add( blSeries );
-            setSeriesVisuals( blSeries, "blue" );
-        }
+    private void refreshCanvas()
+    {
+        List<Waypoint> waypoints = backend.getWaypointList();
 
-        if( null != brSeries )
-        {
-            posGraph.getData().add( brSeries );
-            setSeriesVisuals( brSeries, "blue" );
-        }
+        if( SourcePathDisplayType.NONE == settings.getSourcePathDisplayType() )
+            waypoints = null;
+
+        canvas.setWaypoints( waypoints );
+        setCanvasPath( backend.getPath() );
+    }
+
+    private void showPath( Path path )
+    {
+        if( null != canvas )
+            setCanvasPath( path );
+        else
+            updatePathSeries( path );
+    }
+
+    private void setCanvasPath( Path path )
+    {
+        GraphRefreshEvent event = new GraphRefreshEvent();
+        event.begin();
+        long start = Metrics.GRAPH_REFRESH.start();
+
+        streaming = false;
+
+        canvas.setPath( path, SourcePathDisplayType.WP_PLUS_PATH == settings.getSourcePathDisplayType() );
+        canvas.redraw();
+
+        Metrics.GRAPH_REFRESH.stop( start, null == path ? 0 : path.getLength(), 0 );
+        commitRefresh( event, PosGraphRenderer.CANVAS, path );
+    }
+
+    private void updatePathSeries( Path path )
+    {
+        GraphRefreshEvent event = new GraphRefreshEvent();
+        event.begin();
+        long start = Metrics.GRAPH_REFRESH.start();
+
+        shownPoints = Downsampler.pointsForWidth( posGraph.getWidth() );
+        streaming = false;
+
+        boolean showSource = ( null != path ) && ( SourcePathDisplayType.WP_PLUS_PATH == settings.getSourcePathDisplayType() );
+
+        setSegmentsSeries( sourceSeries, showSource ? path.getCenter() : null );
+        setSegmentsSeries( flSeries, null == path ? null : path.getFrontLeft() );
+        setSegmentsSeries( frSeries, null == path ? null : path.getFrontRight() );
+        setSegmentsSeries( blSeries, null == path ? null : path.getBackLeft() );
+        setSegmentsSeries( brSeries, null == path ? null : path.getBackRight() );
+
+        Metrics.GRAPH_REFRESH.stop( start, null == path ? 0 : path.getLength(), 0 );
+        commitRefresh( event, PosGraphRenderer.CHART, path );
+    }
 
-        if( null != waypointSeries )
+    /**
+     * Adds a block of the path that is being generated to what is shown. The
+     * first block of a path takes the old path off the graph.
+     */
+    private void addBlock( SegmentBlock block )
+    {
+        boolean showSource = SourcePathDisplayType.WP_PLUS_PATH == settings.getSourcePathDisplayType();
+
+        if( block.getStart() == 0 && block.getWheel() == 0 )
         {
-            posGraph.getData().add( waypointSeries );
+            streaming = true;
 
-            int counter = 0;
-            for( XYChart.Data<Double, Double> data : waypointSeries.getData() )
+            if( null != canvas )
+            {
+                canvas.setPath( null, showSource );
+                canvas.redraw();
+            }
+            else
             {
-                // Add event handlers to each Point
-                data.getNode().setId( String.valueOf( counter ) );
-                setOnPointEvent( data );
+                shownPoints = Downsampler.pointsForWidth( posGraph.getWidth() );
 
-                // Set Point color
-                data.getNode().setStyle( "-fx-background-color: orange, white" );
+                GraphSeries.clear( sourceSeries );
 
-                // Increment counter
-                counter += 1;
+                for( XYChart.Series<Double, Double> series : wheelSeries )
+                {
+                    GraphSeries.clear( series );
+                }
             }
+        }
 
-            waypointSeries.getNode().setStyle("-fx-stroke: transparent");
+        // The graph was refreshed since this path started, it shows the whole old path again.
+        if( !streaming )
+            return;
+
+        if( null != canvas )
+        {
+            canvas.addBlock( block );
+            return;
         }
+
+        // The center is the same in the blocks of every wheel, add it once.
+        if( showSource && block.getWheel() == 0 )
+            addSegments( sourceSeries, block.getCenter(), block.getPathLength() );
+
+        addSegments( wheelSeries.get( block.getWheel() ), block.getSegments(), block.getPathLength() );
     }
 
-    private void setSeriesVisuals( XYChart.Series<Double, Double> series, String color )
+    /**
+     * Adds part of a trajectory to the end of a series, downsampled to its share of the points.
+     * @param length Length of the whole trajectory.
+     */
+    private void addSegments( XYChart.Series<Double, Double> series, Path.Columns segments, int length )
     {
-        // Set line color
-        series.getNode().setStyle("-fx-stroke: " + color );
+        double[] x = segments.getX();
+        double[] y = segments.getY();
+        int points = Downsampler.pointsForPart( shownPoints, segments.length(), length );
 
-        // We only want to display the line connecting the points
-        //  not the points themselves.
-        for(  XYChart.Data<Double, Double> data : series.getData() )
+        int added = GraphSeries.append( series, x, y, Downsampler.lttb( x, y, segments.length(), points ) );
+
+        // Only the line connecting the points, not the points themselves.
+        for( int i = added; i < series.getData().size(); i++ )
         {
-            data.getNode().setVisible(false);
+            series.getData().get( i ).getNode().setVisible( false );
         }
     }
 
-    private void buildPathSeries( Path path )
+    private static void commitRefresh( GraphRefreshEvent event, PosGraphRenderer renderer, Path path )
     {
-        sourceSeries = null;
-        flSeries = null;
-        frSeries = null;
-        blSeries = null;
-        brSeries = null;
+        event.graph = "Position";
+        event.renderer = renderer.name();
+        event.segments = null == path ? 0 : path.getLength();
+        event.commit();
+    }
 
-        if( null == path )
+    /**
+     * Shows the given trajectory in a series, downsampled to the width of the chart.
+     * @param series The series to update.
+     * @param segments Trajectory to show, null to empty the series.
+     */
+    private void setSegmentsSeries( XYChart.Series<Double, Double> series, Path.Columns segments )
+    {
+        if( ( null == segments         )
+         || ( 0 == segments.length()   ) )
+        {
+            GraphSeries.clear( series );
             return;
+        }
+
+        SeriesBuildEvent event = new SeriesBuildEvent();
+        event.begin();
 
-        flSeries = buildSegmentsSeries( path.getFrontLeft() );
-        frSeries = buildSegmentsSeries( path.getFrontRight() );
-        blSeries = buildSegmentsSeries( path.getBackLeft() );
-        brSeries = buildSegmentsSeries( path.getBackRight() );
+        double[] x = segments.getX();
+        double[] y = segments.getY();
+        int[] points = Downsampler.lttb( x, y, segments.length(), shownPoints );
 
-        if( SourcePathDisplayType.WP_PLUS_PATH == settings.getSourcePathDisplayType() )
-            sourceSeries = buildSegmentsSeries( path.getCenter() );
+        int added = GraphSeries.update( series, x, y, points );
 
+        // We only want to display the line connecting the points
+        //  not the points themselves. Reused points are hidden already.
+        for( int i = added; i < series.getData().size(); i++ )
+        {
+            series.getData().get( i ).getNode().setVisible( false );
+        }
+
+        event.series = series.getName();
+        event.segments = segments.length();
+        event.points = points.length;
+        event.commit();
     }
 
     /**
-     * Builds a series from the given trajectory that is ready to display on a LineChart.
-     * @param segments Collection of Segments to build a series for.
-     * @return The created series to display.
+     * Brings the waypoint series in line with the waypoints. Only the points
+     * that changed are touched, so the other nodes keep their handlers and styles.
+     * @param c The change to the waypoints, null to compare every waypoint.
      */
-    private static XYChart.Series<Double, Double> buildSegmentsSeries( Path.Segment[] segments )
+    private void updateWaypointSeries( ListChangeListener.Change<? extends Waypoint> c )
     {
-        if( ( null == segments     )
-         || ( 0 == segments.length ) )
+        List<Waypoint> waypoints = backend.getWaypointList();
+        ObservableList<XYChart.Data<Double, Double>> data = waypointSeries.getData();
+
+        if( SourcePathDisplayType.NONE == settings.getSourcePathDisplayType() )
         {
-            return null;
+            GraphSeries.clear( waypointSeries );
+            return;
         }
 
-        XYChart.Series<Double, Double> series = new XYChart.Series<>();
-
-        for( Path.Segment segment : segments )
+        if( null == c )
         {
-            // Holds x, y data for a single entry in the series.
-            XYChart.Data<Double, Double> data = new XYChart.Data<>();
+            if( data.size() > waypoints.size() )
+                data.remove( waypoints.size(), data.size() );
 
-            // Set the x, y data.
-            data.setXValue( segment.x );
-            data.setYValue( segment.y );
+            for( int i = 0; i < data.size(); i++ )
+            {
+                GraphSeries.set( data.get( i ), waypoints.get( i ).getX(), waypoints.get( i ).getY() );
+            }
 
-            // Add the data to the series.
-            series.getData().add( data );
+            addWaypointData( data.size(), waypoints.subList( data.size(), waypoints.size() ) );
+            return;
         }
 
-        return series;
+        while( c.next() )
+        {
+            if( c.wasPermutated() || c.wasUpdated() )
+            {
+                for( int i = c.getFrom(); i < c.getTo(); i++ )
+                {
+                    GraphSeries.set( data.get( i ), waypoints.get( i ).getX(), waypoints.get( i ).getY() );
+                }
+            }
+            else if( c.wasReplaced() && c.getRemovedSize() == c.getAddedSize() )
+            {
+                // Waypoints swapped for new ones, such as a moved waypoint. Keep the nodes.
+                for( int i = c.getFrom(); i < c.getTo(); i++ )
+                {
+                    GraphSeries.set( data.get( i ), waypoints.get( i ).getX(), waypoints.get( i ).getY() );
+                }
+            }
+            else
+            {
+                if( c.wasRemoved() )
+                    data.remove( c.getFrom(), c.getFrom() + c.getRemovedSize() );
+
+                if( c.wasAdded() )
+                    addWaypointData( c.getFrom(), c.getAddedSubList() );
+            }
+        }
     }
 
-    /**
-     * Builds a series from the given Waypoints array that is ready to be displayed on a LineChart.
-     * @param waypoints Array of waypoints to build a series for.
-     */
-    private void buildWaypointSeries( List<Waypoint> waypoints )
+    private void addWaypointData( int index, List<? extends Waypoint> waypoints )
     {
-        if( ( null == waypoints                                                 )
-         || ( 0 == waypoints.size()                                             )
-         || ( SourcePathDisplayType.NONE == settings.getSourcePathDisplayType() ) )
-        {
-            waypointSeries = null;
+        if( waypoints.isEmpty() )
             return;
-        }
 
-        waypointSeries = new XYChart.Series<>();
+        List<XYChart.Data<Double, Double>> added = new ArrayList<>( waypoints.size() );
 
         for( Waypoint w : waypoints )
         {
-            // Holds x, y data for a single entry in the series.
-            XYChart.Data<Double, Double> data = new XYChart.Data<>();
+            added.add( new XYChart.Data<>( w.getX(), w.getY() ) );
+        }
 
-            // Set the x, y data.
-            data.setXValue( w.getX() );
-            data.setYValue( w.getY() );
+        waypointSeries.getData().addAll( index, added );
 
-            // Add the data to the series.
-            waypointSeries.getData().add( data );
+        // The chart creates the nodes when the data is added.
+        for( XYChart.Data<Double, Double> data : added )
+        {
+            data.getNode().setStyle( "-fx-background-color: orange, white" );
+            setOnPointEvent( data );
         }
     }
 
-    private void setOnPointEvent( XYChart.Data data )
+    private void setOnPointEvent( XYChart.Data<Double, Double> data )
     {
         Node node = data.getNode();
 
@@ -343,59 +569,152 @@ public class PosGraphController
             node.setCursor( Cursor.HAND );
         });
 
-        node.setOnMouseDragged( event ->
+        node.setOnMousePressed( event ->
         {
-            // get pixel location
-            Point2D mouseSceneCoords = new Point2D( event.getSceneX(), event.getSceneY() );
-            double xLocal = axisPosX.sceneToLocal( mouseSceneCoords ).getX();
-            double yLocal = axisPosY.sceneToLocal( mouseSceneCoords ).getY();
+            // Points before this one may have been added or removed since the handler was set.
+            startDrag( waypointSeries.getData().indexOf( data ), data.getXValue(), data.getYValue() );
+        });
 
-            // get location in units (ft, m, in)
-            double raw_x = axisPosX.getValueForDisplay( xLocal ).doubleValue();
-            double raw_y = axisPosY.getValueForDisplay( yLocal ).doubleValue();
+        node.setOnMouseDragged( this::dragTo );
 
-            // round location
-            double rnd_x;
-            double rnd_y;
+        node.setOnMouseReleased( event -> endDrag() );
+    }
 
-            // Snap to grid
-            if( vars.getUnit() == Units.FEET )
-            {
-                rnd_x = Mathf.round( raw_x, 0.5 );
-                rnd_y = Mathf.round( raw_y, 0.5 );
-            }
-            else if( vars.getUnit() == Units.METERS )
-            {
-                rnd_x = Mathf.round( raw_x, 0.25 );
-                rnd_y = Mathf.round( raw_y, 0.25 );
-            }
-            else // Inches
-            {
-                rnd_x = Mathf.round( raw_x, 6.0 );
-                rnd_y = Mathf.round( raw_y, 6.0 );
-            }
+    /**
+     * Waypoint dragging for the canvas renderer. The waypoint under the mouse
+     * is found by distance instead of by a node per waypoint.
+     */
+    private void setOnCanvasEvents( PathCanvas canvas )
+    {
+        canvas.setOnMouseMoved( event ->
+            canvas.setCursor( canvas.waypointAt( event.getX(), event.getY() ) >= 0 ? Cursor.HAND : Cursor.DEFAULT )
+        );
 
-            if( rnd_x >= axisPosX.getLowerBound() && rnd_x <= axisPosX.getUpperBound() )
-            {
+        canvas.setOnMousePressed( event ->
+        {
+            int index = canvas.waypointAt( event.getX(), event.getY() );
 
-                data.setXValue( rnd_x );
+            if( index >= 0 )
+                startDrag( index, canvas.getWaypointX( index ), canvas.getWaypointY( index ) );
+        });
 
-            }
+        canvas.setOnMouseDragged( this::dragTo );
 
-            if( rnd_y >= axisPosY.getLowerBound() && rnd_y <= axisPosY.getUpperBound() )
-            {
-                data.setYValue( rnd_y );
-            }
-        });
+        canvas.setOnMouseReleased( event -> endDrag() );
+    }
+
+    private void startDrag( int index, double x, double y )
+    {
+        if( index < 0 )
+            return;
+
+        dragIndex = index;
+        dragX = x;
+        dragY = y;
+        dragMoved = false;
+
+        dragTimer.start();
+    }
+
+    private void dragTo( MouseEvent event )
+    {
+        if( dragIndex < 0 )
+            return;
+
+        Point2D pos = getDragPosition( event );
+        double x = dragX;
+        double y = dragY;
+
+        if( pos.getX() >= axisPosX.getLowerBound() && pos.getX() <= axisPosX.getUpperBound() )
+            x = pos.getX();
+
+        if( pos.getY() >= axisPosY.getLowerBound() && pos.getY() <= axisPosY.getUpperBound() )
+            y = pos.getY();
 
-        node.setOnMouseReleased( event ->
+        // Most mouse events land on the same grid point.
+        if( x != dragX || y != dragY )
         {
-            int index = Integer.parseInt( node.getId() );
+            dragX = x;
+            dragY = y;
+            dragMoved = true;
+        }
+    }
 
-            Waypoint tmp = backend.getWaypoint( index  );
-            tmp.setX( (Double) data.getXValue() );
-            tmp.setY( (Double) data.getYValue() );
-        });
+    /**
+     * Shows the newest drag position along with a preview of the path.
+     * Runs once per frame no matter how many mouse events came in.
+     */
+    private void applyDrag()
+    {
+        if( !dragMoved || dragIndex < 0 )
+            return;
+
+        dragMoved = false;
+
+        if( null != canvas )
+            canvas.moveWaypoint( dragIndex, dragX, dragY );
+        else
+            GraphSeries.set( waypointSeries.getData().get( dragIndex ), dragX, dragY );
+
+        backend.previewWaypointMove( dragIndex, dragX, dragY );
+    }
+
+    private void endDrag()
+    {
+        if( dragIndex < 0 )
+            return;
+
+        dragTimer.stop();
+
+        int index = dragIndex;
+        dragIndex = -1;
+
+        // The full quality path replaces the preview.
+        backend.moveWaypoint( index, dragX, dragY );
+    }
+
+    /**
+     * Returns where the mouse is in meters, snapped to the grid of the selected unit.
+     */
+    private Point2D getDragPosition( MouseEvent event )
+    {
+        // get pixel location
+        Point2D mouseSceneCoords = new Point2D( event.getSceneX(), event.getSceneY() );
+        double xLocal = axisPosX.sceneToLocal( mouseSceneCoords ).getX();
+        double yLocal = axisPosY.sceneToLocal( mouseSceneCoords ).getY();
+
+        // get location in meters
+        double raw_x = axisPosX.getValueForDisplay( xLocal ).doubleValue();
+        double raw_y = axisPosY.getValueForDisplay( yLocal ).doubleValue();
+
+        return new Point2D( snap( raw_x ), snap( raw_y ) );
+    }
+
+    private double snap( double meters )
+    {
+        Units unit = vars.getUnit();
+        double grid;
+
+        switch( unit )
+        {
+            case FEET:
+                grid = 0.5;
+                break;
+
+            case METERS:
+                grid = 0.25;
+                break;
+
+            case INCHES:
+                grid = 6.0;
+                break;
+
+            default:
+                throw new RuntimeException( "The programmer forgot to add a case for the following unit: " + unit );
+        }
+
+        // Round in the unit the grid is drawn in.
+        return unit.toMeters( Mathf.round( unit.fromMeters( meters ), grid ) );
     }
 
     @FXML
@@ -406,39 +725,9 @@ public class PosGraphController
             // Only add a point if mouse has not moved since clicking. This filters out the mouse event from dragging a point.
             if ( event.isStillSincePress() )
             {
-                // get pixel location
-                Point2D mouseSceneCoords = new Point2D( event.getSceneX(), event.getSceneY() );
-                double xLocal = axisPosX.sceneToLocal( mouseSceneCoords ).getX();
-                double yLocal = axisPosY.sceneToLocal( mouseSceneCoords ).getY();
-
-                // get location in units (ft, m, in)
-                double raw_x = axisPosX.getValueForDisplay( xLocal ).doubleValue();
-                double raw_y = axisPosY.getValueForDisplay( yLocal ).doubleValue();
-
-                // round location
-                double rnd_x;
-                double rnd_y;
-
-                if( vars.getUnit() == Units.FEET )
-                {
-                    rnd_x = Mathf.round( raw_x, 0.5 );
-                    rnd_y = Mathf.round( raw_y, 0.5 );
-                }
-                else if( vars.getUnit() == Units.METERS )
-                {
-                    rnd_x = Mathf.round( raw_x, 0.25 );
-                    rnd_y = Mathf.round( raw_y, 0.25 );
-                }
-                else if( vars.getUnit() == Units.INCHES )
-                {
-                    rnd_x = Mathf.round( raw_x, 6.0 );
-                    rnd_y = Mathf.round( raw_y, 6.0 );
-                }
-                else
-                {
-                    rnd_x = Mathf.round( raw_x, 2 );
-                    rnd_y = Mathf.round( raw_y, 2 );
-                }
+                Point2D pos = getDragPosition( event );
+                double rnd_x = pos.getX();
+                double rnd_y = pos.getY();
 
                 if( ( rnd_x >= axisPosX.getLowerBound() && rnd_x <= axisPosX.getUpperBound() )
                  && ( rnd_y >= axisPosY.getLowerBound() && rnd_y <= axisPosY.getUpperBound() ) )
@@ -448,7 +737,8 @@ public class PosGraphController
                     if ( OSValidator.isMac() )
                     {
                         Optional<Waypoint> result;
-                        result = DialogFactory.createWaypointDialog( String.valueOf( rnd_x ), String.valueOf( rnd_y ) ).showAndWait();
+                        result = DialogFactory.createWaypointDialog( String.valueOf( vars.getUnit().fromMeters( rnd_x ) ),
+                                                                     String.valueOf( vars.getUnit().fromMeters( rnd_y ) ) ).showAndWait();
                         result.ifPresent( ( Waypoint w ) -> backend.addPoint( w ) );
                     }
                     else
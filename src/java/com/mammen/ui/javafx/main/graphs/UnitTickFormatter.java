@@ -0,0 +1,35 @@
+package com.mammen.ui.javafx.main.graphs;
+
+import com.mammen.generator.generator_vars.Units;
+import javafx.util.StringConverter;
+
+import java.text.DecimalFormat;
+
+/******************************************************************************
+ *   UnitTickFormatter
+ *       Labels the ticks of an axis that runs in meters with the values in
+ *       another unit, so a unit change only relabels the axis and the data
+ *       on the chart stays as it is.
+ ******************************************************************************/
+class UnitTickFormatter extends StringConverter<Number>
+{
+    private final Units unit;
+    private final DecimalFormat format = new DecimalFormat( "0.##" );
+
+    UnitTickFormatter( Units unit )
+    {
+        this.unit = unit;
+    }
+
+    @Override
+    public String toString( Number meters )
+    {
+        return format.format( unit.fromMeters( meters.doubleValue() ) );
+    }
+
+    @Override
+    public Number fromString( String value )
+    {
+        return unit.toMeters( Double.parseDouble( value ) );
+    }
+}
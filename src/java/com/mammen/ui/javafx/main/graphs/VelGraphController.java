@@ -1,15 +1,22 @@
 package com.mammen.ui.javafx.main.graphs;
 
+import com.mammen.generator.SegmentBlock;
 import com.mammen.generator.generator_vars.SharedGeneratorVars;
 import com.mammen.generator.generator_vars.DriveBase;
 import com.mammen.main.MainUIModel;
+import com.mammen.metrics.GraphRefreshEvent;
+import com.mammen.metrics.Metrics;
+import com.mammen.metrics.SeriesBuildEvent;
 import com.mammen.path.Path;
 import com.mammen.generator.generator_vars.Units;
+import com.mammen.util.Downsampler;
 import javafx.fxml.FXML;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 
+import java.util.List;
+
 public class VelGraphController
 {
     @FXML
@@ -21,6 +28,18 @@ public class VelGraphController
     private MainUIModel backend;
     private SharedGeneratorVars sharedVars;
 
+    // The series stay alive between paths, only their data changes.
+    private XYChart.Series<Double, Double> flSeries, frSeries, blSeries, brSeries;
+
+    // The series above by wheel number, see SegmentBlock.
+    private List<XYChart.Series<Double, Double>> wheelSeries;
+
+    // Number of points the series were last downsampled to.
+    private int shownPoints = Integer.MAX_VALUE;
+
+    // True while the series show the blocks of a path that is still being generated.
+    private boolean streaming = false;
+
 
     /**************************************************************************
      *  initialize
@@ -31,6 +50,14 @@ public class VelGraphController
         backend = MainUIModel.getInstance();
         sharedVars = SharedGeneratorVars.getInstance();
 
+        flSeries = new XYChart.Series<>();
+        frSeries = new XYChart.Series<>();
+        blSeries = new XYChart.Series<>();
+        brSeries = new XYChart.Series<>();
+        wheelSeries = List.of( flSeries, frSeries, blSeries, brSeries );
+
+        velGraph.getData().addAll( List.of( flSeries, frSeries ) );
+
         // Watch this to know when a new path has been generated
         backend.pathProperty().addListener( ( o, oldValue, newValue ) ->
         {
@@ -38,30 +65,36 @@ public class VelGraphController
             refresh();
         });
 
-        // Update axis to reflect the new unit
+        // Draw a path that is being generated a block at a time.
+        backend.streamedBlockProperty().addListener( ( o, oldValue, newValue ) ->
+        {
+            if( null != newValue )
+                addBlock( newValue );
+            else if( streaming )
+                refresh();  // It failed, show the old path again.
+        });
+
+        updateAxis( sharedVars.getUnit() );
+
+        // Update axis to reflect the new unit. The path is in meters, only what is shown changes.
         sharedVars.unitProperty().addListener( ( o, oldValue, newValue ) ->
         {
             updateAxis( newValue );
+            refresh();
+        });
+
+        // The series are sized to the chart, pick the points again when it is resized.
+        velGraph.widthProperty().addListener( ( o, oldValue, newValue ) ->
+        {
+            if( Downsampler.pointsForWidth( newValue.doubleValue() ) != shownPoints )
+                refresh();
         });
     }
 
 
     private void updateAxis( Units units )
     {
-        switch( units )
-        {
-            case FEET:
-                axisVel.setLabel("Velocity (ft/s)");
-                break;
-
-            case METERS:
-                axisVel.setLabel("Velocity (m/s)");
-                break;
-
-            case INCHES:
-                axisVel.setLabel("Velocity (in/s)");
-                break;
-        }
+        axisVel.setLabel( "Velocity (" + units.getAbbreviation() + "/s)" );
     }
 
 
@@ -70,66 +103,136 @@ public class VelGraphController
      */
     private void refresh()
     {
-        XYChart.Series<Double, Double> flSeries, frSeries, blSeries, brSeries;
+        GraphRefreshEvent event = new GraphRefreshEvent();
+        event.begin();
+        long start = Metrics.GRAPH_REFRESH.start();
+        Path path = backend.getNumWaypoints() > 1 ? backend.getPath() : null;
+        boolean swerve = sharedVars.getDriveBase() == DriveBase.SWERVE;
 
-        // Clear data from velocity graph
-        velGraph.getData().clear();
+        shownPoints = Downsampler.pointsForWidth( velGraph.getWidth() );
+        streaming = false;
 
-        if( backend.getNumWaypoints() > 1 )
-        {
-            flSeries = buildSeries( backend.getPath().getFrontLeft() );
-            frSeries = buildSeries( backend.getPath().getFrontRight() );
+        setSeries( flSeries, null == path ? null : path.getFrontLeft() );
+        setSeries( frSeries, null == path ? null : path.getFrontRight() );
+        setSeries( blSeries, null == path || !swerve ? null : path.getBackLeft() );
+        setSeries( brSeries, null == path || !swerve ? null : path.getBackRight() );
 
-            velGraph.getData().addAll( flSeries, frSeries );
+        showWheels( swerve );
 
-            if( sharedVars.getDriveBase() == DriveBase.SWERVE )
-            {
-                blSeries = buildSeries( backend.getPath().getBackLeft() );
-                brSeries = buildSeries( backend.getPath().getBackRight() );
+        Metrics.GRAPH_REFRESH.stop( start, null == path ? 0 : path.getLength(), 0 );
+
+        event.graph = "Velocity";
+        event.renderer = "CHART";
+        event.segments = null == path ? 0 : path.getLength();
+        event.commit();
+    }
 
-                velGraph.getData().addAll( blSeries, brSeries );
+    /**
+     * Adds a block of the path that is being generated to the end of the series
+     * of its wheel. The first block of a path empties every series.
+     */
+    private void addBlock( SegmentBlock block )
+    {
+        if( block.getStart() == 0 && block.getWheel() == 0 )
+        {
+            streaming = true;
+            shownPoints = Downsampler.pointsForWidth( velGraph.getWidth() );
 
-                flSeries.setName("Front Left Trajectory");
-                frSeries.setName("Front Right Trajectory");
-                blSeries.setName("Back Left Trajectory");
-                brSeries.setName("Back Right Trajectory");
-            }
-            else
+            for( XYChart.Series<Double, Double> series : wheelSeries )
             {
-                flSeries.setName("Left Trajectory");
-                frSeries.setName("Right Trajectory");
+                GraphSeries.clear( series );
             }
+
+            showWheels( block.getDriveBase() == DriveBase.SWERVE );
         }
+
+        // The series were refreshed since this path started, they show the whole old path again.
+        if( !streaming )
+            return;
+
+        XYChart.Series<Double, Double> series = wheelSeries.get( block.getWheel() );
+        Path.Columns segments = block.getSegments();
+
+        double[] dt = segments.getDt();
+        double[] velocity = new double[ segments.length() ];
+        double[] time = new double[ segments.length() ];
+
+        sharedVars.getUnit().fromMeters( segments.getVelocity(), velocity, segments.length() );
+
+        for( int i = 0; i < segments.length(); i++ )
+        {
+            time[ i ] = dt[ i ] * ( block.getStart() + i );
+        }
+
+        int points = Downsampler.pointsForPart( shownPoints, segments.length(), block.getPathLength() );
+
+        GraphSeries.append( series, time, velocity, Downsampler.lttb( time, velocity, segments.length(), points ) );
     }
 
     /**
-     * Builds a series from the given trajectory that is ready to display on a LineChart.
-     * @param segments Partial path to build a series for.
-     * @return The created series to display.
+     * Puts the series of the back wheels in the chart for a swerve drive and names the series.
      */
-    private static XYChart.Series<Double, Double> buildSeries( Path.Segment[] segments )
+    private void showWheels( boolean swerve )
     {
-        XYChart.Series<Double, Double> series = new XYChart.Series<>();
+        // The legend lists every series in the chart, the back wheels are only there on a swerve drive.
+        if( swerve && !velGraph.getData().contains( blSeries ) )
+        {
+            velGraph.getData().addAll( List.of( blSeries, brSeries ) );
+        }
+        else if( !swerve && velGraph.getData().contains( blSeries ) )
+        {
+            velGraph.getData().removeAll( List.of( blSeries, brSeries ) );
+        }
 
-        if( segments != null )
+        if( swerve )
         {
-            int i = 0;
-            for( Path.Segment seg : segments )
-            {
-                // Holds x, y data for a single entry in the series.
-                XYChart.Data<Double, Double> data = new XYChart.Data<>();
+            flSeries.setName("Front Left Trajectory");
+            frSeries.setName("Front Right Trajectory");
+            blSeries.setName("Back Left Trajectory");
+            brSeries.setName("Back Right Trajectory");
+        }
+        else
+        {
+            flSeries.setName("Left Trajectory");
+            frSeries.setName("Right Trajectory");
+        }
+    }
+
+    /**
+     * Shows the velocity of the given trajectory in a series, in the selected unit
+     * and downsampled to the width of the chart.
+     * @param series The series to update.
+     * @param segments Partial path to show, null to empty the series.
+     */
+    private void setSeries( XYChart.Series<Double, Double> series, Path.Columns segments )
+    {
+        if( segments == null )
+        {
+            GraphSeries.clear( series );
+            return;
+        }
 
-                // Set the x, y data.
-                data.setXValue( seg.dt * i );
-                data.setYValue( seg.velocity );
+        SeriesBuildEvent event = new SeriesBuildEvent();
+        event.begin();
 
-                // Add the data to the series.
-                series.getData().add( data );
+        double[] dt = segments.getDt();
+        double[] velocity = new double[ segments.length() ];
+        double[] time = new double[ segments.length() ];
 
-                i++;
-            }
+        sharedVars.getUnit().fromMeters( segments.getVelocity(), velocity, segments.length() );
+
+        for( int i = 0; i < segments.length(); i++ )
+        {
+            time[ i ] = dt[ i ] * i;
         }
 
-        return series;
+        int[] points = Downsampler.lttb( time, velocity, segments.length(), shownPoints );
+
+        GraphSeries.update( series, time, velocity, points );
+
+        event.series = series.getName();
+        event.segments = segments.length();
+        event.points = points.length;
+        event.commit();
     }
 }
@@ -0,0 +1,149 @@
+package com.mammen.util;
+
+/******************************************************************************
+ *   Downsampler
+ *       Picks the points of a line that matter on screen, using Largest
+ *       Triangle Three Buckets (Steinarsson, 2013). The points are split
+ *       into buckets and from each bucket the point that forms the largest
+ *       triangle with its neighbours is kept, so peaks and turns survive
+ *       while runs of nearly straight points are dropped.
+ *
+ *       The graphs ask for POINTS_PER_PIXEL points per pixel of chart width,
+ *       so a path draws the same number of points no matter its time step.
+ ******************************************************************************/
+public final class Downsampler
+{
+    /** Two points per pixel keeps both the top and the bottom of a steep pixel column. */
+    public static final int POINTS_PER_PIXEL = 2;
+
+    private Downsampler()
+    {
+    }
+
+
+    /**************************************************************************
+     * <p>The number of points to keep for a line drawn over the given width.</p>
+     *
+     * @param pixels Width of the chart in pixels.
+     * @return The number of points, Integer.MAX_VALUE to keep every point if
+     *      the chart hasn't been laid out yet.
+     *************************************************************************/
+    public static int pointsForWidth( double pixels )
+    {
+        if( pixels <= 0 )
+            return Integer.MAX_VALUE;
+
+        return Math.max( 3, (int) Math.ceil( pixels * POINTS_PER_PIXEL ) );
+    }
+
+
+    /**************************************************************************
+     * <p>The number of points to keep for a part of a line that is drawn a
+     *      part at a time, such as a path that is still being generated. The
+     *      parts together keep about as many points as the whole line would.</p>
+     *
+     * @param points The number of points for the whole line, see pointsForWidth().
+     * @param partLength Number of points in the part.
+     * @param totalLength Number of points in the whole line.
+     * @return The number of points, at least 3.
+     *************************************************************************/
+    public static int pointsForPart( int points, int partLength, int totalLength )
+    {
+        if( points == Integer.MAX_VALUE || totalLength <= 0 )
+            return Integer.MAX_VALUE;
+
+        return Math.max( 3, (int) Math.ceil( (double) points * partLength / totalLength ) );
+    }
+
+
+    /**************************************************************************
+     * <p>Picks at most threshold points of a line. The first and last point
+     *      are always kept.</p>
+     *
+     * @param x X values of the points.
+     * @param y Y values of the points.
+     * @param length Number of points, the arrays may be longer.
+     * @param threshold How many points to keep.
+     * @return Indices of the kept points, in order. All indices if the line
+     *      already has no more than threshold points.
+     *************************************************************************/
+    public static int[] lttb( double[] x, double[] y, int length, int threshold )
+    {
+        if( threshold >= length || threshold < 3 )
+        {
+            int[] all = new int[ length ];
+
+            for( int i = 0; i < length; i++ )
+            {
+                all[ i ] = i;
+            }
+
+            return all;
+        }
+
+        int[] kept = new int[ threshold ];
+        int count = 0;
+
+        // The first and last point are buckets of their own, the rest share threshold - 2 buckets.
+        double bucketSize = (double)( length - 2 ) / ( threshold - 2 );
+
+        int a = 0;
+        kept[ count++ ] = a;
+
+        for( int bucket = 0; bucket < threshold - 2; bucket++ )
+        {
+            // Average of the next bucket, the third corner of the triangle.
+            int nextStart = (int)( ( bucket + 1 ) * bucketSize ) + 1;
+            int nextEnd = Math.min( (int)( ( bucket + 2 ) * bucketSize ) + 1, length );
+
+            double avgX = 0, avgY = 0;
+
+            for( int i = nextStart; i < nextEnd; i++ )
+            {
+                avgX += x[ i ];
+                avgY += y[ i ];
+            }
+
+            int nextCount = nextEnd - nextStart;
+
+            if( nextCount > 0 )
+            {
+                avgX /= nextCount;
+                avgY /= nextCount;
+            }
+            else
+            {
+                avgX = x[ length - 1 ];
+                avgY = y[ length - 1 ];
+            }
+
+            // Point of this bucket with the largest triangle between a and the average.
+            int start = (int)( bucket * bucketSize ) + 1;
+            int end = (int)( ( bucket + 1 ) * bucketSize ) + 1;
+
+            double ax = x[ a ];
+            double ay = y[ a ];
+            double maxArea = -1;
+            int maxIndex = start;
+
+            for( int i = start; i < end; i++ )
+            {
+                // Twice the area, only the comparison matters.
+                double area = Math.abs( ( ax - avgX ) * ( y[ i ] - ay ) - ( ax - x[ i ] ) * ( avgY - ay ) );
+
+                if( area > maxArea )
+                {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            kept[ count++ ] = maxIndex;
+            a = maxIndex;
+        }
+
+        kept[ count++ ] = length - 1;
+
+        return kept;
+    }
+}
@@ -0,0 +1,85 @@
+package com.mammen.benchmark;
+
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.PfV1GeneratorVars;
+import com.mammen.generator.generator_vars.SharedGeneratorVars;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.path.Waypoint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/******************************************************************************
+ *   BenchmarkData
+ *       Inputs shared by the benchmarks. Everything is built from a fixed
+ *       seed and fixed vars, so every run measures the same paths.
+ ******************************************************************************/
+public final class BenchmarkData
+{
+    private static final long SEED = 0x4D50_4721L;
+
+    private BenchmarkData()
+    {
+    }
+
+
+    /**************************************************************************
+     * <p>Builds a path that weaves forward across the field, one waypoint
+     *      every 5 units with a random sideways offset and heading.</p>
+     *
+     * @param count Number of waypoints.
+     *************************************************************************/
+    public static List<Waypoint> waypoints( int count )
+    {
+        Random random = new Random( SEED );
+        List<Waypoint> waypoints = new ArrayList<>( count );
+
+        for( int i = 0; i < count; i++ )
+        {
+            double x = i * 5.0;
+            double y = 13.5 + ( random.nextDouble() - 0.5 ) * 8.0;
+            double angle = ( random.nextDouble() - 0.5 ) * 60.0;
+
+            waypoints.add( new Waypoint( x, y, angle ) );
+        }
+
+        return waypoints;
+    }
+
+
+    /**************************************************************************
+     * <p>Shared vars, independent of the settings. The numbers are the
+     *      feet values the benchmarks always used, taken as meters now so
+     *      the work per benchmark stays the same.</p>
+     *************************************************************************/
+    public static SharedGeneratorVars sharedVars( double dt, DriveBase driveBase )
+    {
+        SharedGeneratorVars vars = new SharedGeneratorVars();
+
+        vars.setUnit( Units.FEET );
+        vars.setDriveBase( driveBase );
+        vars.setTimeStep( dt );
+        vars.setWheelBaseW( 1.5 );
+        vars.setWheelBaseD( 2.0 );
+
+        return vars;
+    }
+
+
+    /**************************************************************************
+     * <p>Pathfinder V1 vars, independent of the settings. Same numbers as
+     *      always, see sharedVars().</p>
+     *************************************************************************/
+    public static PfV1GeneratorVars pfV1Vars()
+    {
+        PfV1GeneratorVars vars = new PfV1GeneratorVars();
+
+        vars.setFitMethod( PfV1GeneratorVars.FitMethod.HERMITE_CUBIC );
+        vars.setVelocity( 4.0 );
+        vars.setAccel( 3.0 );
+        vars.setJerk( 60.0 );
+
+        return vars;
+    }
+}
@@ -0,0 +1,91 @@
+package com.mammen.benchmark;
+
+import com.mammen.file_io.FileIO;
+import com.mammen.generator.GeneratorConfig;
+import com.mammen.generator.JavaGenerator;
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.path.Path;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/******************************************************************************
+ *   ExportBenchmark
+ *       Time to export a path to disk. The path is generated once with the
+ *       Java generator so the benchmark doesn't need the native library.
+ ******************************************************************************/
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class ExportBenchmark
+{
+    @Param( { "DELTA_TIME,POSITION,VELOCITY", "POSITION", "ALL" } )
+    public String elements;
+
+    @Param( { "TANK", "SWERVE" } )
+    public DriveBase driveBase;
+
+    @Param( { "csv", "traj" } )
+    public String format;
+
+    @Param( { "0.01" } )
+    public double dt;
+
+    @Param( { "10" } )
+    public int numWaypoints;
+
+    private Path path;
+    private List<Path.Elements> elementList;
+    private File dir;
+    private File file;
+
+
+    @Setup( Level.Trial )
+    public void setup() throws Exception
+    {
+        path = new JavaGenerator().generate( BenchmarkData.waypoints( numWaypoints ),
+                                             GeneratorConfig.of( BenchmarkData.sharedVars( dt, driveBase ), BenchmarkData.pfV1Vars() ) );
+
+        if( elements.equals( "ALL" ) )
+            elementList = Arrays.asList( Path.Elements.values() );
+        else
+            elementList = Stream.of( elements.split( "," ) ).map( Path.Elements::valueOf ).collect( Collectors.toList() );
+
+        dir = Files.createTempDirectory( "mpg-export-benchmark" ).toFile();
+        file = new File( dir, "path" );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        File[] files = dir.listFiles();
+
+        if( files != null )
+        {
+            for( File f : files )
+                f.delete();
+        }
+
+        dir.delete();
+    }
+
+
+    @Benchmark
+    public void savePath() throws IOException
+    {
+        if( format.equals( "traj" ) )
+            FileIO.saveBinaryPath( path, file, elementList, Units.FEET );
+        else
+            FileIO.savePath( path, file, elementList, Units.FEET );
+    }
+}
@@ -0,0 +1,71 @@
+package com.mammen.benchmark;
+
+import com.mammen.generator.Generator;
+import com.mammen.generator.GeneratorConfig;
+import com.mammen.generator.JavaGenerator;
+import com.mammen.generator.PfV1Generator;
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *   GeneratorBenchmark
+ *       Time to generate a whole path, from waypoints to every wheel.
+ ******************************************************************************/
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class GeneratorBenchmark
+{
+    @Param( { "PATHFINDER_V1", "JAVA" } )
+    public Generator.Type generatorType;
+
+    @Param( { "2", "5", "10" } )
+    public int numWaypoints;
+
+    @Param( { "0.05", "0.01" } )
+    public double dt;
+
+    @Param( { "TANK", "SWERVE" } )
+    public DriveBase driveBase;
+
+    private List<Waypoint> waypoints;
+    private GeneratorConfig config;
+
+
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        waypoints = BenchmarkData.waypoints( numWaypoints );
+        config = GeneratorConfig.of( BenchmarkData.sharedVars( dt, driveBase ), BenchmarkData.pfV1Vars() );
+    }
+
+
+    @Benchmark
+    public Path generate() throws Generator.PathGenerationException, Generator.NotEnoughPointsException
+    {
+        // A new generator each time, so the Java generator can't reuse the splines of the last run.
+        return createGenerator().generate( waypoints, config );
+    }
+
+
+    private Generator createGenerator()
+    {
+        switch( generatorType )
+        {
+            case PATHFINDER_V1:
+                return new PfV1Generator();
+
+            case JAVA:
+                return new JavaGenerator();
+
+            default:
+                throw new RuntimeException( "The programmer forgot to add a case for the following generator: " + generatorType );
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mammen.benchmark;
+
+import com.mammen.main.MainUIModel;
+import com.mammen.path.Waypoint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *   ProjectBenchmark
+ *       Time to save and load a project through the backend model. The
+ *       model reads its settings from user.home, the jmh task points that
+ *       at the build dir so the real settings are never touched.
+ ******************************************************************************/
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class ProjectBenchmark
+{
+    @Param( { "2", "10", "100" } )
+    public int numWaypoints;
+
+    private MainUIModel backend;
+    private File dir;
+    private File project;
+
+
+    @Setup( Level.Trial )
+    public void setup() throws Exception
+    {
+        backend = MainUIModel.getInstance();
+
+        backend.clearPoints();
+        for( Waypoint wp : BenchmarkData.waypoints( numWaypoints ) )
+        {
+            backend.addPoint( wp );
+        }
+
+        dir = Files.createTempDirectory( "mpg-project-benchmark" ).toFile();
+        project = new File( dir, "project.xml" );
+
+        // Sets the working project as well.
+        backend.saveProjectAs( project );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        backend.clearWorkingFiles();
+
+        project.delete();
+        dir.delete();
+    }
+
+
+    @Benchmark
+    public void saveWorkingProject() throws Exception
+    {
+        backend.saveWorkingProject();
+    }
+
+
+    @Benchmark
+    public int loadProject() throws Exception
+    {
+        backend.loadProject( project );
+
+        return backend.getNumWaypoints();
+    }
+}
@@ -0,0 +1,134 @@
+package com.mammen.benchmark;
+
+import com.mammen.file_io.FileIO;
+import com.mammen.generator.GeneratorConfig;
+import com.mammen.generator.JavaGenerator;
+import com.mammen.generator.SegmentBlock;
+import com.mammen.generator.generator_vars.DriveBase;
+import com.mammen.generator.generator_vars.Units;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *   StreamingExportBenchmark
+ *       Time from waypoints to csv files on disk, generating the whole path
+ *       first against writing it while it is generated. Also the time until
+ *       the first block of a streamed path is ready, which is when a writer
+ *       or a graph can start.
+ ******************************************************************************/
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class StreamingExportBenchmark
+{
+    @Param( { "TANK", "SWERVE" } )
+    public DriveBase driveBase;
+
+    @Param( { "0.01", "0.001" } )
+    public double dt;
+
+    @Param( { "10" } )
+    public int numWaypoints;
+
+    private List<Waypoint> waypoints;
+    private GeneratorConfig config;
+    private List<Path.Elements> elements;
+    private File dir;
+    private File file;
+
+
+    @Setup( Level.Trial )
+    public void setup() throws Exception
+    {
+        waypoints = BenchmarkData.waypoints( numWaypoints );
+        config = GeneratorConfig.of( BenchmarkData.sharedVars( dt, driveBase ), BenchmarkData.pfV1Vars() );
+        elements = Arrays.asList( Path.Elements.values() );
+
+        dir = Files.createTempDirectory( "mpg-streaming-benchmark" ).toFile();
+        file = new File( dir, "path" );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        File[] files = dir.listFiles();
+
+        if( files != null )
+        {
+            for( File f : files )
+                f.delete();
+        }
+
+        dir.delete();
+    }
+
+
+    @Benchmark
+    public void generateThenSave() throws Exception
+    {
+        // A new generator each time, so the splines of the last run can't be reused.
+        Path path = new JavaGenerator().generate( waypoints, config );
+
+        FileIO.savePath( path, file, elements, Units.FEET );
+    }
+
+
+    @Benchmark
+    public int streamToFile() throws Exception
+    {
+        return FileIO.streamPath( new JavaGenerator().stream( waypoints, config, ForkJoinPool.commonPool() ),
+                                  file, elements, Units.FEET, FileIO.DEFAULT_PRECISION ).get();
+    }
+
+
+    @Benchmark
+    public SegmentBlock firstBlock() throws Exception
+    {
+        CompletableFuture<SegmentBlock> first = new CompletableFuture<>();
+
+        new JavaGenerator().stream( waypoints, config, ForkJoinPool.commonPool() ).subscribe( new Flow.Subscriber<SegmentBlock>()
+        {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe( Flow.Subscription subscription )
+            {
+                this.subscription = subscription;
+                subscription.request( 1 );
+            }
+
+            @Override
+            public void onNext( SegmentBlock block )
+            {
+                // Nothing else is wanted, this stops the generation.
+                subscription.cancel();
+                first.complete( block );
+            }
+
+            @Override
+            public void onError( Throwable throwable )
+            {
+                first.completeExceptionally( throwable );
+            }
+
+            @Override
+            public void onComplete()
+            {
+            }
+        });
+
+        return first.get();
+    }
+}
@@ -0,0 +1,58 @@
+package com.mammen.generator;
+
+import com.mammen.benchmark.BenchmarkData;
+import com.mammen.path.Path;
+import com.mammen.path.Waypoint;
+
+import jaci.pathfinder.Pathfinder;
+import jaci.pathfinder.Trajectory;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ *   Traj2PathBenchmark
+ *       Time to copy a Pathfinder trajectory into a Path, without the time
+ *       Pathfinder takes to generate it. Lives in com.mammen.generator
+ *       because traj2Path is package private.
+ ******************************************************************************/
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class Traj2PathBenchmark
+{
+    @Param( { "2", "5", "10" } )
+    public int numWaypoints;
+
+    @Param( { "0.05", "0.01" } )
+    public double dt;
+
+    private Trajectory trajectory;
+
+
+    @Setup( Level.Trial )
+    public void setup()
+    {
+        List<Waypoint> waypoints = BenchmarkData.waypoints( numWaypoints );
+        jaci.pathfinder.Waypoint[] pfWaypoints = new jaci.pathfinder.Waypoint[ waypoints.size() ];
+
+        for( int i = 0; i < waypoints.size(); i++ )
+        {
+            Waypoint wp = waypoints.get( i );
+            pfWaypoints[ i ] = new jaci.pathfinder.Waypoint( wp.getX(), wp.getY(), Pathfinder.d2r( wp.getAngle() ) );
+        }
+
+        Trajectory.Config config = new Trajectory.Config( Trajectory.FitMethod.HERMITE_CUBIC, Trajectory.Config.SAMPLES_HIGH, dt, 4.0, 3.0, 60.0 );
+
+        trajectory = Pathfinder.generate( pfWaypoints, config );
+    }
+
+
+    @Benchmark
+    public Path.Columns traj2Path()
+    {
+        return PfV1Generator.traj2Path( trajectory );
+    }
+}